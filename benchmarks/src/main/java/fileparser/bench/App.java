@@ -0,0 +1,135 @@
+package fileparser.bench;
+
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.ArrayList;
+
+/**
+ * Method handles onto the application classes.  The application is in the default package, which JMH does not
+ * allow for benchmarks and which a named package cannot import.  The handles are static finals, so the JIT
+ * inlines through them and they add no measurable cost.
+ */
+final class App {
+
+    static final MethodHandle NEW_ROW_BUFFER;
+    static final MethodHandle SPEC_COLUMNS;
+    static final MethodHandle COLUMN_WIDTH;
+    static final MethodHandle COLUMN_DATA_TYPE;
+    static final MethodHandle COMPILE_PARSER;
+    static final MethodHandle PARSE_LINE;
+    static final MethodHandle PARSE_BYTES;
+    static final MethodHandle VALIDATE_AND_FORMAT;
+    static final MethodHandle VALIDATE;
+    static final MethodHandle NEW_DATA_CELL_ENTRY;
+    static final MethodHandle INSERT_DATA_ROW;
+    static final MethodHandle CREATE_TABLE;
+    static final MethodHandle GET_CONNECTION;
+    static final MethodHandle NEW_DATA_FILE_READER;
+    static final MethodHandle READ_AND_STORE_DATA;
+    static final MethodHandle SET_BULK_LOAD;
+    static final MethodHandle SET_PIPELINE;
+    static final MethodHandle SET_CHECKPOINTS;
+    static final MethodHandle PROCESS_CONCURRENTLY;
+    static final MethodHandle PROCESS_THREAD_PER_FILE;
+    static final Class<?> INVALID_DATA_EXCEPTION;
+    static final Class<?> FILE_READER_EXCEPTION;
+    static final MethodHandle ERROR_COUNT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> rowBuffer = Class.forName("RowBuffer");
+            Class<?> parser = Class.forName("FixedWidthRowParser");
+            Class<?> dbHelper = Class.forName("DBHelper");
+            Class<?> tableSpec = Class.forName("TableSpec");
+            Class<?> dataCellEntry = Class.forName("DataCellEntry");
+            Class<?> dataFileReader = Class.forName("DataFileReader");
+
+            NEW_ROW_BUFFER = lookup.findConstructor(rowBuffer, MethodType.methodType(void.class, int.class))
+                    .asType(MethodType.methodType(Object.class, int.class));
+
+            MethodHandle getSpec = lookup.findStatic(Class.forName("SpecRegistry"), "getSpec",
+                    MethodType.methodType(tableSpec, String.class));
+            MethodHandle getColumns = lookup.findVirtual(tableSpec, "getColumns",
+                    MethodType.methodType(ArrayList.class));
+            SPEC_COLUMNS = MethodHandles.filterReturnValue(getSpec, getColumns);
+            Class<?> column = Class.forName("ColumnSpecification");
+            COLUMN_WIDTH = lookup.findVirtual(column, "getWidth", MethodType.methodType(int.class))
+                    .asType(MethodType.methodType(int.class, Object.class));
+            COLUMN_DATA_TYPE = lookup.findVirtual(column, "getDataType", MethodType.methodType(String.class))
+                    .asType(MethodType.methodType(String.class, Object.class));
+
+            COMPILE_PARSER = lookup.findStatic(parser, "compile", MethodType.methodType(parser, ArrayList.class))
+                    .asType(MethodType.methodType(Object.class, ArrayList.class));
+            PARSE_LINE = lookup.findVirtual(parser, "parse", MethodType.methodType(int.class, String.class, rowBuffer))
+                    .asType(MethodType.methodType(int.class, Object.class, String.class, Object.class));
+            PARSE_BYTES = lookup.findVirtual(parser, "parse",
+                    MethodType.methodType(boolean.class, ByteBuffer.class, int.class, int.class, rowBuffer))
+                    .asType(MethodType.methodType(boolean.class, Object.class, ByteBuffer.class, int.class,
+                            int.class, Object.class));
+
+            VALIDATE_AND_FORMAT = lookup.findStatic(dbHelper, "validateAndFormatDataValue",
+                    MethodType.methodType(String.class, String.class, String.class));
+            VALIDATE = lookup.findStatic(dbHelper, "validateDataValue",
+                    MethodType.methodType(int.class, String.class, String.class, rowBuffer, int.class))
+                    .asType(MethodType.methodType(int.class, String.class, String.class, Object.class, int.class));
+
+            NEW_DATA_CELL_ENTRY = lookup.findConstructor(dataCellEntry,
+                    MethodType.methodType(void.class, String.class, String.class))
+                    .asType(MethodType.methodType(Object.class, String.class, String.class));
+            INSERT_DATA_ROW = lookup.findStatic(dbHelper, "insertDataRow",
+                    MethodType.methodType(int.class, String.class, ArrayList.class));
+            CREATE_TABLE = lookup.findStatic(dbHelper, "createTableIfNotExists",
+                    MethodType.methodType(boolean.class, Connection.class, String.class, ArrayList.class));
+            GET_CONNECTION = lookup.findStatic(Class.forName("DBConnection"), "getConnection",
+                    MethodType.methodType(Connection.class));
+
+            NEW_DATA_FILE_READER = lookup.findConstructor(dataFileReader,
+                    MethodType.methodType(void.class, Path.class, Connection.class, int.class))
+                    .asType(MethodType.methodType(Object.class, Path.class, Connection.class, int.class));
+            READ_AND_STORE_DATA = lookup.findVirtual(dataFileReader, "readAndStoreData",
+                    MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            SET_BULK_LOAD = lookup.findVirtual(dataFileReader, "setBulkLoad",
+                    MethodType.methodType(void.class, boolean.class))
+                    .asType(MethodType.methodType(void.class, Object.class, boolean.class));
+            SET_PIPELINE = lookup.findVirtual(dataFileReader, "setPipeline",
+                    MethodType.methodType(void.class, boolean.class, int.class))
+                    .asType(MethodType.methodType(void.class, Object.class, boolean.class, int.class));
+            SET_CHECKPOINTS = lookup.findVirtual(dataFileReader, "setCheckpoints",
+                    MethodType.methodType(void.class, boolean.class))
+                    .asType(MethodType.methodType(void.class, Object.class, boolean.class));
+
+            Class<?> fileParser = Class.forName("FileParser");
+            MethodType processFiles = MethodType.methodType(void.class, Iterable.class, int.class, PrintStream.class);
+            PROCESS_CONCURRENTLY = lookup.findStatic(fileParser, "processConcurrently", processFiles);
+            PROCESS_THREAD_PER_FILE = lookup.findStatic(fileParser, "processThreadPerFile", processFiles);
+
+            INVALID_DATA_EXCEPTION = Class.forName("InvalidDataException");
+            FILE_READER_EXCEPTION = Class.forName("FileReaderException");
+            ERROR_COUNT = lookup.findVirtual(FILE_READER_EXCEPTION, "getErrorCount", MethodType.methodType(int.class))
+                    .asType(MethodType.methodType(int.class, Exception.class));
+
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private App() {
+    }
+
+    /**
+     * Rethrow ex unless it is the FileReaderException reporting a file's invalid lines, which readAndStoreData
+     * throws after storing the rest when invalidRatio is more than 0.  Anything else, e.g. a SQL or IO error, fails
+     * the benchmark.
+     */
+    static void expectInvalidLines(Exception ex) throws Throwable {
+        if (!FILE_READER_EXCEPTION.isInstance(ex) || (int) ERROR_COUNT.invokeExact(ex) == 0) throw ex;
+    }
+
+}
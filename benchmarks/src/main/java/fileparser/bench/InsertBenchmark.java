@@ -0,0 +1,149 @@
+package fileparser.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storing a generated data file in an in-memory H2 database, starting from an empty table each time:
+ * DBHelper.insertDataRow for each valid row (one statement and commit per row, values validated up front), against
+ * DataFileReader.readAndStoreData end to end (parse, validate and batched inserts, the same in pipeline stages on
+ * separate threads, or a bulk load from CSV).  Checkpoints are off except in readAndStoreDataCheckpoints, batched
+ * inserts with a checkpoint saved in every batch's transaction, to show what they cost.
+ *
+ * 10M rows is left out of the defaults as each insert run takes minutes; add it with -p rows=10000000.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Dfileparser.dbUrl=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+        "-Dfileparser.ledger=false", "-Dfileparser.checkpoints=false"})
+public class InsertBenchmark {
+
+    @Param({"testformat1", "scoreRecord"})
+    public String dataTable;
+
+    @Param({"1000", "1000000"})
+    public int rows;
+
+    @Param({"0.0", "0.01", "0.1"})
+    public double invalidRatio;
+
+    private Path file;
+    private Connection connection;
+    private List<ArrayList<Object>> validRows;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        file = SyntheticData.file(dataTable, rows, invalidRatio);
+        connection = (Connection) App.GET_CONNECTION.invokeExact();
+        ArrayList columns = (ArrayList) App.SPEC_COLUMNS.invokeExact(dataTable);
+        boolean created = (boolean) App.CREATE_TABLE.invokeExact(connection, dataTable, columns);
+
+        // Rows for insertDataRow, formatted the way the original per-row loop did
+        List<String[]> spec = SyntheticData.readSpec(dataTable);
+        validRows = new ArrayList<ArrayList<Object>>();
+        for (String line : SyntheticData.lines(dataTable, rows, invalidRatio)) {
+            ArrayList<Object> cells = new ArrayList<Object>();
+            int curIndex = 0;
+            for (String[] column : spec) {
+                int newIndex = curIndex + Integer.parseInt(column[1]);
+                String value = line.substring(curIndex, newIndex).trim();
+                curIndex = newIndex;
+                try {
+                    String formatted = (String) App.VALIDATE_AND_FORMAT.invokeExact(value, column[2]);
+                    cells.add((Object) App.NEW_DATA_CELL_ENTRY.invokeExact(column[0], formatted));
+                } catch (Exception ex) {
+                    if (!App.INVALID_DATA_EXCEPTION.isInstance(ex)) throw ex;
+                    cells = null;
+                    break;
+                }
+            }
+            if (cells != null) validRows.add(cells);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyTable() throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("TRUNCATE TABLE " + dataTable);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Benchmark
+    public int insertDataRowPerRow() throws Throwable {
+        int stored = 0;
+        for (ArrayList<Object> cells : validRows) {
+            stored += (int) App.INSERT_DATA_ROW.invokeExact(dataTable, (ArrayList) cells);
+        }
+        return stored;
+    }
+
+    @Benchmark
+    public void readAndStoreDataBatched() throws Throwable {
+        Object reader = (Object) App.NEW_DATA_FILE_READER.invokeExact(file, connection, 1000);
+        try {
+            App.READ_AND_STORE_DATA.invokeExact(reader);
+        } catch (Exception ex) {
+            App.expectInvalidLines(ex);
+        }
+    }
+
+    @Benchmark
+    public void readAndStoreDataCheckpoints() throws Throwable {
+        Object reader = (Object) App.NEW_DATA_FILE_READER.invokeExact(file, connection, 1000);
+        App.SET_CHECKPOINTS.invokeExact(reader, true);
+        try {
+            App.READ_AND_STORE_DATA.invokeExact(reader);
+        } catch (Exception ex) {
+            App.expectInvalidLines(ex);
+        }
+    }
+
+    @Benchmark
+    public void readAndStoreDataPipeline() throws Throwable {
+        Object reader = (Object) App.NEW_DATA_FILE_READER.invokeExact(file, connection, 1000);
+        App.SET_PIPELINE.invokeExact(reader, true, 2);
+        try {
+            App.READ_AND_STORE_DATA.invokeExact(reader);
+        } catch (Exception ex) {
+            App.expectInvalidLines(ex);
+        }
+    }
+
+    @Benchmark
+    public void readAndStoreDataBulk() throws Throwable {
+        Object reader = (Object) App.NEW_DATA_FILE_READER.invokeExact(file, connection, 1000);
+        App.SET_BULK_LOAD.invokeExact(reader, true);
+        try {
+            App.READ_AND_STORE_DATA.invokeExact(reader);
+        } catch (Exception ex) {
+            App.expectInvalidLines(ex);
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+package fileparser.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Line decoding and validation in DataFileReader, without the database: reading a generated data file and parsing
+ * every line with the table's compiled row parser, either as Strings or from the memory mapped bytes.
+ * substringTrimValidate is the baseline: the loop the compiled parser replaced, over the same Strings.
+ *
+ * Returns the number of valid lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class LineDecodeBenchmark {
+
+    @Param({"testformat1", "scoreRecord"})
+    public String dataTable;
+
+    @Param({"1000", "1000000", "10000000"})
+    public int rows;
+
+    @Param({"0.0", "0.01", "0.1"})
+    public double invalidRatio;
+
+    private Path file;
+    private Object parser;
+    private Object row;
+    private int[] widths;
+    private String[] dataTypes;
+
+    @Setup
+    public void setUp() throws Throwable {
+        file = SyntheticData.file(dataTable, rows, invalidRatio);
+        ArrayList columns = (ArrayList) App.SPEC_COLUMNS.invokeExact(dataTable);
+        parser = (Object) App.COMPILE_PARSER.invokeExact(columns);
+        row = (Object) App.NEW_ROW_BUFFER.invokeExact(columns.size());
+        widths = new int[columns.size()];
+        dataTypes = new String[columns.size()];
+        for (int i = 0; i < widths.length; i++) {
+            widths[i] = (int) App.COLUMN_WIDTH.invokeExact(columns.get(i));
+            dataTypes[i] = (String) App.COLUMN_DATA_TYPE.invokeExact(columns.get(i));
+        }
+    }
+
+    /**
+     * The per-line loop before specs were compiled: a substring and trim for every cell, validated by its datatype
+     * name with DBHelper.validateDataValue.  (That now finds the DataType by name where it used to switch on it.)
+     * The original did not check the line length; a short line counts as invalid here rather than throwing.
+     */
+    @Benchmark
+    public int substringTrimValidate() throws Throwable {
+        int valid = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                boolean allCellsValid = true;
+                int curIndex = 0;
+                for (int i = 0; i < widths.length; i++) {
+                    int newIndex = curIndex + widths[i];
+                    if (newIndex > line.length()) {
+                        allCellsValid = false;
+                        break;
+                    }
+                    String value = line.substring(curIndex, newIndex).trim();
+                    curIndex = newIndex;
+                    if ((int) App.VALIDATE.invokeExact(value, dataTypes[i], row, i) != 0) allCellsValid = false;
+                }
+                if (allCellsValid) valid++;
+            }
+        }
+        return valid;
+    }
+
+    @Benchmark
+    public int readLinesAsStrings() throws Throwable {
+        int valid = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if ((int) App.PARSE_LINE.invokeExact(parser, line, row) < 0) valid++;
+            }
+        }
+        return valid;
+    }
+
+    @Benchmark
+    public int decodeMappedBytes() throws Throwable {
+        int valid = 0;
+        try (FileChannel channel = FileChannel.open(file)) {
+            // The generated files are all well under the 2 GB a single mapping can hold
+            int size = (int) channel.size();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            int lineStart = 0;
+            while (lineStart < size) {
+                int lineEnd = lineStart;
+                while (lineEnd < size && buffer.get(lineEnd) != '\n') lineEnd++;
+
+                if ((boolean) App.PARSE_BYTES.invokeExact(parser, buffer, lineStart, lineEnd, row)) {
+                    valid++;
+                } else {
+                    // Same fallback as DataFileReader: parse the line as a String to find the error
+                    byte[] bytes = new byte[lineEnd - lineStart];
+                    for (int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(lineStart + i);
+                    String line = new String(bytes, StandardCharsets.UTF_8);
+                    if ((int) App.PARSE_LINE.invokeExact(parser, line, row) < 0) valid++;
+                }
+                lineStart = lineEnd + 1;
+            }
+        }
+        return valid;
+    }
+
+}
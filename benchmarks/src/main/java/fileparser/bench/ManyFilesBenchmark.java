@@ -0,0 +1,92 @@
+package fileparser.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A drop of many small files, stored in an in-memory H2 database with concurrentFiles files at a time: on a fixed pool
+ * of that many threads (FileParser.processConcurrently), against a thread per file with a semaphore
+ * (FileParser.processThreadPerFile).  The thread per file mode only uses virtual threads on Java 21 and later; run
+ * the jar with such a JVM to compare them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Dfileparser.dbUrl=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+        "-Dfileparser.ledger=false", "-Dfileparser.metrics=false", "-Dfileparser.poolSize=40"})
+public class ManyFilesBenchmark {
+
+    private static final PrintStream DISCARD = new PrintStream(new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+    });
+
+    @Param({"testformat1"})
+    public String dataTable;
+
+    @Param({"1000", "10000"})
+    public int files;
+
+    @Param({"10"})
+    public int rowsPerFile;
+
+    @Param({"4", "32"})
+    public int concurrentFiles;
+
+    private List<Path> drop;
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        drop = SyntheticData.files(dataTable, files, rowsPerFile);
+        connection = (Connection) App.GET_CONNECTION.invokeExact();
+        ArrayList columns = (ArrayList) App.SPEC_COLUMNS.invokeExact(dataTable);
+        boolean created = (boolean) App.CREATE_TABLE.invokeExact(connection, dataTable, columns);
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyTable() throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("TRUNCATE TABLE " + dataTable);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Benchmark
+    public void fixedPool() throws Throwable {
+        App.PROCESS_CONCURRENTLY.invokeExact((Iterable) drop, concurrentFiles, DISCARD);
+    }
+
+    @Benchmark
+    public void threadPerFile() throws Throwable {
+        App.PROCESS_THREAD_PER_FILE.invokeExact((Iterable) drop, concurrentFiles, DISCARD);
+    }
+
+}
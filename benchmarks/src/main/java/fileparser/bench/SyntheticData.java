@@ -0,0 +1,178 @@
+package fileparser.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates fixed width data files from the definitions in specs/.  A share of the rows (invalidRatio) gets one bad
+ * cell: letters in an INTEGER, BIGINT or DECIMAL, a flag other than 1/0 in a BOOLEAN, a day that does not exist in a
+ * DATE or TIMESTAMP, or an empty TEXT.
+ *
+ * Files are written once to java.io.tmpdir/fileparser-bench and reused, since the same arguments always give the
+ * same content.  They are named like the real drops (table_suffix.txt) so DataFileReader finds the table's spec.
+ */
+final class SyntheticData {
+
+    private static final Path DIRECTORY = Paths.get(System.getProperty("java.io.tmpdir"), "fileparser-bench");
+
+    private SyntheticData() {
+    }
+
+    static Path file(String dataTable, int rows, double invalidRatio) throws IOException {
+
+        Path file = DIRECTORY.resolve(dataTable + "_" + rows + "-" + invalidRatio + ".txt");
+        if (Files.exists(file)) return file;
+
+        Files.createDirectories(DIRECTORY);
+        List<String[]> columns = readSpec(dataTable);
+        Random random = new Random(rows * 31L + Double.doubleToLongBits(invalidRatio));
+
+        Path partial = Files.createTempFile(DIRECTORY, dataTable, ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder();
+            for (int row = 0; row < rows; row++) {
+                int badColumn = random.nextDouble() < invalidRatio ? random.nextInt(columns.size()) : -1;
+                line.setLength(0);
+                for (int column = 0; column < columns.size(); column++) {
+                    String[] spec = columns.get(column);
+                    appendCell(line, Integer.parseInt(spec[1]), spec[2], column == badColumn, random);
+                }
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        }
+        Files.move(partial, file, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+
+    }
+
+    /**
+     * @return count copies of a generated file of rows valid rows, in a directory of their own, named like drops of
+     * the same table on different days
+     */
+    static List<Path> files(String dataTable, int count, int rows) throws IOException {
+
+        Path directory = DIRECTORY.resolve(dataTable + "_" + count + "x" + rows);
+        Path source = file(dataTable, rows, 0.0);
+        List<Path> files = new ArrayList<Path>();
+        Files.createDirectories(directory);
+        for (int i = 0; i < count; i++) {
+            Path copy = directory.resolve(dataTable + "_" + i + ".txt");
+            if (!Files.exists(copy)) Files.copy(source, copy);
+            files.add(copy);
+        }
+        return files;
+
+    }
+
+    /**
+     * @return the lines of a generated file, for benchmarks that work on lines already in memory
+     */
+    static List<String> lines(String dataTable, int rows, double invalidRatio) throws IOException {
+        return Files.readAllLines(file(dataTable, rows, invalidRatio), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return name, width and datatype for each column of specs/dataTable.csv
+     */
+    static List<String[]> readSpec(String dataTable) throws IOException {
+        List<String[]> columns = new ArrayList<String[]>();
+        for (String line : Files.readAllLines(Paths.get("specs", dataTable + ".csv"), StandardCharsets.UTF_8)) {
+            // not split inside parentheses, e.g. DECIMAL(10,2)
+            String[] attributes = line.split(",(?![^(]*\\))");
+            if (attributes.length != 3 || attributes[1].trim().equalsIgnoreCase("width")) continue;
+            columns.add(new String[] {attributes[0].trim(), attributes[1].trim(), attributes[2].trim()});
+        }
+        return columns;
+    }
+
+    private static void appendCell(StringBuilder line, int width, String dataType, boolean invalid, Random random) {
+
+        String value;
+        switch (dataType) {
+            case "INTEGER":
+                int digits = Math.min(width - 1, 9);
+                int max = digits <= 0 ? 10 : (int) Math.pow(10, digits);
+                value = invalid ? "x" + random.nextInt(max) : Integer.toString(random.nextInt(max));
+                if (value.length() > width) value = value.substring(0, width);
+                pad(line, width - value.length());   // numbers are right aligned
+                line.append(value);
+                return;
+            case "BIGINT":
+                value = Long.toString(random.nextLong() & Long.MAX_VALUE);
+                value = value.substring(0, Math.min(value.length(), width));
+                if (invalid) value = "x" + value.substring(1);
+                pad(line, width - value.length());
+                line.append(value);
+                return;
+            case "BOOLEAN":
+                value = invalid ? "q" : (random.nextBoolean() ? "1" : "0");
+                break;
+            case "DATE":
+                value = String.format("%04d-%02d-%02d", 2000 + random.nextInt(20), 1 + random.nextInt(12),
+                        invalid ? 32 : 1 + random.nextInt(28));
+                break;
+            case "TIMESTAMP":
+                value = String.format("%04d-%02d-%02d %02d:%02d:%02d", 2000 + random.nextInt(20),
+                        1 + random.nextInt(12), invalid ? 32 : 1 + random.nextInt(28), random.nextInt(24),
+                        random.nextInt(60), random.nextInt(60));
+                break;
+            default:
+                if (dataType.startsWith("DECIMAL")) {
+                    value = randomDecimal(random, width, dataType);
+                    if (invalid) value = "x" + value.substring(1);
+                    pad(line, width - value.length());
+                    line.append(value);
+                    return;
+                }
+                value = invalid ? "" : randomText(random, 1 + random.nextInt(width));
+        }
+        line.append(value);
+        pad(line, width - value.length());
+
+    }
+
+    // A number that fits both the width and DECIMAL(precision,scale), with all scale decimals
+    private static String randomDecimal(Random random, int width, String dataType) {
+        int precision = 18;
+        int scale = 0;
+        int open = dataType.indexOf('(');
+        if (open > 0) {
+            String[] parameters = dataType.substring(open + 1, dataType.length() - 1).split(",");
+            precision = Integer.parseInt(parameters[0].trim());
+            if (parameters.length > 1) scale = Integer.parseInt(parameters[1].trim());
+        }
+        int integerDigits = Math.max(1, Math.min(Math.min(width - scale - 2, precision - scale), 9));
+        StringBuilder value = new StringBuilder().append(random.nextInt((int) Math.pow(10, integerDigits)));
+        if (scale > 0) {
+            value.append('.');
+            for (int i = 0; i < scale; i++) {
+                value.append((char) ('0' + random.nextInt(10)));
+            }
+        }
+        return value.toString();
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] text = new char[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(text);
+    }
+
+    private static void pad(StringBuilder line, int count) {
+        for (int i = 0; i < count; i++) {
+            line.append(' ');
+        }
+    }
+
+}
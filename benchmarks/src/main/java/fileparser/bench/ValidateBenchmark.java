@@ -0,0 +1,81 @@
+package fileparser.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validation of one data value per datatype, for a valid and an invalid value: the exception based
+ * DBHelper.validateAndFormatDataValue against the result code based DBHelper.validateDataValue.  Every datatype the
+ * spec files can use has its own parameter value, so a new datatype's parser is measured alongside the others.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidateBenchmark {
+
+    @Param({"INTEGER", "BOOLEAN", "TEXT", "BIGINT", "DECIMAL(10,2)", "DATE", "TIMESTAMP"})
+    public String dataType;
+
+    @Param({"true", "false"})
+    public boolean valid;
+
+    private String value;
+    private Object row;
+
+    @Setup
+    public void setUp() throws Throwable {
+        switch (dataType) {
+            case "INTEGER":
+                value = valid ? "1234" : "12x4";
+                break;
+            case "BOOLEAN":
+                value = valid ? "1" : "q";
+                break;
+            case "BIGINT":
+                value = valid ? "9007199254740993" : "90071992x4740993";
+                break;
+            case "DECIMAL(10,2)":
+                value = valid ? "-1234567.89" : "1234567.891";
+                break;
+            case "DATE":
+                value = valid ? "2016-10-04" : "2016-02-30";
+                break;
+            case "TIMESTAMP":
+                value = valid ? "2016-10-04 13:45:00.250" : "2016-10-04 25:45:00";
+                break;
+            default:
+                value = valid ? "Joe Smith" : "";
+        }
+        row = (Object) App.NEW_ROW_BUFFER.invokeExact(1);
+    }
+
+    @Benchmark
+    public String validateAndFormatDataValue() throws Throwable {
+        try {
+            return (String) App.VALIDATE_AND_FORMAT.invokeExact(value, dataType);
+        } catch (Exception ex) {
+            if (!App.INVALID_DATA_EXCEPTION.isInstance(ex)) throw ex;
+            return ex.getMessage();
+        }
+    }
+
+    @Benchmark
+    public int validateDataValue() throws Throwable {
+        return (int) App.VALIDATE.invokeExact(value, dataType, row, 0);
+    }
+
+}
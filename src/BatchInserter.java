@@ -0,0 +1,167 @@
+import java.io.IOException;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * Inserts validated data rows into one table using a single PreparedStatement.  Rows are sent to the database in
+ * batches of batchSize and each batch is committed on its own, rather than one statement and one commit per row.
+ * Rows are staged in a RowBatch, by column, and bound from there when the batch is sent.
+ *
+ * If a batch fails, it is rolled back and its rows are replayed one at a time, so only the rows the database
+ * actually rejected are reported in errors.  The rest of the batch is still stored.
+ */
+public class BatchInserter implements RowSink {
+
+    private final Connection connection;
+    private final PreparedStatement statement;
+    private final boolean previousAutoCommit;
+    private final ErrorCollector errors;
+
+    // The rows of the current batch, and their lines so a failed batch can be reported line by line.  Reused from
+    // batch to batch.
+    private final RowBatch pendingRows;
+    private final int[] pendingLineNumbers;
+    private final CharSequence[] pendingLines;
+
+    private int rowsStored = 0;
+    private long databaseNanos = 0;
+    private Checkpoint checkpoint;
+
+    public BatchInserter(Connection connection, String dataTable, ArrayList<ColumnSpecification> specs,
+                         DataType[] dataTypes, int batchSize, ErrorCollector errors)
+            throws SQLException {
+        this(connection, dataTable, specs, dataTypes, batchSize, errors, null);
+    }
+
+    /**
+     * @param loadDate stored in the load date column of every row (see SqlDialect), or null if the table has none
+     */
+    public BatchInserter(Connection connection, String dataTable, ArrayList<ColumnSpecification> specs,
+                         DataType[] dataTypes, int batchSize, ErrorCollector errors, Date loadDate)
+            throws SQLException {
+        this.connection = connection;
+        this.errors = errors;
+        this.pendingRows = new RowBatch(dataTypes, batchSize);
+        this.pendingLineNumbers = new int[batchSize];
+        this.pendingLines = new CharSequence[batchSize];
+        this.statement = connection.prepareStatement(
+                SqlDialect.forConnection(connection).buildInsertSql(dataTable, specs, loadDate != null));
+        if (loadDate != null) {
+            // The same for every row: parameters keep their value from row to row
+            this.statement.setDate(specs.size() + 1, loadDate);
+        }
+        this.previousAutoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+    }
+
+    /**
+     * Save checkpoint with each batch, in the same transaction.
+     */
+    public void setCheckpoint(Checkpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Add one validated row to the current batch.  Once the batch is full, it is sent to the database when the next
+     * row is added (or on flush or close), so a checkpoint noted after this row is saved with it.
+     *
+     * @param lineNumber line number in the data file, for error reporting
+     * @param line the raw line from the data file, for error reporting.  Only turned into a String if the row fails.
+     * @param row validated values, by column index in the same order as the column specifications and dataTypes
+     */
+    @Override
+    public void addRow(int lineNumber, CharSequence line, RowBuffer row) throws IOException, SQLException {
+        if (pendingRows.isFull()) {
+            flush();
+        }
+
+        int index = pendingRows.add(row);
+        pendingLineNumbers[index] = lineNumber;
+        pendingLines[index] = line;
+    }
+
+    /**
+     * Send and commit any rows in the current batch.
+     */
+    public void flush() throws IOException, SQLException {
+        int pendingCount = pendingRows.size();
+        if (pendingCount == 0) return;
+
+        IngestMetrics metrics = IngestMetrics.get();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < pendingCount; i++) {
+                pendingRows.bind(statement, i);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            long executed = System.nanoTime();
+            metrics.batchInserted(pendingCount, executed - start);
+            if (checkpoint != null) checkpoint.save(connection);
+            connection.commit();
+            metrics.committed(System.nanoTime() - executed);
+            metrics.rowsStored(pendingCount);
+            rowsStored += pendingCount;
+        } catch (BatchUpdateException bue) {
+            connection.rollback();
+            statement.clearBatch();
+            replayRowByRow();
+            if (checkpoint != null) {
+                checkpoint.save(connection);
+                connection.commit();
+            }
+        }
+        databaseNanos += System.nanoTime() - start;
+
+        for (int i = 0; i < pendingCount; i++) {
+            pendingLines[i] = null;
+        }
+        pendingRows.clear();
+    }
+
+    public int getRowsStored() {
+        return rowsStored;
+    }
+
+    @Override
+    public long getDatabaseNanos() {
+        return databaseNanos;
+    }
+
+    /**
+     * Flush the final batch and restore the connection's previous commit mode.
+     */
+    @Override
+    public void close() throws IOException, SQLException {
+        try {
+            flush();
+        } finally {
+            statement.close();
+            connection.setAutoCommit(previousAutoCommit);
+        }
+    }
+
+    private void replayRowByRow() throws IOException, SQLException {
+        for (int i = 0; i < pendingRows.size(); i++) {
+            try {
+                long start = System.nanoTime();
+                pendingRows.bind(statement, i);
+                statement.executeUpdate();
+                long executed = System.nanoTime();
+                connection.commit();
+                IngestMetrics.get().batchInserted(1, executed - start);
+                IngestMetrics.get().committed(System.nanoTime() - executed);
+                IngestMetrics.get().rowsStored(1);
+                rowsStored++;
+            } catch (SQLException x) {
+                connection.rollback();
+                errors.addNotStored(pendingLineNumbers[i], pendingLines[i].toString(), x);
+            }
+        }
+    }
+
+}
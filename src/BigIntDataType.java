@@ -0,0 +1,103 @@
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * BIGINT data: a 64 bit signed integer, e.g. an ID, following the same rules as Long.parseLong but without throwing
+ * for invalid data.
+ */
+public class BigIntDataType extends DataType {
+
+    BigIntDataType() {
+        super("BIGINT");
+    }
+
+    @Override
+    public String getSqlType(int width) {
+        return "BIGINT";
+    }
+
+    @Override
+    public boolean isStoredAs(int sqlType) {
+        return sqlType == Types.BIGINT;
+    }
+
+    // Digits are accumulated as a negative number, which has room for Long.MIN_VALUE, as in Long.parseLong
+    @Override
+    public int parse(String line, int from, int to, RowBuffer row, int column) {
+
+        boolean negative = false;
+        char first = line.charAt(from);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            from++;
+            if (from == to) return DBHelper.NOT_A_BIGINT;
+        }
+
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = Character.digit(line.charAt(i), 10);
+            if (digit < 0 || value < limit / 10) return DBHelper.NOT_A_BIGINT;
+            value *= 10;
+            if (value < limit + digit) return DBHelper.NOT_A_BIGINT;
+            value -= digit;
+        }
+        row.setLong(column, negative ? value : -value);
+        return DBHelper.VALID;
+
+    }
+
+    @Override
+    public int parse(ByteBuffer buffer, int from, int to, RowBuffer row, int column) {
+
+        boolean negative = false;
+        byte first = buffer.get(from);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            from++;
+            if (from == to) return DBHelper.NOT_A_BIGINT;
+        }
+
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9 || value < limit / 10) return DBHelper.NOT_A_BIGINT;
+            value *= 10;
+            if (value < limit + digit) return DBHelper.NOT_A_BIGINT;
+            value -= digit;
+        }
+        row.setLong(column, negative ? value : -value);
+        return DBHelper.VALID;
+
+    }
+
+    @Override
+    public void bind(PreparedStatement stmt, int parameterIndex, RowBuffer row, int column) throws SQLException {
+        stmt.setLong(parameterIndex, row.getLong(column));
+    }
+
+    @Override
+    public void copy(RowBuffer row, int column, RowBatch batch, int index) {
+        batch.setLong(index, column, row.getLong(column));
+    }
+
+    @Override
+    public void bind(PreparedStatement stmt, int parameterIndex, RowBatch batch, int index, int column)
+            throws SQLException {
+        stmt.setLong(parameterIndex, batch.getLong(index, column));
+    }
+
+    @Override
+    public void appendText(StringBuilder out, RowBuffer row, int column) {
+        out.append(row.getLong(column));
+    }
+
+    @Override
+    public void appendText(StringBuilder out, RowBatch batch, int index, int column) {
+        out.append(batch.getLong(index, column));
+    }
+
+}
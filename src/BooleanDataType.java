@@ -0,0 +1,77 @@
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * BOOLEAN data: a 1 or 0 flag.
+ */
+public class BooleanDataType extends DataType {
+
+    BooleanDataType() {
+        super("BOOLEAN");
+    }
+
+    @Override
+    public String getSqlType(int width) {
+        return "BOOLEAN";
+    }
+
+    @Override
+    public boolean isStoredAs(int sqlType) {
+        // PostgreSQL reports its BOOLEAN columns as BIT
+        return sqlType == Types.BOOLEAN || sqlType == Types.BIT;
+    }
+
+    @Override
+    public int parse(String line, int from, int to, RowBuffer row, int column) {
+        char flag = line.charAt(from);
+        if (to - from != 1 || (flag != '1' && flag != '0')) {  //error if not 1 or 0
+            return DBHelper.NOT_A_BOOLEAN;
+        }
+        row.setBoolean(column, flag == '1');
+        return DBHelper.VALID;
+    }
+
+    @Override
+    public int parse(ByteBuffer buffer, int from, int to, RowBuffer row, int column) {
+        byte flag = buffer.get(from);
+        if (to - from != 1 || (flag != '1' && flag != '0')) {
+            return DBHelper.NOT_A_BOOLEAN;
+        }
+        row.setBoolean(column, flag == '1');
+        return DBHelper.VALID;
+    }
+
+    @Override
+    public void bind(PreparedStatement stmt, int parameterIndex, RowBuffer row, int column) throws SQLException {
+        stmt.setBoolean(parameterIndex, row.getBoolean(column));
+    }
+
+    @Override
+    public void copy(RowBuffer row, int column, RowBatch batch, int index) {
+        batch.setBoolean(index, column, row.getBoolean(column));
+    }
+
+    @Override
+    public void bind(PreparedStatement stmt, int parameterIndex, RowBatch batch, int index, int column)
+            throws SQLException {
+        stmt.setBoolean(parameterIndex, batch.getBoolean(index, column));
+    }
+
+    @Override
+    public void appendText(StringBuilder out, RowBuffer row, int column) {
+        out.append(row.getBoolean(column) ? "TRUE" : "FALSE");
+    }
+
+    @Override
+    public void appendText(StringBuilder out, RowBatch batch, int index, int column) {
+        out.append(batch.getBoolean(index, column) ? "TRUE" : "FALSE");
+    }
+
+    @Override
+    public String formatLiteral(RowBuffer row, int column) {
+        return row.getBoolean(column) + "";   //return boolean as string
+    }
+
+}
@@ -0,0 +1,234 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * Loads validated data rows into one table with bulk statements, rather than row by row inserts.  Rows are staged
+ * in a RowBatch, as BatchInserter stages them, and each full batch is written to a temporary CSV file from its
+ * columns.  Every segmentRows rows the file is loaded with the database's bulk statement (see SqlDialect.bulkLoad:
+ * CSVREAD for H2, COPY for PostgreSQL) and committed.
+ *
+ * A segment is loaded whole or not at all.  If the database rejects it, it is rolled back and its lines are parsed
+ * again and stored with a BatchInserter, so only the rows the database actually rejected are reported in
+ * errors.  Each of those batches is committed with the checkpoint as it was before the next batch's first row was
+ * added, so a load interrupted part way through them resumes after the last batch stored.
+ */
+public class BulkLoader implements RowSink {
+
+    private final Connection connection;
+    private final SqlDialect dialect;
+    private final String dataTable;
+    private final ArrayList<ColumnSpecification> specs;
+    private final RowParser parser;
+    private final int batchSize;
+    private final ErrorCollector errors;
+    private final Date loadDate;
+    private final Path csvFile;
+    private Writer writer;
+    // Rows not written to the CSV file yet
+    private final RowBatch rows;
+
+    // Keep the lines of the current segment so a rejected segment can be stored in batches instead.  As they were
+    // added: a line is only made a String if its segment is rejected.
+    private final int[] pendingLineNumbers;
+    private final CharSequence[] pendingLines;
+    private int pendingCount = 0;
+    // The checkpoint's progress before every batchSize-th row of the segment, in case it is stored in batches
+    private final Checkpoint.Mark[] batchMarks;
+
+    // Reused for every row
+    private final StringBuilder csvLine = new StringBuilder();
+    // The load date value ending every CSV line, or empty
+    private final String csvLoadDate;
+
+    private int rowsStored = 0;
+    private long databaseNanos = 0;
+    private Checkpoint checkpoint;
+
+    /**
+     * @param segmentRows rows loaded and committed per bulk statement
+     * @param batchSize batch size for storing a rejected segment with a BatchInserter
+     * @param loadDate stored in the load date column of every row (see SqlDialect), or null if the table has none
+     */
+    public BulkLoader(Connection connection, String dataTable, ArrayList<ColumnSpecification> specs,
+                      RowParser parser, int segmentRows, int batchSize,
+                      ErrorCollector errors, Date loadDate) throws IOException, SQLException {
+        this.connection = connection;
+        this.dialect = SqlDialect.forConnection(connection);
+        this.dataTable = dataTable;
+        this.specs = specs;
+        this.parser = parser;
+        this.batchSize = batchSize;
+        this.errors = errors;
+        this.loadDate = loadDate;
+        this.csvLoadDate = loadDate == null ? "" : ",\"" + loadDate + "\"";
+        this.pendingLineNumbers = new int[segmentRows];
+        this.pendingLines = new CharSequence[segmentRows];
+        this.batchMarks = new Checkpoint.Mark[(segmentRows + batchSize - 1) / batchSize];
+        this.rows = new RowBatch(parser.getDataTypes(), Math.max(1, Math.min(batchSize, segmentRows)));
+
+        this.csvFile = Files.createTempFile("fileparser-" + dataTable, ".csv");
+        this.writer = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Save checkpoint with each segment, in the same transaction.
+     */
+    public void setCheckpoint(Checkpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Stage one validated row, written to the CSV file with the rest of its batch.  Once the segment is full, it is
+     * loaded when the next row is added (or on flush or close).
+     */
+    @Override
+    public void addRow(int lineNumber, CharSequence line, RowBuffer row) throws IOException, SQLException {
+        if (pendingCount >= pendingLines.length) {
+            flush();
+        }
+
+        rows.add(row);
+        if (rows.isFull()) {
+            writeRows();
+        }
+
+        if (checkpoint != null && pendingCount % batchSize == 0) {
+            batchMarks[pendingCount / batchSize] = checkpoint.mark();
+        }
+        pendingLineNumbers[pendingCount] = lineNumber;
+        pendingLines[pendingCount] = line;
+        pendingCount++;
+    }
+
+    /**
+     * Write the staged rows to the CSV file, one line each.  Every value is quoted, with any quotes in it doubled.
+     */
+    private void writeRows() throws IOException {
+        DataType[] dataTypes = parser.getDataTypes();
+        for (int index = 0; index < rows.size(); index++) {
+            csvLine.setLength(0);
+            for (int i = 0; i < dataTypes.length; i++) {
+                if (i > 0) csvLine.append(',');
+                csvLine.append('"');
+                int valueStart = csvLine.length();
+                dataTypes[i].appendText(csvLine, rows, index, i);
+                for (int c = csvLine.length() - 1; c >= valueStart; c--) {
+                    if (csvLine.charAt(c) == '"') csvLine.insert(c, '"');
+                }
+                csvLine.append('"');
+            }
+            csvLine.append(csvLoadDate).append('\n');
+            writer.append(csvLine);
+        }
+        rows.clear();
+    }
+
+    /**
+     * Load and commit any rows in the current segment.
+     */
+    public void flush() throws IOException, SQLException {
+        if (pendingCount == 0) return;
+
+        writeRows();
+        writer.close();
+        long start = System.nanoTime();
+        try {
+            rowsStored += load();
+        } catch (SQLException ex) {
+            storeInBatches();
+            if (checkpoint != null) {
+                checkpoint.save(connection);
+                if (!connection.getAutoCommit()) connection.commit();
+            }
+        }
+        databaseNanos += System.nanoTime() - start;
+
+        for (int i = 0; i < pendingCount; i++) {
+            pendingLines[i] = null;
+        }
+        pendingCount = 0;
+        writer = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8);
+    }
+
+    public int getRowsStored() {
+        return rowsStored;
+    }
+
+    @Override
+    public long getDatabaseNanos() {
+        return databaseNanos;
+    }
+
+    /**
+     * Load the final segment, then delete the CSV file.
+     */
+    @Override
+    public void close() throws IOException, SQLException {
+        try {
+            flush();
+        } finally {
+            writer.close();
+            Files.deleteIfExists(csvFile);
+        }
+    }
+
+    /**
+     * Load the CSV file in one transaction.
+     *
+     * @return the number of rows stored
+     */
+    private int load() throws IOException, SQLException {
+        boolean previousAutoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            long start = System.nanoTime();
+            int loaded = (int) dialect.bulkLoad(connection, dataTable, specs, loadDate != null, csvFile);
+            long executed = System.nanoTime();
+            if (checkpoint != null) checkpoint.save(connection);
+            connection.commit();
+            IngestMetrics metrics = IngestMetrics.get();
+            metrics.batchInserted(pendingCount, executed - start);
+            metrics.committed(System.nanoTime() - executed);
+            metrics.rowsStored(loaded);
+            return loaded;
+        } catch (SQLException | IOException ex) {
+            connection.rollback();
+            throw ex;
+        } finally {
+            connection.setAutoCommit(previousAutoCommit);
+        }
+    }
+
+    /**
+     * Store the rejected segment with a BatchInserter, which reports the rows the database rejects one by one.
+     * The lines were valid when first parsed, so they parse again.  The inserter saves the checkpoint with each
+     * batch, taken back to where it was before the row that sends the batch.
+     */
+    private void storeInBatches() throws IOException, SQLException {
+        RowBuffer row = new RowBuffer(parser.getColumnCount());
+        Checkpoint.Mark segmentEnd = checkpoint == null ? null : checkpoint.mark();
+        try (BatchInserter inserter = new BatchInserter(connection, dataTable, specs, parser.getDataTypes(),
+                batchSize, errors, loadDate)) {
+            inserter.setCheckpoint(checkpoint);
+            for (int i = 0; i < pendingCount; i++) {
+                if (checkpoint != null && i > 0 && i % batchSize == 0) {
+                    checkpoint.reset(batchMarks[i / batchSize], segmentEnd);
+                }
+                String line = pendingLines[i].toString();
+                parser.parse(line, row);
+                inserter.addRow(pendingLineNumbers[i], line, row);
+            }
+            if (checkpoint != null) checkpoint.reset(segmentEnd, segmentEnd);
+            inserter.flush();
+            rowsStored += inserter.getRowsStored();
+        }
+    }
+
+}
@@ -0,0 +1,255 @@
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Durable progress through one chunk of a data file (or the whole file), in the FILE_CHECKPOINTS table: the byte
+ * offset and line number up to which every line of the chunk has been stored or rejected, the content hash of the
+ * chunk's bytes up to that offset, and how many lines were rejected so far.
+ *
+ * A checkpoint is saved in the same transaction as the rows it covers, so if loading is interrupted (e.g. the JVM
+ * dies), the next load of the same, unchanged file resumes each chunk from its last checkpoint without storing any
+ * row twice, and without reading the bytes before the checkpoint again for the hash.  The checkpoints of a file are
+ * deleted once it is completely loaded.
+ */
+public class Checkpoint {
+
+    public static final String TABLE = "FILE_CHECKPOINTS";
+
+    private final String fileName;
+    private final FileChunk chunk;
+
+    // Where this run starts in the chunk, the hash of the chunk's bytes before that, and the lines rejected before
+    // that
+    private final long resumeOffset;
+    private final ContentHash resumeHash;
+    private final int resumeLineNumber;
+    private final int earlierErrorCount;
+
+    // Progress of this run: every line up to lineNumber (ending just before byteOffset, where the chunk's bytes hash
+    // to hashAtOffset) is stored or in errors
+    private long byteOffset;
+    private final ContentHash hashAtOffset = new ContentHash();
+    private int lineNumber;
+    private ErrorCollector errors;
+    private ContentHash hash;
+    // Lines in errors that are after lineNumber, after a reset to an earlier mark
+    private int errorsAhead = 0;
+
+    private Checkpoint(String fileName, FileChunk chunk, long resumeOffset, ContentHash resumeHash,
+                       int resumeLineNumber, int earlierErrorCount) {
+        this.fileName = fileName;
+        this.chunk = chunk;
+        this.resumeOffset = resumeOffset;
+        this.resumeHash = resumeHash;
+        this.resumeLineNumber = resumeLineNumber;
+        this.earlierErrorCount = earlierErrorCount;
+        this.byteOffset = resumeOffset;
+        this.hashAtOffset.set(resumeHash);
+        this.lineNumber = resumeLineNumber;
+    }
+
+    public static void createTableIfNotExists(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (FILE_NAME VARCHAR(255), CHUNK_START BIGINT, "
+                    + "CHUNK_END BIGINT, FILE_SIZE BIGINT, MODIFIED_MILLIS BIGINT, BYTE_OFFSET BIGINT, "
+                    + "CONTENT_HASH VARCHAR(32), LINE_NUMBER INT, ERROR_COUNT INT, PRIMARY KEY (FILE_NAME, "
+                    + "CHUNK_START))");
+        }
+    }
+
+    /**
+     * Find the checkpoints of an earlier, interrupted load of the file.  Checkpoints left from a different version
+     * of the file (other size or modified time) are deleted, as they no longer match its lines.  One with a byte
+     * offset but no hash resumes from its line number.
+     *
+     * @return one checkpoint per chunk of the interrupted load, in file order, or an empty list
+     */
+    public static ArrayList<Checkpoint> find(Connection connection, Path file, long size, long modifiedMillis)
+            throws SQLException {
+
+        String fileName = file.getFileName().toString();
+        ArrayList<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+        boolean stale = false;
+
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT CHUNK_START, CHUNK_END, FILE_SIZE, "
+                + "MODIFIED_MILLIS, BYTE_OFFSET, CONTENT_HASH, LINE_NUMBER, ERROR_COUNT FROM " + TABLE
+                + " WHERE FILE_NAME = ? ORDER BY CHUNK_START")) {
+            stmt.setString(1, fileName);
+            try (ResultSet result = stmt.executeQuery()) {
+                while (result.next()) {
+                    if (result.getLong(3) != size || result.getLong(4) != modifiedMillis) {
+                        stale = true;
+                        break;
+                    }
+                    FileChunk chunk = new FileChunk(file, result.getLong(1), result.getLong(2));
+                    long byteOffset = result.getLong(5);
+                    String contentHash = result.getString(6);
+                    ContentHash resumeHash = byteOffset < 0 || contentHash == null ? new ContentHash()
+                            : ContentHash.fromHex(contentHash, byteOffset - chunk.getStart());
+                    checkpoints.add(new Checkpoint(fileName, chunk, contentHash == null ? -1 : byteOffset,
+                            resumeHash, result.getInt(7), result.getInt(8)));
+                }
+            }
+        }
+
+        if (stale) {
+            delete(connection, fileName);
+            checkpoints.clear();
+        }
+        return checkpoints;
+
+    }
+
+    /**
+     * Record the start of loading the file: one checkpoint per chunk, at the start of the chunk.
+     */
+    public static ArrayList<Checkpoint> start(Connection connection, Path file, long size, long modifiedMillis,
+                                              List<FileChunk> chunks) throws SQLException {
+
+        String fileName = file.getFileName().toString();
+        ArrayList<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+
+        delete(connection, fileName);
+        try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO " + TABLE + " (FILE_NAME, "
+                + "CHUNK_START, CHUNK_END, FILE_SIZE, MODIFIED_MILLIS, BYTE_OFFSET, CONTENT_HASH, LINE_NUMBER, "
+                + "ERROR_COUNT) VALUES (?, ?, ?, ?, ?, ?, ?, 0, 0)")) {
+            for (FileChunk chunk : chunks) {
+                stmt.setString(1, fileName);
+                stmt.setLong(2, chunk.getStart());
+                stmt.setLong(3, chunk.getEnd());
+                stmt.setLong(4, size);
+                stmt.setLong(5, modifiedMillis);
+                stmt.setLong(6, chunk.getStart());
+                stmt.setString(7, new ContentHash().toHex());
+                stmt.executeUpdate();
+                checkpoints.add(new Checkpoint(fileName, chunk, chunk.getStart(), new ContentHash(), 0, 0));
+            }
+        }
+        return checkpoints;
+
+    }
+
+    /**
+     * Delete the file's checkpoints, e.g. once it is completely loaded.
+     */
+    public static void delete(Connection connection, String fileName) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM " + TABLE + " WHERE FILE_NAME = ?")) {
+            stmt.setString(1, fileName);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Start tracking this run's progress.  errors receives the lines rejected in this run, and hash the bytes of the
+     * chunk as they are read, so it is at the byte offset of each line done.
+     */
+    public void track(ErrorCollector errors, ContentHash hash) {
+        this.errors = errors;
+        this.hash = hash;
+    }
+
+    /**
+     * Note that every line up to lineNumber, which ends just before byteOffset, has been parsed and its row (if
+     * valid) handed to the database.  Saved with the next commit, with the hash of the chunk's bytes up to
+     * byteOffset.
+     *
+     * @param byteOffset offset in the file of the start of the next line, or -1 if not known
+     */
+    public void lineDone(long byteOffset, int lineNumber) {
+        this.byteOffset = byteOffset;
+        this.lineNumber = lineNumber;
+        this.errorsAhead = 0;
+        if (byteOffset >= 0 && hash != null) hashAtOffset.set(hash);
+    }
+
+    /**
+     * @return the progress noted so far, to go back to with reset
+     */
+    public Mark mark() {
+        return new Mark(byteOffset, lineNumber, hashAtOffset, errors == null ? 0 : errors.size());
+    }
+
+    /**
+     * Go back to the progress noted at mark, e.g. to save it with rows stored again from an earlier point.  The lines
+     * rejected between mark and latest, the latest mark, are left out of the error count saved.  Reset to latest
+     * once the rows up to it are stored again.
+     */
+    public void reset(Mark mark, Mark latest) {
+        this.byteOffset = mark.byteOffset;
+        this.lineNumber = mark.lineNumber;
+        this.hashAtOffset.set(mark.hash);
+        this.errorsAhead = latest.errorCount - mark.errorCount;
+    }
+
+    /**
+     * Save the progress noted so far, as part of the connection's current transaction.
+     */
+    public void save(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("UPDATE " + TABLE + " SET BYTE_OFFSET = ?, "
+                + "CONTENT_HASH = ?, LINE_NUMBER = ?, ERROR_COUNT = ? WHERE FILE_NAME = ? AND CHUNK_START = ?")) {
+            stmt.setLong(1, byteOffset);
+            stmt.setString(2, byteOffset >= 0 && hash != null ? hashAtOffset.toHex() : null);
+            stmt.setInt(3, lineNumber);
+            stmt.setInt(4, earlierErrorCount + (errors == null ? 0 : errors.size()) - errorsAhead);
+            stmt.setString(5, fileName);
+            stmt.setLong(6, chunk.getStart());
+            stmt.executeUpdate();
+        }
+    }
+
+    public FileChunk getChunk() {
+        return chunk;
+    }
+
+    /**
+     * @return offset in the file to resume the chunk from, or -1 if only the line number is known
+     */
+    public long getResumeOffset() {
+        return resumeOffset;
+    }
+
+    /**
+     * @return hash of the chunk's bytes before the resume offset, to carry on hashing from
+     */
+    public ContentHash getResumeHash() {
+        return resumeHash;
+    }
+
+    /**
+     * @return number of lines of the chunk already done, 0 if the chunk starts from the beginning
+     */
+    public int getResumeLineNumber() {
+        return resumeLineNumber;
+    }
+
+    /**
+     * @return number of lines of the chunk rejected before resuming
+     */
+    public int getEarlierErrorCount() {
+        return earlierErrorCount;
+    }
+
+    /**
+     * Progress noted at one point of a run.
+     */
+    public static class Mark {
+        private final long byteOffset;
+        private final int lineNumber;
+        private final ContentHash hash = new ContentHash();
+        private final int errorCount;
+
+        private Mark(long byteOffset, int lineNumber, ContentHash hash, int errorCount) {
+            this.byteOffset = byteOffset;
+            this.lineNumber = lineNumber;
+            this.hash.set(hash);
+            this.errorCount = errorCount;
+        }
+    }
+
+}
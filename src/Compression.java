@@ -0,0 +1,163 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * How a data file is compressed: not at all, gzip or zstd.  Found from the file name suffix (.gz, .zst), or failing
+ * that from the magic bytes at the start of the file, so a compressed file dropped under a plain name still loads.
+ *
+ * Compressed files are read as a stream from the start: they cannot be memory mapped or split into chunks.  The
+ * ledger hash is of the compressed bytes, as they are on disk.
+ */
+public abstract class Compression {
+
+    public static final Compression NONE = new Compression("none", new String[0], new byte[0]) {
+        @Override
+        protected InputStream open(InputStream in) {
+            return in;
+        }
+    };
+
+    public static final Compression GZIP = new Compression("gzip", new String[] {".gz", ".gzip"},
+            new byte[] {(byte) 0x1f, (byte) 0x8b}) {
+        @Override
+        protected InputStream open(InputStream in) throws IOException {
+            return new GZIPInputStream(in, 64 * 1024);
+        }
+    };
+
+    // Needs zstd-jni (com.github.luben:zstd-jni) on the classpath, which is only looked for once a zstd file comes in
+    public static final Compression ZSTD = new Compression("zstd", new String[] {".zst", ".zstd"},
+            new byte[] {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd}) {
+        @Override
+        protected InputStream open(InputStream in) throws IOException {
+            try {
+                return (InputStream) Class.forName("com.github.luben.zstd.ZstdInputStream")
+                        .getConstructor(InputStream.class).newInstance(in);
+            } catch (ClassNotFoundException ex) {
+                throw new IOException("Reading zstd compressed files needs zstd-jni (com.github.luben:zstd-jni) "
+                        + "on the classpath");
+            } catch (InvocationTargetException ex) {
+                if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+                throw new IOException("Error opening zstd stream", ex.getCause());
+            } catch (ReflectiveOperationException ex) {
+                throw new IOException("Error opening zstd stream", ex);
+            }
+        }
+    };
+
+    private static final Compression[] COMPRESSIONS = {GZIP, ZSTD};
+
+    private final String name;
+    private final String[] suffixes;
+    private final byte[] magic;
+
+    private Compression(String name, String[] suffixes, byte[] magic) {
+        this.name = name;
+        this.suffixes = suffixes;
+        this.magic = magic;
+    }
+
+    /**
+     * @return the compression of file, by name suffix or else by its first bytes
+     */
+    public static Compression detect(Path file) throws IOException {
+
+        String fileName = file.getFileName().toString();
+        for (Compression compression : COMPRESSIONS) {
+            if (compression.getSuffix(fileName) != null) return compression;
+        }
+
+        ByteBuffer start = ByteBuffer.allocate(4);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (start.hasRemaining() && channel.read(start) > 0) {
+                // read until 4 bytes or the end of a shorter file
+            }
+        }
+        for (Compression compression : COMPRESSIONS) {
+            if (compression.matches(start)) return compression;
+        }
+        return NONE;
+
+    }
+
+    /**
+     * @return fileName without the suffix of the compression it was found to have, e.g. testformat1_1.txt for
+     *         testformat1_1.txt.gz
+     */
+    public static String stripSuffix(String fileName) {
+        for (Compression compression : COMPRESSIONS) {
+            String suffix = compression.getSuffix(fileName);
+            if (suffix != null) return fileName.substring(0, fileName.length() - suffix.length());
+        }
+        return fileName;
+    }
+
+    public boolean isCompressed() {
+        return this != NONE;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * A stream of the uncompressed bytes of in.  At the end of the uncompressed data, whatever is left of in (e.g.
+     * padding after the last gzip member) is read and discarded, so a DigestInputStream under it sees every byte.
+     * Closing it closes in.
+     */
+    public InputStream decompress(final InputStream in) throws IOException {
+        if (!isCompressed()) return in;
+        return new FilterInputStream(open(in)) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b < 0) drain(in);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read < 0) drain(in);
+                return read;
+            }
+        };
+    }
+
+    protected abstract InputStream open(InputStream in) throws IOException;
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] skipped = new byte[8192];
+        while (in.read(skipped) >= 0) {
+            // discard
+        }
+    }
+
+    private String getSuffix(String fileName) {
+        String lowerCase = fileName.toLowerCase();
+        for (String suffix : suffixes) {
+            if (lowerCase.endsWith(suffix) && lowerCase.length() > suffix.length()) return suffix;
+        }
+        return null;
+    }
+
+    private boolean matches(ByteBuffer start) {
+        if (magic.length == 0 || start.position() < magic.length) return false;
+        for (int i = 0; i < magic.length; i++) {
+            if (start.get(i) != magic[i]) return false;
+        }
+        return true;
+    }
+
+    public String toString() {
+        return name;
+    }
+
+}
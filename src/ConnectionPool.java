@@ -0,0 +1,224 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A small pool of database connections, so threads each get their own connection without opening a new one per
+ * file.  At most maxSize connections are open or lent out at once; borrow waits for one to be returned.
+ *
+ * Connections are lent out wrapped, and close() on the wrapper returns the connection to the pool rather than
+ * closing it.  An idle connection is checked with isValid every time before it is lent out again, and replaced if it
+ * is broken.  Connections idle for longer than idleTimeout are closed by a background thread, whether or not anything
+ * is borrowed.
+ *
+ * A borrower that holds a connection while it waits for more (a file and its chunk workers) needs a pool of at least
+ * one more than it waits for, or it waits out the borrow timeout: see ParserSettings.getPoolSize.
+ */
+public class ConnectionPool {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final String url;
+    private final String userName;
+    private final String password;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+
+    // One permit per connection that can be lent out.  Idle connections are most recently returned first.
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<IdleConnection> idleConnections = new LinkedBlockingDeque<IdleConnection>();
+    private final ScheduledExecutorService reaper;
+    private volatile boolean closed = false;
+
+    public ConnectionPool(String url, String userName, String password, int maxSize, long idleTimeoutMillis,
+                          long borrowTimeoutMillis) {
+        this.url = url;
+        this.userName = userName;
+        this.password = password;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "connection-pool-reaper");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long reapMillis = Math.max(1, idleTimeoutMillis / 2);
+        reaper.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                closeTimedOutConnections();
+            }
+        }, reapMillis, reapMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrow a connection.  Close it to give it back to the pool.
+     *
+     * @throws SQLException if no connection could be opened, or none was returned within the borrow timeout
+     */
+    public Connection borrow() throws SQLException {
+
+        if (closed) throw new SQLException("Connection pool is closed");
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + borrowTimeoutMillis
+                        + "ms waiting for a database connection");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a database connection", ex);
+        }
+
+        try {
+            IdleConnection idle;
+            while ((idle = idleConnections.pollFirst()) != null) {
+                if (isValid(idle.connection)) {
+                    return lend(idle.connection);
+                }
+                closeQuietly(idle.connection);
+            }
+
+            SqlDialect dialect = SqlDialect.forUrl(url);
+            Class.forName(dialect.getDriverClassName());
+            return lend(DriverManager.getConnection(url, dialect.getConnectionProperties(userName, password)));
+
+        } catch (SQLException | ClassNotFoundException | RuntimeException ex) {
+            permits.release();
+            if (ex instanceof SQLException) throw (SQLException) ex;
+            throw new SQLException("Could not open a database connection: " + ex, ex);
+        }
+
+    }
+
+    /**
+     * Close every idle connection and stop lending.  Connections currently lent out are closed when returned.
+     */
+    public void close() {
+        closed = true;
+        reaper.shutdownNow();
+        IdleConnection idle;
+        while ((idle = idleConnections.pollFirst()) != null) {
+            closeQuietly(idle.connection);
+        }
+    }
+
+    private Connection lend(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new LentConnection(connection));
+    }
+
+    private void giveBack(Connection connection) {
+        try {
+            if (closed || connection.isClosed()) {
+                closeQuietly(connection);
+                return;
+            }
+            // Leave the connection as the next borrower expects it
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            idleConnections.offerFirst(new IdleConnection(connection, System.currentTimeMillis()));
+        } catch (SQLException ex) {
+            closeQuietly(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    // Least recently returned connections are at the end
+    private void closeTimedOutConnections() {
+        long now = System.currentTimeMillis();
+        Iterator<IdleConnection> oldestFirst = idleConnections.descendingIterator();
+        while (oldestFirst.hasNext()) {
+            IdleConnection idle = oldestFirst.next();
+            if (now - idle.returnedAt < idleTimeoutMillis) break;
+            if (idleConnections.remove(idle)) {
+                closeQuietly(idle.connection);
+            }
+        }
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            // already broken, nothing more to do
+        }
+    }
+
+    private static class IdleConnection {
+        final Connection connection;
+        final long returnedAt;
+
+        IdleConnection(Connection connection, long returnedAt) {
+            this.connection = connection;
+            this.returnedAt = returnedAt;
+        }
+    }
+
+    /**
+     * What a borrower holds: passes everything through to the real connection, except close, which gives the
+     * connection back to the pool (once).
+     */
+    private class LentConnection implements InvocationHandler {
+        private final Connection connection;
+        private volatile boolean returned = false;
+
+        LentConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        giveBack(connection);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled " + connection;
+            }
+            if (returned) throw new SQLException("Connection has been returned to the pool");
+
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,198 @@
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * Content hash of a data file, as recorded in the ledger: a pair of polynomial hashes of its bytes, modulo the prime
+ * 2^61 - 1, with two fixed bases.  Each byte b adds (b + 1) after multiplying the hash so far by the base, so the
+ * hash of A followed by B is hash(A) * base^length(B) + hash(B).  That lets each chunk of a file be hashed by the
+ * thread that reads it, and the chunk hashes be appended in file order to the hash of the whole file, however it was
+ * split; and lets a checkpoint keep the hash of the lines it covers, so a resumed load carries on from it.
+ *
+ * It tells a touched file from a changed one; it is not a cryptographic hash, and does not resist a file made to
+ * collide on purpose.  The digest is the two hashes, 16 bytes.
+ */
+public class ContentHash extends MessageDigest {
+
+    private static final long PRIME = (1L << 61) - 1;
+    private static final long[] BASES = {0x16A09E667F3BCC90L, 0x1BB67AE8584CAA73L};
+
+    // POWERS[i][k][b] is (b + 1) * BASES[i]^k, for k up to 7: a group of 8 bytes is added with one multiplication
+    private static final long[][][] POWERS = new long[BASES.length][8][256];
+
+    static {
+        for (int i = 0; i < BASES.length; i++) {
+            long power = 1;
+            for (int k = 0; k < 8; k++) {
+                for (int b = 0; b < 256; b++) {
+                    POWERS[i][k][b] = multiply(b + 1, power);
+                }
+                power = multiply(power, BASES[i]);
+            }
+        }
+    }
+
+    private static final long BASE0_8 = power(BASES[0], 8);
+    private static final long BASE1_8 = power(BASES[1], 8);
+
+    private long hash0;
+    private long hash1;
+    private long length;
+
+    public ContentHash() {
+        super("fileparser-content-hash");
+    }
+
+    /**
+     * @param hex the hash of length bytes, as from toHex
+     */
+    public static ContentHash fromHex(String hex, long length) {
+        ContentHash hash = new ContentHash();
+        hash.hash0 = Long.parseUnsignedLong(hex.substring(0, 16), 16);
+        hash.hash1 = Long.parseUnsignedLong(hex.substring(16), 16);
+        hash.length = length;
+        return hash;
+    }
+
+    /**
+     * Add bytes from index from up to index to of buffer, without moving its position.
+     */
+    public void update(ByteBuffer buffer, int from, int to) {
+        long[][] powers0 = POWERS[0];
+        long[][] powers1 = POWERS[1];
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            int b0 = buffer.get(i) & 0xff, b1 = buffer.get(i + 1) & 0xff;
+            int b2 = buffer.get(i + 2) & 0xff, b3 = buffer.get(i + 3) & 0xff;
+            int b4 = buffer.get(i + 4) & 0xff, b5 = buffer.get(i + 5) & 0xff;
+            int b6 = buffer.get(i + 6) & 0xff, b7 = buffer.get(i + 7) & 0xff;
+            hash0 = addGroup(hash0, BASE0_8, powers0, b0, b1, b2, b3, b4, b5, b6, b7);
+            hash1 = addGroup(hash1, BASE1_8, powers1, b0, b1, b2, b3, b4, b5, b6, b7);
+        }
+        length += i - from;
+        for (; i < to; i++) {
+            engineUpdate(buffer.get(i));
+        }
+    }
+
+    /**
+     * Make this the hash of its bytes followed by the bytes of next.
+     */
+    public void append(ContentHash next) {
+        hash0 = add(multiply(hash0, power(BASES[0], next.length)), next.hash0);
+        hash1 = add(multiply(hash1, power(BASES[1], next.length)), next.hash1);
+        length += next.length;
+    }
+
+    /**
+     * Make this a copy of hash.
+     */
+    public void set(ContentHash hash) {
+        hash0 = hash.hash0;
+        hash1 = hash.hash1;
+        length = hash.length;
+    }
+
+    /**
+     * @return the number of bytes hashed
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return the hash so far as 32 lower case hex digits, as recorded in the ledger, without resetting it
+     */
+    public String toHex() {
+        return FileLedger.toHex(toBytes());
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        int b = input & 0xff;
+        hash0 = add(multiply(hash0, BASES[0]), POWERS[0][0][b]);
+        hash1 = add(multiply(hash1, BASES[1]), POWERS[1][0][b]);
+        length++;
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        long[][] powers0 = POWERS[0];
+        long[][] powers1 = POWERS[1];
+        int i = offset;
+        int end = offset + len;
+        for (; i + 8 <= end; i += 8) {
+            int b0 = input[i] & 0xff, b1 = input[i + 1] & 0xff, b2 = input[i + 2] & 0xff, b3 = input[i + 3] & 0xff;
+            int b4 = input[i + 4] & 0xff, b5 = input[i + 5] & 0xff, b6 = input[i + 6] & 0xff;
+            int b7 = input[i + 7] & 0xff;
+            hash0 = addGroup(hash0, BASE0_8, powers0, b0, b1, b2, b3, b4, b5, b6, b7);
+            hash1 = addGroup(hash1, BASE1_8, powers1, b0, b1, b2, b3, b4, b5, b6, b7);
+        }
+        length += i - offset;
+        for (; i < end; i++) {
+            engineUpdate(input[i]);
+        }
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return 16;
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        byte[] digest = toBytes();
+        engineReset();
+        return digest;
+    }
+
+    @Override
+    protected void engineReset() {
+        hash0 = 0;
+        hash1 = 0;
+        length = 0;
+    }
+
+    private byte[] toBytes() {
+        return ByteBuffer.allocate(16).putLong(hash0).putLong(hash1).array();
+    }
+
+    // hash * base^8 plus the 8 bytes b0 (first) to b7, each under 2^61 so their sum fits in 64 unsigned bits
+    private static long addGroup(long hash, long base8, long[][] powers, int b0, int b1, int b2, int b3, int b4,
+                                 int b5, int b6, int b7) {
+        long bytes = powers[7][b0] + powers[6][b1] + powers[5][b2] + powers[4][b3]
+                + powers[3][b4] + powers[2][b5] + powers[1][b6] + powers[0][b7];
+        return add(multiply(hash, base8), reduce(bytes));
+    }
+
+    // a + b modulo PRIME, for a and b at most PRIME + 7
+    private static long add(long a, long b) {
+        return reduce(a + b);
+    }
+
+    // a * b modulo PRIME, for a and b under 2^61: the 122 bit product in 31 bit halves, as 2^61 is 1 modulo PRIME
+    private static long multiply(long a, long b) {
+        long aHigh = a >>> 31;
+        long aLow = a & 0x7FFFFFFFL;
+        long bHigh = b >>> 31;
+        long bLow = b & 0x7FFFFFFFL;
+        long middle = aLow * bHigh + aHigh * bLow;
+        return reduce((aHigh * bHigh << 1) + (middle >>> 30) + ((middle & 0x3FFFFFFFL) << 31) + aLow * bLow);
+    }
+
+    private static long power(long base, long exponent) {
+        long result = 1;
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) result = multiply(result, base);
+            base = multiply(base, base);
+            exponent >>>= 1;
+        }
+        return result;
+    }
+
+    // x modulo PRIME, for any x taken as unsigned
+    private static long reduce(long x) {
+        long reduced = (x & PRIME) + (x >>> 61);
+        return reduced >= PRIME ? reduced - PRIME : reduced;
+    }
+
+}
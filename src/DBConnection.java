@@ -1,43 +1,78 @@
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.Map;
 
 /**
- * Create a singleton Database connection for use in the application.
- * Assumption: this program is not multi-threaded.
+ * Database connections for the application, from one process-wide ConnectionPool (see ParserSettings for its size
+ * and timeouts).  Borrow a connection with borrowConnection and close it to give it back to the pool.
+ *
+ * getConnection returns a shared connection for simple single-threaded use, e.g. in tests.
+ * closeConnection gives it back to the pool.
  * User: Heidi
  * Date: 10/3/17
  */
 public class DBConnection {
     static Connection con = null;
+    private static ConnectionPool pool = null;
 
-    public static Connection getConnection(){
-        if (con != null) return con;
-        // todo get db, user, pass from settings file
-        return getConnection("test", "sa", "");
+    public static synchronized Connection getConnection() throws SQLException {
+        if (con != null && !con.isClosed()) return con;
+        con = borrowConnection();
+        return con;
     }
 
-    private static Connection getConnection(String dbName, String userName, String password) {
-        try {
-            Class.forName("org.h2.Driver");
-            con = DriverManager.getConnection("jdbc:h2:~/" + dbName, userName, password);
-        } catch (Exception e) {
-            e.printStackTrace();   //todo
-            return null;
+    /**
+     * Borrow a connection from the pool, e.g. for one worker thread.  The caller must close it when done, which
+     * gives it back to the pool.
+     *
+     * @throws SQLException if no connection could be opened or none became free in time
+     */
+    public static Connection borrowConnection() throws SQLException {
+        return getPool().borrow();
+    }
+
+    /**
+     * @return the dialect of the configured database (see ParserSettings.getDatabaseUrl)
+     */
+    public static SqlDialect getDialect() {
+        return SqlDialect.forUrl(ParserSettings.getDatabaseUrl());
+    }
+
+    static synchronized ConnectionPool getPool() {
+        if (pool == null) {
+            pool = new ConnectionPool(ParserSettings.getDatabaseUrl(), ParserSettings.getDatabaseUser(),
+                    ParserSettings.getDatabasePassword(), ParserSettings.getPoolSize(),
+                    ParserSettings.getPoolIdleTimeoutMillis(), ParserSettings.getPoolBorrowTimeoutMillis());
         }
-        return con;
+        return pool;
+    }
+
+    /**
+     * Use pool for the application's connections from now on, e.g. one that counts them in a test.
+     */
+    static synchronized void setPool(ConnectionPool pool) {
+        shutdown();
+        DBConnection.pool = pool;
     }
 
-    public static void closeConnection() {
+    public static synchronized void closeConnection() {
         try {
             if (con != null) con.close();
-        } catch (Exception e) {
-            e.printStackTrace();  //todo
+        } catch (SQLException e) {
+            // giving a connection back to the pool does not fail; nothing more to do if it was already broken
         } finally {
             con = null;
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Give back the shared connection and close every connection in the pool.  For the end of the application.
+     */
+    public static synchronized void shutdown() {
+        closeConnection();
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+}
@@ -1,19 +1,38 @@
 import java.awt.datatransfer.StringSelection;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 
 /**
- * Helpers to communicate with an H2 SQL Database.  Keeps the DB formatting and implementation details separated
+ * Helpers to communicate with the SQL Database.  Keeps the DB formatting and implementation details separated; what
+ * differs between databases is in SqlDialect.
  * User: Heidi
  * Date: 10/4/17
  */
 public class DBHelper {
 
+    // Result codes from validateDataValue
+    public static final int VALID = 0;
+    public static final int EMPTY_VALUE = 1;
+    public static final int NOT_AN_INTEGER = 2;
+    public static final int NOT_A_BOOLEAN = 3;
+    public static final int UNKNOWN_DATATYPE = 4;
+    public static final int NOT_A_BIGINT = 5;
+    public static final int NOT_A_DECIMAL = 6;
+    public static final int NOT_A_DATE = 7;
+    public static final int NOT_A_TIMESTAMP = 8;
+    // Whole line errors, and values that do not fit, from a RowParser
+    public static final int LINE_TOO_SHORT = 9;
+    public static final int MALFORMED_LINE = 10;
+    public static final int VALUE_TOO_LONG = 11;
+
     public static int insertDataRow(String dataTable, ArrayList<DataCellEntry> dataCellEntries)
             throws SQLException {
 
+        SqlDialect dialect = DBConnection.getDialect();
         StringBuilder columnNames = new StringBuilder();
         StringBuilder values = new StringBuilder();
 
@@ -22,7 +41,7 @@ public class DBHelper {
             DataCellEntry dataCellEntry = dataCellEntries.get(i);
 
             // build up list of column names & values
-            columnNames.append(dataCellEntry.getColumnName());
+            columnNames.append(dialect.quoteIdentifier(dataCellEntry.getColumnName()));
             values.append(dataCellEntry.getFormattedValue());
 
             if (i != dataCellEntries.size() - 1) {
@@ -32,96 +51,224 @@ public class DBHelper {
 
         }
 
-        Statement stmt = DBConnection.getConnection().createStatement();
-        int rowsUpdated = stmt.executeUpdate("INSERT INTO " + dataTable + " (" + columnNames.toString() + ") VALUES ( "
-                + values.toString() + " )");
-        stmt.close();
+        try (Connection connection = DBConnection.borrowConnection();
+             Statement stmt = connection.createStatement()) {
+            long start = System.nanoTime();
+            int inserted = stmt.executeUpdate("INSERT INTO " + dialect.quoteIdentifier(dataTable) + " ("
+                    + columnNames.toString() + ") VALUES ( " + values.toString() + " )");
+            IngestMetrics.get().batchInserted(1, System.nanoTime() - start);
+            IngestMetrics.get().rowsStored(inserted);
+            return inserted;
+        }
+
+    }
+
+    /**
+     * Bind one row of validated values to an insert built by buildInsertSql.  Values are bound as their native
+     * types, so they do not need quoting or formatting as SQL literals.
+     *
+     * @param dataTypes datatype of each column, in the same order as the specs
+     * @param row validated values, by column index in the same order as the specs
+     */
+    public static void bindDataRow(PreparedStatement stmt, DataType[] dataTypes, RowBuffer row)
+            throws SQLException {
 
-        return rowsUpdated;
+        for (int i = 0; i < dataTypes.length; i++) {
+            dataTypes[i].bind(stmt, i + 1, row, i);
+        }
 
     }
 
     public static int selectCountFromTable(String dataTable) throws SQLException {
 
-        Statement stmt = DBConnection.getConnection().createStatement();
-        ResultSet queryResults = stmt.executeQuery("SELECT count(*) FROM " + dataTable);
-        queryResults.next();
-        int count = queryResults.getInt(1);
-        stmt.close();
-
-        return count;
+        try (Connection connection = DBConnection.borrowConnection();
+             Statement stmt = connection.createStatement()) {
+            ResultSet queryResults = stmt.executeQuery("SELECT count(*) FROM "
+                    + DBConnection.getDialect().quoteIdentifier(dataTable));
+            queryResults.next();
+            return queryResults.getInt(1);
+        }
 
     }
 
     public static boolean createTableIfNotExists(String dataTable, ArrayList<ColumnSpecification> specs)
             throws SQLException {
+        try (Connection connection = DBConnection.borrowConnection()) {
+            return createTableIfNotExists(connection, dataTable, specs);
+        }
+    }
 
-        StringBuilder columnDefs = new StringBuilder();
-
-        for (ColumnSpecification spec : specs) {
+    public static boolean createTableIfNotExists(Connection connection, String dataTable,
+                                                 ArrayList<ColumnSpecification> specs) throws SQLException {
+        return createTableIfNotExists(connection, dataTable, specs, false);
+    }
 
-            //Add name
-            columnDefs.append(spec.getName()).append(" ");
+    /**
+     * Create the table, or alter a table created for an earlier version of the spec to fit it (see TableSchema).
+     *
+     * @param withLoadDate also make sure the table has the indexed load date column (see SqlDialect), adding it to
+     *                     a table created without it
+     * @throws IncompatibleSpecException if the existing table cannot be altered to fit; it is left as it is
+     */
+    public static boolean createTableIfNotExists(Connection connection, String dataTable,
+                                                 ArrayList<ColumnSpecification> specs, boolean withLoadDate)
+            throws SQLException {
 
-            //Add datatype
-            switch(spec.getDataType()) {
-                case "INTEGER":
-                    columnDefs.append("INT,");
-                    break;
-                case "BOOLEAN":
-                    columnDefs.append("BOOLEAN,");
-                    break;
-                default:
-                    String defaultText = "VARCHAR("+spec.getWidth()+"),";
-                    columnDefs.append(defaultText);
+        if (specs.isEmpty()) {
+            return false;
+        }
+        SqlDialect dialect = SqlDialect.forConnection(connection);
+        try (Statement stmt = connection.createStatement()) {
+            createOrAlterTable(stmt, dialect, dataTable, specs, withLoadDate);
+            if (withLoadDate) {
+                for (String sql : dialect.buildAddLoadDateSql(dataTable)) {
+                    stmt.executeUpdate(sql);
+                }
             }
         }
+        return true;
+
+    }
 
-        //remove final comma
-        if (columnDefs.length() > 0) {
-            String columnDefString = columnDefs.toString().substring(0, columnDefs.length() -1);
-            Statement stmt = DBConnection.getConnection().createStatement();
-            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS " + dataTable + " (" + columnDefString + ")");
-            stmt.close();
-            return true;
+    /**
+     * Create a staging table with the spec's columns, for a file's rows to be loaded into before they are moved into
+     * their table in one go (see SqlDialect.insertFromTable and replaceLoadDate).  It has no index.
+     *
+     * @param withLoadDate with the load date column
+     * @param empty drop any rows left in it by an earlier load; otherwise keep them, e.g. to resume into
+     */
+    public static void createStagingTable(Connection connection, String stagingTable,
+                                          ArrayList<ColumnSpecification> specs, boolean withLoadDate, boolean empty)
+            throws SQLException {
+        SqlDialect dialect = SqlDialect.forConnection(connection);
+        try (Statement stmt = connection.createStatement()) {
+            if (empty) {
+                stmt.executeUpdate("DROP TABLE IF EXISTS " + dialect.quoteIdentifier(stagingTable));
+            }
+            createOrAlterTable(stmt, dialect, stagingTable, specs, withLoadDate);
         }
+    }
 
-        return false;
+    // Both checked and altered with IF NOT EXISTS, so two loads that find a table missing or out of date at the same
+    // time can both create or alter it
+    private static void createOrAlterTable(Statement stmt, SqlDialect dialect, String dataTable,
+                                           ArrayList<ColumnSpecification> specs, boolean withLoadDate)
+            throws SQLException {
+        TableSchema schema = TableSchema.read(stmt.getConnection(), dialect, dataTable);
+        if (schema == null) {
+            stmt.executeUpdate(dialect.buildCreateTableSql(dataTable, specs, withLoadDate));
+        } else {
+            for (String sql : schema.buildAlterSql(dialect, specs)) {
+                stmt.executeUpdate(sql);
+            }
+        }
+    }
 
+    public static void dropTableIfExists(Connection connection, String dataTable) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("DROP TABLE IF EXISTS "
+                    + SqlDialect.forConnection(connection).quoteIdentifier(dataTable));
+        }
     }
 
+    /**
+     * Validate a value and format it as a SQL literal.  Throws for invalid data, so it is slower than
+     * validateDataValue on files with many bad values; kept for single values and the original insertDataRow.
+     */
     public static String validateAndFormatDataValue(String value, String dataType) throws InvalidDataException {
 
+        RowBuffer row = new RowBuffer(1);
+        int result = validateDataValue(value, dataType, row, 0);
+        if (result != VALID) {
+            throw new InvalidDataException(describeInvalidData(result, value, dataType));
+        }
+        return DataType.forName(dataType).formatLiteral(row, 0);
+
+    }
+
+    /**
+     * Validate a value and write the parsed value into column of row.  Nothing is thrown or allocated for bad data:
+     * a result code is returned instead, and describeInvalidData builds the message only if it is needed.
+     *
+     * @return VALID, or the reason the value is invalid
+     */
+    public static int validateDataValue(String value, String dataType, RowBuffer row, int column) {
+
         // There are no nullable/not nullable specifications in the database table specs.  Therefore, assume
         // all columns are not-nullable.  Verify assumption with client.
-        if (value == null || value.equals("")) {
-            throw new InvalidDataException("Data cannot be empty.");
+        if (value == null || value.isEmpty()) {
+            return EMPTY_VALUE;
         }
 
-        switch (dataType) {
-            case "INTEGER":
-                try {
-                    Integer.parseInt(value);
-                } catch (NumberFormatException nfe) {  //error if not an int
-                    throw new InvalidDataException(value + " is not an INTEGER");
-                }
-                break;
-            case "TEXT":
-                value = "'" + value + "'"; // enclose in single quotes for DB insert statement
-                break;
-            case "BOOLEAN":
-                if (!value.equals("1") && !value.equals("0")) {  //error if not 1 or 0
-                    throw new InvalidDataException(value + " is not a valid BOOLEAN flag");
-                }
-                value = value.equals("1") + "";   //return boolean as string
-                break;
-            default:
-                throw new InvalidDataException(dataType + " is not an known datatype");
+        DataType type = DataType.forName(dataType);
+        if (type == null) {
+            return UNKNOWN_DATATYPE;
         }
-        return value;
+        return type.parse(value, 0, value.length(), row, column);
 
     }
 
+    /**
+     * @return the name of a result code from validateDataValue, e.g. NOT_AN_INTEGER
+     */
+    public static String getResultName(int result) {
+        switch (result) {
+            case VALID:
+                return "VALID";
+            case EMPTY_VALUE:
+                return "EMPTY_VALUE";
+            case NOT_AN_INTEGER:
+                return "NOT_AN_INTEGER";
+            case NOT_A_BOOLEAN:
+                return "NOT_A_BOOLEAN";
+            case UNKNOWN_DATATYPE:
+                return "UNKNOWN_DATATYPE";
+            case NOT_A_BIGINT:
+                return "NOT_A_BIGINT";
+            case NOT_A_DECIMAL:
+                return "NOT_A_DECIMAL";
+            case NOT_A_DATE:
+                return "NOT_A_DATE";
+            case NOT_A_TIMESTAMP:
+                return "NOT_A_TIMESTAMP";
+            case LINE_TOO_SHORT:
+                return "LINE_TOO_SHORT";
+            case MALFORMED_LINE:
+                return "MALFORMED_LINE";
+            case VALUE_TOO_LONG:
+                return "VALUE_TOO_LONG";
+            default:
+                return "RESULT_" + result;
+        }
+    }
 
+    /**
+     * @return the error message for a result code from validateDataValue other than VALID; a generic one for a code
+     * without a message of its own, e.g. from a new DataType
+     */
+    public static String describeInvalidData(int result, String value, String dataType) {
+        switch (result) {
+            case EMPTY_VALUE:
+                return "Data cannot be empty.";
+            case NOT_AN_INTEGER:
+                return value + " is not an INTEGER";
+            case NOT_A_BOOLEAN:
+                return value + " is not a valid BOOLEAN flag";
+            case UNKNOWN_DATATYPE:
+                return dataType + " is not an known datatype";
+            case NOT_A_BIGINT:
+                return value + " is not a BIGINT";
+            case NOT_A_DECIMAL:
+                return value + " is not a " + dataType;
+            case NOT_A_DATE:
+                return value + " is not a DATE (yyyy-MM-dd)";
+            case NOT_A_TIMESTAMP:
+                return value + " is not a TIMESTAMP (yyyy-MM-dd HH:mm:ss)";
+            case VALUE_TOO_LONG:
+                return value + " is longer than its column";
+            default:
+                return value + " is not a valid " + dataType;
+        }
+    }
 
 }
@@ -1,10 +1,23 @@
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Date;
 import java.sql.SQLException;
 
 /**
@@ -13,139 +26,812 @@ import java.sql.SQLException;
  */
 public class DataFileReader {
 
+    // Largest part of a file memory mapped at one time
+    private static final int MAX_MAPPED_WINDOW = 1 << 30;
+    // Lines counted in IngestMetrics at a time
+    private static final int LINES_PER_METRICS_UPDATE = 4096;
+
     private Path file;
+    private int batchSize;
+    private Connection connection;
+    private boolean useMappedDecoder = ParserSettings.isMappedDecoder();
+    private int chunkWorkers = ParserSettings.getChunkWorkers();
+    private long chunkMinFileSize = ParserSettings.getChunkMinFileSize();
+    // Null for whichever is faster for the database
+    private Boolean bulkLoad = ParserSettings.getBulkLoad();
+    private boolean pipeline = ParserSettings.isPipeline();
+    private int parseThreads = ParserSettings.getParseThreads();
+    private boolean useLedger = ParserSettings.isLedger();
+    private boolean useCheckpoints = ParserSettings.isCheckpoints();
+    private Path rejectDirectory = Paths.get(ParserSettings.getRejectDirectory());
+    private int errorSampleSize = ParserSettings.getErrorSampleSize();
+    private boolean partitionByDate = ParserSettings.isPartitionByDate();
+    private boolean replacePartition = ParserSettings.isReplacePartition();
+    private boolean wholeFile = ParserSettings.isWholeFile();
+    private int maxErrors = ParserSettings.getMaxErrors();
+    private Compression compression = Compression.NONE;
+    private RecordFormat format = RecordFormat.FIXED_WIDTH;
+    // The date in the file's name, stored with each row, or null
+    private Date loadDate;
+    private boolean alreadyProcessed = false;
 
     public DataFileReader(Path file) {
+        this(file, ParserSettings.getBatchSize());
+    }
+
+    public DataFileReader(Path file, int batchSize) {
+        this(file, null, batchSize);
+    }
+
+    /**
+     * @param connection connection to store the data with.  If null, borrow one from the pool for each file.
+     */
+    public DataFileReader(Path file, Connection connection, int batchSize) {
         this.file = file;
+        this.connection = connection;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Decode ASCII lines straight from a memory mapped view of the file (true), or read every line as a String
+     * (false).  The String-based path is also used for any line that is not plain ASCII.
+     */
+    public void setMappedDecoder(boolean useMappedDecoder) {
+        this.useMappedDecoder = useMappedDecoder;
+    }
+
+    /**
+     * Parse files of at least minFileSize bytes in up to workers line-aligned chunks, on separate threads.
+     * Workers of 1 turns chunking off.
+     */
+    public void setChunking(int workers, long minFileSize) {
+        this.chunkWorkers = workers;
+        this.chunkMinFileSize = minFileSize;
+    }
+
+    /**
+     * Load each file's (or chunk's) valid rows with bulk statements from a temporary CSV file (true), or insert
+     * them in batches (false).  Bulk loading is used only if the database's SqlDialect supports it.  Not set, it
+     * is whichever the dialect prefers.
+     */
+    public void setBulkLoad(boolean bulkLoad) {
+        this.bulkLoad = bulkLoad;
+    }
+
+    /**
+     * Read, parse and store each file (or chunk) in overlapping stages, with parseThreads threads parsing (true), or
+     * line by line on one thread (false).  See LinePipeline.  The pipeline reads lines as Strings, so it takes the
+     * place of the memory mapped decoder.
+     */
+    public void setPipeline(boolean pipeline, int parseThreads) {
+        this.pipeline = pipeline;
+        this.parseThreads = parseThreads;
+    }
+
+    /**
+     * Skip files the ledger says were already loaded and have not changed since, and record each file loaded
+     * (true), or load every file and keep no record (false).  See FileLedger.
+     */
+    public void setLedger(boolean useLedger) {
+        this.useLedger = useLedger;
+    }
+
+    /**
+     * Save a checkpoint with every commit, and resume an interrupted load of the file from its last checkpoints
+     * (true), or always load the whole file (false).  See Checkpoint.
+     */
+    public void setCheckpoints(boolean useCheckpoints) {
+        this.useCheckpoints = useCheckpoints;
+    }
+
+    /**
+     * Store the date in the file's name (e.g. testformat1_2016-10-04.txt) with each row, in the table's indexed load
+     * date column (partitionByDate).  With replacePartition, which implies partitionByDate, the rows of that date are
+     * replaced rather than added to: the file is loaded into a staging table, then swapped in for the date's rows in
+     * one transaction, along with recording the file as loaded.  Files with no date in their name are added, with no
+     * load date.  See SqlDialect.
+     */
+    public void setPartitioning(boolean partitionByDate, boolean replacePartition) {
+        this.partitionByDate = partitionByDate;
+        this.replacePartition = replacePartition;
+    }
+
+    /**
+     * Store each file whole or not at all (true): it is loaded into a staging table, and moved into its table in one
+     * transaction only if no more than maxErrors of its lines are rejected.  Loading stops as soon as one more is,
+     * so no more time is spent on a file that will not be kept.  Or store every valid line as it is read (false).
+     */
+    public void setWholeFile(boolean wholeFile, int maxErrors) {
+        this.wholeFile = wholeFile;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Write every rejected line to reject files in rejectDirectory, and keep the first sampleSize in memory to
+     * report.  See ErrorCollector.
+     */
+    public void setRejects(Path rejectDirectory, int sampleSize) {
+        this.rejectDirectory = rejectDirectory;
+        this.errorSampleSize = sampleSize;
+    }
+
+    /**
+     * @return true if readAndStoreData skipped the file because it was already loaded
+     */
+    public boolean isAlreadyProcessed() {
+        return alreadyProcessed;
     }
 
     /**
      * Parse file and store valid data entries in their associated tables.  We could have separated out reading from
      * storing for better modularization.  However, we expect these files to be large, and we prefer not to
      * iterate twice (once to read and one to put into a hashmap).
-     * Use BufferedReader for speed
+     * Use BufferedReader for speed, and send valid rows to the database in batches of batchSize (one commit per
+     * batch) rather than one statement and commit per row.  Large files can be split into chunks and parsed in
+     * parallel (see setChunking), ASCII lines are decoded straight from a memory mapped file (see
+     * setMappedDecoder), and the valid rows can be bulk loaded rather than inserted (see setBulkLoad).  Reading,
+     * parsing and storing can also overlap on separate threads (see setPipeline).
+     * A file already loaded is skipped, and each file loaded is recorded with a hash of its content computed while
+     * it is read (see setLedger).  Progress is saved with every commit, so an interrupted load resumes where it
+     * stopped (see setCheckpoints).  Rejected lines are written to reject files as they are found, and only the
+     * first ones are kept in memory (see setRejects).
+     * Files compressed with gzip or zstd (see Compression) are decompressed as they are read, on a thread of their
+     * own.  Records are fixed width lines unless the spec names another RecordFormat: delimited lines, or
+     * length-prefixed binary records, which are read as one stream (see storeRecords).
      *
      * @throws FileReaderException With details on errors parsing the file
      */
     public void readAndStoreData() throws FileReaderException {
 
-        // Find the associated specifications
+        // Find the associated specifications.  Cached, so many files for the same table only read the spec once.
         String dataTable = this.getDataTable();
-        ArrayList<ColumnSpecification> specs = this.readSpec(dataTable);
+        TableSpec tableSpec = SpecRegistry.getSpec(dataTable);
+
+        if (this.connection != null) {
+            this.readAndStoreData(dataTable, tableSpec, this.connection);
+            return;
+        }
+        // Borrow a connection for this file, and give it back to the pool when done
+        try (Connection borrowed = DBConnection.borrowConnection()) {
+            this.readAndStoreData(dataTable, tableSpec, borrowed);
+        } catch (SQLException ex) {
+            throw new FileReaderException("Error connecting to the database: " + ex);
+        }
+
+    }
 
-        // Create the table if needed
+    private void readAndStoreData(String dataTable, TableSpec tableSpec, Connection connection)
+            throws FileReaderException {
+
+        ArrayList<ColumnSpecification> specs = tableSpec.getColumns();
+        RowParser parser = tableSpec.getParser();
+        this.format = tableSpec.getFormat();
+        String fileName = file.getFileName().toString();
+        // Reject files are named for the uncompressed file, so corrected rejects can be dropped in as plain files
+        String uncompressedName = Compression.stripSuffix(fileName);
+        this.loadDate = partitionByDate || replacePartition ? getLoadDate(uncompressedName) : null;
+        boolean replacing = loadDate != null && replacePartition;
+        // Rows are loaded into a staging table first, and moved into their table once the whole file is loaded: to
+        // replace the rows of their date, or to store the file only if few enough of its lines are rejected
+        String targetTable = replacing || wholeFile
+                ? dataTable + "_staging_" + Integer.toHexString(uncompressedName.hashCode()) : dataTable;
+
+        // Skip the file if it was loaded before and has not changed since, without reading it
+        BasicFileAttributes attributes;
         try {
-            DBHelper.createTableIfNotExists(dataTable, specs);
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (useLedger) {
+                FileLedger.createTableIfNotExists(connection);
+                if (FileLedger.isProcessed(connection, file, fileName, attributes.size(),
+                        attributes.lastModifiedTime().toMillis())) {
+                    alreadyProcessed = true;
+                    return;
+                }
+            }
+        } catch (IOException ex){
+            throw new FileReaderException("Error reading file.  Exception message: " + ex);
         } catch (SQLException ex){
-            throw new FileReaderException("Error creating associated database table: " + ex);
+            throw new FileReaderException("Error reading the processed file ledger: " + ex);
+        }
+
+        // Create the table if needed, or alter it to fit a changed spec
+        if (!tableSpec.isTableEnsured() || (loadDate != null && !tableSpec.isLoadDateEnsured())) {
+            try {
+                DBHelper.createTableIfNotExists(connection, dataTable, specs, loadDate != null);
+                tableSpec.setTableEnsured(true);
+                if (loadDate != null) tableSpec.setLoadDateEnsured(true);
+            } catch (IncompatibleSpecException ex) {
+                throw new FileReaderException("Whole file not processed. " + ex.getMessage());
+            } catch (SQLException ex){
+                throw new FileReaderException("Error creating associated database table: " + ex);
+            }
         }
 
         // For file validation, we want all the file errors at once, not one by one.  And line number for reference.
-        HashMap<Integer, String> linesWithError = new HashMap<Integer, String>();
-        Integer currentLineNumber = 1;
-
-        try (BufferedReader reader = Files.newBufferedReader(file, Charset.forName("UTF-8"))) {
-
-            String currentDataLine;
-            while ((currentDataLine = reader.readLine()) != null) {
-
-                // Each line in the file is one data row.  Parse the line to determine the values for each column
-                ArrayList<DataCellEntry> dataCellEntries = new ArrayList<DataCellEntry>() ;
-                int curIndex = 0;
-                boolean allCellsValid = true;
-                for (ColumnSpecification spec : specs) {
-
-                    // Find the value in the line based off the width in the spec
-                    int newIndex = curIndex+spec.getWidth();
-                    String value = currentDataLine.substring(curIndex,newIndex).trim();
-                    curIndex = newIndex;
-
-                    // validate each data cell
-                    try {
-                        String formattedValue = DBHelper.validateAndFormatDataValue(value, spec.getDataType());
-                        dataCellEntries.add(new DataCellEntry(spec.getName(), formattedValue));
-                    } catch (InvalidDataException ide) {
-                        allCellsValid = false;
-                        linesWithError.put(currentLineNumber, currentDataLine + " - INVALID: " + ide.getMessage());
-                    }
-                }
+        ErrorCollector errors = new ErrorCollector(rejectDirectory, uncompressedName, errorSampleSize);
+        // Rejected lines are written in the file's own format, so the reject file loads under the same spec
+        errors.setRejectFormat(parser);
 
-                // All data cells valid, try to save the whole row in the database
-                if (allCellsValid){
-                    try {
-                        DBHelper.insertDataRow(dataTable, dataCellEntries);
-                    } catch (SQLException x) {
-                        linesWithError.put(currentLineNumber, currentDataLine + " NOT STORED: " + x);
-                    }
-                }
+        int lineCount = 0;
+        int earlierErrorCount = 0;
+        boolean tooManyErrors = false;
+        ContentHash digest = new ContentHash();
+        try {
+            long fileSize = attributes.size();
+            long modifiedMillis = attributes.lastModifiedTime().toMillis();
+            this.compression = Compression.detect(file);
 
-                currentLineNumber++;
+            // Resume an interrupted load of the file from its checkpoints, or split it into chunks to load from
+            // the start.  A compressed file is one chunk: it can only be read from the start.
+            ArrayList<Checkpoint> checkpoints = null;
+            ArrayList<FileChunk> chunks = new ArrayList<FileChunk>();
+            if (useCheckpoints) {
+                Checkpoint.createTableIfNotExists(connection);
+                checkpoints = Checkpoint.find(connection, file, fileSize, modifiedMillis);
+                for (Checkpoint checkpoint : checkpoints) {
+                    chunks.add(checkpoint.getChunk());
+                    earlierErrorCount += checkpoint.getEarlierErrorCount();
+                }
+            }
+            boolean resumed = !chunks.isEmpty();
+            // Lines rejected before the load was interrupted are in the reject files already: add to them
+            errors.setAppend(resumed);
+            if (!resumed) {
+                errors.deleteRejectFiles();
+            }
+            if (!targetTable.equals(dataTable)) {
+                // A staging table left by an interrupted load is kept to resume into
+                DBHelper.createStagingTable(connection, targetTable, specs, loadDate != null, !resumed);
+            }
+            if (wholeFile) {
+                errors.setLimit(new ErrorCollector.Limit(maxErrors, earlierErrorCount));
+            }
+            if (!resumed) {
+                if (chunkWorkers > 1 && fileSize >= chunkMinFileSize && !compression.isCompressed()
+                        && format.isLineBased()) {
+                    chunks = FileChunk.split(file, chunkWorkers);
+                } else {
+                    chunks.add(new FileChunk(file, 0, fileSize));
+                }
+                if (useCheckpoints) {
+                    checkpoints = Checkpoint.start(connection, file, fileSize, modifiedMillis, chunks);
+                }
             }
 
+            if (chunks.size() > 1) {
+                lineCount = this.storeChunks(chunks, checkpoints, resumed, targetTable, specs, parser, errors,
+                        digest);
+            } else {
+                lineCount = this.storeChunk(chunks.get(0), connection, targetTable, specs, parser, errors,
+                        digest, checkpoints == null ? null : checkpoints.get(0));
+            }
+            errors.close();
+        } catch (ErrorLimitException ex) {
+            tooManyErrors = true;
         } catch (IOException ex){
             throw new FileReaderException("Error reading file.  Exception message: " + ex);
+        } catch (SQLException ex){
+            // The table may have been dropped since it was created.  Check it again for the next file.
+            tableSpec.setTableEnsured(false);
+            throw new FileReaderException(errors, "Error storing data in the database: " + ex);
+        } finally {
+            try {
+                errors.close();
+            } catch (IOException ex) {
+                // already failing; the reject files may be incomplete
+            }
+        }
+
+        // Every line was either stored or reported.  Files with invalid lines are recorded too: a corrected file
+        // is a new drop.  A staged file is moved into its table in the same transaction, so if that is interrupted,
+        // the file is not recorded and the next run moves it again.  A file with too many rejected lines is
+        // recorded with nothing stored, and no hash as it was not read to the end.
+        int errorCount = earlierErrorCount + errors.size();
+        boolean staged = !targetTable.equals(dataTable);
+        try {
+            boolean previousAutoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                if (staged && !tooManyErrors) {
+                    SqlDialect dialect = SqlDialect.forConnection(connection);
+                    if (replacing) {
+                        dialect.replaceLoadDate(connection, dataTable, targetTable, specs, loadDate);
+                    } else {
+                        dialect.insertFromTable(connection, dataTable, targetTable, specs, loadDate != null);
+                    }
+                }
+                if (useLedger) {
+                    FileLedger.recordProcessed(connection, fileName, attributes.size(),
+                            attributes.lastModifiedTime().toMillis(),
+                            tooManyErrors ? null : digest.toHex(),
+                            tooManyErrors ? 0 : lineCount - errorCount, errorCount);
+                }
+                if (useCheckpoints) {
+                    Checkpoint.delete(connection, fileName);
+                }
+                connection.commit();
+            } catch (SQLException ex) {
+                connection.rollback();
+                throw ex;
+            } finally {
+                connection.setAutoCommit(previousAutoCommit);
+            }
+        } catch (SQLException ex){
+            String stored = staged && !tooManyErrors
+                    ? "Data staged in " + targetTable + ", but it could not be moved into " + dataTable
+                    : "Data stored, but the file could not be recorded as processed";
+            throw new FileReaderException(errors, stored + ": " + ex);
+        }
+        if (staged) {
+            try {
+                DBHelper.dropTableIfExists(connection, targetTable);
+            } catch (SQLException ex) {
+                // the rows are moved; the next load of this file empties the staging table first
+            }
         }
 
-        if (linesWithError.size() > 0) {
-            throw new FileReaderException(linesWithError, "We found invalid data in the file.  " +
-                    "Some lines were not stored.");
+        if (tooManyErrors) {
+            throw new FileReaderException(errors, "We found too much invalid data in the file.  It was not stored: "
+                    + "loading stopped once more than " + maxErrors + " lines were not stored.");
+        }
+
+        if (errorCount > 0) {
+            String earlierErrors = earlierErrorCount == 0 ? "" : "  " + earlierErrorCount
+                    + " more lines were not stored before the load was interrupted and resumed.";
+            throw new FileReaderException(errors, "We found invalid data in the file.  " +
+                    "Some lines were not stored." + earlierErrors);
         }
 
     }
 
-    private String getDataTable() {
-        String filename = this.file.getFileName().toString();
-        return filename.substring(0,filename.indexOf('_'));
+    /**
+     * Parse and store large files in line-aligned chunks, one thread and pooled database connection per chunk.
+     * Each chunk reports its errors by line number within the chunk, to reject files of its own.  Once all chunks
+     * are done, those are shifted by the number of lines in the chunks before it and merged into errors, so the
+     * merged errors have the line numbers of the whole file.
+     * Each chunk is hashed by the thread that loads it, as it reads it.  The chunk hashes are appended to digest in
+     * file order, so it is the hash of the whole file however many chunks it was split into.
+     *
+     * @param checkpoints one per chunk, in the same order, or null
+     * @param resumed the chunks are resumed from their checkpoints, so add to their reject files
+     * @return the number of lines in the file
+     */
+    private int storeChunks(ArrayList<FileChunk> chunks, ArrayList<Checkpoint> checkpoints, final boolean resumed,
+                            final String dataTable, final ArrayList<ColumnSpecification> specs,
+                            final RowParser parser, ErrorCollector errors,
+                            ContentHash digest) throws IOException, SQLException {
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(chunkWorkers, chunks.size())));
+        ArrayList<ErrorCollector> chunkCollectors = new ArrayList<ErrorCollector>();
+        int chunksMerged = 0;
+        Exception failure = null;
+
+        try {
+            ArrayList<Future<ChunkResult>> results = new ArrayList<Future<ChunkResult>>();
+            for (int i = 0; i < chunks.size(); i++) {
+                final FileChunk chunk = chunks.get(i);
+                final Checkpoint checkpoint = checkpoints == null ? null : checkpoints.get(i);
+                final ErrorCollector chunkErrors = new ErrorCollector(rejectDirectory,
+                        file.getFileName() + ".chunk" + (i + 1), errorSampleSize);
+                chunkErrors.setLimit(errors.getLimit());
+                chunkErrors.setAppend(resumed);
+                chunkErrors.setRejectFormat(parser);
+                chunkCollectors.add(chunkErrors);
+                results.add(pool.submit(new Callable<ChunkResult>() {
+                    @Override
+                    public ChunkResult call() throws Exception {
+                        try (Connection chunkConnection = DBConnection.borrowConnection()) {
+                            ContentHash chunkHash = new ContentHash();
+                            int lineCount = storeChunk(chunk, chunkConnection, dataTable, specs, parser,
+                                    chunkErrors, chunkHash, checkpoint);
+                            return new ChunkResult(lineCount, chunkErrors, chunkHash);
+                        } finally {
+                            chunkErrors.close();
+                        }
+                    }
+                }));
+            }
+
+            // Merge in file order, so each chunk's line numbers can be offset by the lines before it, and its hash
+            // appended to the hash of the chunks before it
+            int linesBefore = 0;
+            for (Future<ChunkResult> result : results) {
+                ChunkResult chunkResult = result.get();
+                errors.addAll(chunkResult.errors, linesBefore);
+                digest.append(chunkResult.hash);
+                chunksMerged++;
+                linesBefore += chunkResult.lineCount;
+            }
+            return linesBefore;
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failure = ex;
+            throw new IOException("Interrupted while processing file chunks", ex);
+        } catch (ExecutionException ex) {
+            failure = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+            if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+            if (ex.getCause() instanceof SQLException) throw (SQLException) ex.getCause();
+            throw new IOException("Error processing a file chunk", ex.getCause());
+        } catch (IOException | RuntimeException ex) {
+            failure = ex;
+            throw ex;
+        } finally {
+            // Wait for chunks still storing after one failed, e.g. over the error limit, so none is left writing to
+            // a staging table that is then dropped
+            pool.shutdownNow();
+            try {
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                discardChunkRejects(chunkCollectors.subList(chunksMerged, chunkCollectors.size()),
+                        checkpoints != null && !(failure instanceof ErrorLimitException));
+            }
+        }
+
+    }
+
+    /**
+     * Close the reject files of chunks that were not merged into the file's, as a chunk failed.  They are kept to add
+     * to if the load will resume from its checkpoints, otherwise deleted: a load over the error limit is recorded as
+     * done, so it never resumes.
+     */
+    private static void discardChunkRejects(List<ErrorCollector> chunkCollectors, boolean keepForResume) {
+        for (ErrorCollector chunkErrors : chunkCollectors) {
+            try {
+                chunkErrors.close();
+                if (!keepForResume) chunkErrors.deleteRejectFiles();
+            } catch (IOException ex) {
+                // already failing; a reject file may be left behind
+            }
+        }
+    }
+
+    /**
+     * Parse and store the lines of one chunk (or the whole file), bulk loaded if that is turned on and supported,
+     * otherwise inserted in batches, in a pipeline if that is turned on, otherwise with the memory mapped decoder if
+     * it is turned on and the file is not compressed, otherwise line by line as Strings.  Lines are numbered from 1
+     * at the start of the chunk.  Records that are not lines are read with storeRecords, and numbered as lines.
+     *
+     * With a checkpoint, progress is saved with every commit, and an interrupted load resumes after the lines it
+     * finished.  Where the checkpoint has the byte offset of those lines, they are not read again: the hash carries
+     * on from the one saved with it.  Otherwise they are read past, and hashed again.
+     *
+     * @param digest an empty hash, updated with the bytes of the chunk as they are read
+     * @param checkpoint where to resume the chunk and save progress, or null
+     * @return the number of lines in the chunk
+     */
+    private int storeChunk(FileChunk chunk, Connection connection, String dataTable,
+                           ArrayList<ColumnSpecification> specs, RowParser parser,
+                           ErrorCollector errors, ContentHash digest, Checkpoint checkpoint)
+            throws IOException, SQLException {
+
+        int linesDone = 0;
+        int linesToSkip = 0;
+        FileChunk remaining = chunk;
+        if (checkpoint != null) {
+            checkpoint.track(errors, digest);
+            linesDone = checkpoint.getResumeLineNumber();
+            if (linesDone > 0 && checkpoint.getResumeOffset() >= 0 && !compression.isCompressed()) {
+                digest.set(checkpoint.getResumeHash());
+                remaining = new FileChunk(chunk.getFile(), checkpoint.getResumeOffset(), chunk.getEnd());
+            } else {
+                // Saved by the String path, which does not know byte offsets: read past the lines done
+                linesToSkip = linesDone;
+            }
+        }
+
+        RowSink sink;
+        SqlDialect dialect = SqlDialect.forConnection(connection);
+        boolean useBulkLoad = bulkLoad != null ? bulkLoad : dialect.isBulkLoadPreferred();
+        if (useBulkLoad && dialect.supportsBulkLoad()) {
+            BulkLoader loader = new BulkLoader(connection, dataTable, specs, parser,
+                    ParserSettings.getBulkLoadRows(), this.batchSize, errors, loadDate);
+            loader.setCheckpoint(checkpoint);
+            sink = loader;
+        } else {
+            BatchInserter inserter = new BatchInserter(connection, dataTable, specs, parser.getDataTypes(),
+                    this.batchSize, errors, loadDate);
+            inserter.setCheckpoint(checkpoint);
+            sink = inserter;
+        }
+
+        long start = System.nanoTime();
+        int lineCount;
+        try (RowSink rows = sink) {
+            if (!format.isLineBased()) {
+                lineCount = this.storeRecords(remaining, rows, (LengthPrefixedRowParser) parser, errors, digest,
+                        linesDone, linesToSkip, checkpoint);
+            } else if (useMappedDecoder && !pipeline && linesToSkip == 0 && !compression.isCompressed()) {
+                lineCount = this.storeMappedLines(remaining, rows, parser, errors, digest, linesDone, checkpoint);
+            } else {
+                try (BufferedReader reader = remaining.openReader(Charset.forName("UTF-8"), digest, compression)) {
+                    for (int i = 0; i < linesToSkip; i++) {
+                        reader.readLine();
+                    }
+                    if (pipeline) {
+                        lineCount = new LinePipeline(parser, parseThreads, ParserSettings.getPipelineQueueBlocks())
+                                .run(reader, rows, errors, linesDone, checkpoint);
+                    } else {
+                        lineCount = this.storeLines(reader, rows, parser, errors, linesDone, checkpoint);
+                    }
+                }
+            }
+        }
+        IngestMetrics.get().chunkRead(chunk.getEnd() - chunk.getStart(),
+                System.nanoTime() - start - sink.getDatabaseNanos());
+        return lineCount;
+
     }
 
-    private ArrayList<ColumnSpecification> readSpec(String dataTable) throws FileReaderException {
-        String specFileName = dataTable +".csv";
-        Path specsDir = Paths.get("specs" , specFileName);
+    /**
+     * Parse each line from the reader, validate it, and send the valid rows to sink.
+     * Lines are numbered from linesDone + 1.
+     *
+     * @return the number of lines read, plus linesDone
+     */
+    private int storeLines(BufferedReader reader, RowSink sink, RowParser parser,
+                           ErrorCollector errors, int linesDone, Checkpoint checkpoint)
+            throws IOException, SQLException {
+
+        int currentLineNumber = linesDone + 1;
+        int linesToCount = LINES_PER_METRICS_UPDATE;
+        RowBuffer row = new RowBuffer(parser.getColumnCount());
+
+        String currentDataLine;
+        while ((currentDataLine = reader.readLine()) != null) {
 
-        if (Files.notExists(specsDir)) {
-            throw new FileReaderException(
-                    "Whole file not processed. We could not find a matching spec file: " + specFileName);
+            // Each line in the file is one data row.  Parse the line to determine the values for each column.
+            // All data cells valid, add the whole row to the sink for the database
+            int invalidColumn = parser.parse(currentDataLine, row);
+            if (invalidColumn < 0) {
+                sink.addRow(currentLineNumber, currentDataLine, row);
+            } else {
+                errors.addInvalid(currentLineNumber, currentDataLine,
+                        parser.getErrorCode(currentDataLine, invalidColumn),
+                        parser.describeError(currentDataLine, invalidColumn));
+            }
+
+            if (checkpoint != null) checkpoint.lineDone(-1, currentLineNumber);
+            if (--linesToCount == 0) {
+                IngestMetrics.get().linesRead(LINES_PER_METRICS_UPDATE);
+                linesToCount = LINES_PER_METRICS_UPDATE;
+            }
+            currentLineNumber++;
         }
 
-        ArrayList<ColumnSpecification> specs = new ArrayList<ColumnSpecification>();
+        IngestMetrics.get().linesRead(LINES_PER_METRICS_UPDATE - linesToCount);
+        return currentLineNumber - 1;
+
+    }
+
+    /**
+     * Same as storeLines, but decodes lines straight from a memory mapped view of the file rather than reading each
+     * line into a String.  The file is mapped in windows of at most MAX_MAPPED_WINDOW bytes.  A line that the byte
+     * parser does not handle as bytes (non-ASCII, or invalid) is decoded as UTF-8 and parsed as a String.
+     *
+     * @return the number of lines read, plus linesDone
+     */
+    private int storeMappedLines(FileChunk chunk, RowSink sink, RowParser parser,
+                                 ErrorCollector errors, ContentHash digest, int linesDone,
+                                 Checkpoint checkpoint)
+            throws IOException, SQLException {
+
+        int currentLineNumber = linesDone + 1;
+        int linesToCount = LINES_PER_METRICS_UPDATE;
+        RowBuffer row = new RowBuffer(parser.getColumnCount());
+        CharsetDecoder utf8 = Charset.forName("UTF-8").newDecoder();
+
+        try (FileChannel channel = FileChannel.open(chunk.getFile(), StandardOpenOption.READ)) {
+
+            long windowStart = chunk.getStart();
+            while (windowStart < chunk.getEnd()) {
+
+                int windowLength = (int) Math.min(chunk.getEnd() - windowStart, MAX_MAPPED_WINDOW);
+                boolean lastWindow = windowStart + windowLength == chunk.getEnd();
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
 
-        try (BufferedReader reader = Files.newBufferedReader(specsDir, Charset.forName("UTF-8"))) {
+                int lineStart = 0;
+                while (lineStart < windowLength) {
 
-            // Parse the file into a list of specifications.  Ignore the first line
-            String currentLine;
-            while ((currentLine = reader.readLine()) != null) {
-                String[] attributes = currentLine.split(",");
-                if (attributes.length !=3 ) {
-                    throw new FileReaderException(
-                            "Whole file not processed. Matching spec file: " + specFileName +
-                                    " does not have exactly 3 attributes: " + currentLine);
-                } else if (attributes[1].equalsIgnoreCase("width")) {
-                    continue;
+                    int lineBreak = lineStart;
+                    while (lineBreak < windowLength && buffer.get(lineBreak) != '\n') lineBreak++;
+                    if (lineBreak == windowLength && !lastWindow) break;   // line continues in the next window
+
+                    int lineEnd = lineBreak;
+                    if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') lineEnd--;
+
+                    if (parser.parse(buffer, lineStart, lineEnd, row)) {
+                        sink.addRow(currentLineNumber, new MappedLine(parser, buffer, lineStart, lineEnd), row);
+                    } else {
+                        String currentDataLine = new MappedLine(parser, buffer, lineStart, lineEnd).decode(utf8);
+                        int invalidColumn = parser.parse(currentDataLine, row);
+                        if (invalidColumn < 0) {
+                            sink.addRow(currentLineNumber, currentDataLine, row);
+                        } else {
+                            errors.addInvalid(currentLineNumber, currentDataLine,
+                                    parser.getErrorCode(currentDataLine, invalidColumn),
+                                    parser.describeError(currentDataLine, invalidColumn));
+                        }
+                    }
+
+                    // Hashed line by line, so the hash is at the checkpoint's offset
+                    digest.update(buffer, lineStart, Math.min(lineBreak + 1, windowLength));
+                    if (checkpoint != null) {
+                        checkpoint.lineDone(Math.min(windowStart + lineBreak + 1, chunk.getEnd()), currentLineNumber);
+                    }
+                    if (--linesToCount == 0) {
+                        IngestMetrics.get().linesRead(LINES_PER_METRICS_UPDATE);
+                        linesToCount = LINES_PER_METRICS_UPDATE;
+                    }
+                    currentLineNumber++;
+                    lineStart = lineBreak + 1;
                 }
 
-                String dataType = attributes[2].trim();
-                if (!Arrays.asList("INTEGER", "BOOLEAN","TEXT").contains(dataType)) {
-                    throw new FileReaderException(
-                            "Whole file not processed. Matching spec file: " + specFileName +
-                                    " contains an unknown datatype: " + dataType);
+                if (lineStart == 0) {
+                    throw new IOException("Line starting at byte " + windowStart + " is longer than "
+                            + MAX_MAPPED_WINDOW + " bytes");
                 }
+                windowStart += Math.min(lineStart, windowLength);
+            }
+        }
+
+        IngestMetrics.get().linesRead(LINES_PER_METRICS_UPDATE - linesToCount);
+        return currentLineNumber - 1;
+
+    }
+
+    /**
+     * Same as storeLines, but for length-prefixed binary records read with a RecordReader.  Records are parsed in
+     * place in the blocks read; one the byte parser does not handle is made into a CSV line and parsed as a String.
+     * A record whose fields do not fit its length, or what is left of a damaged file, is rejected as a whole.
+     * Records are numbered as lines, and the checkpoint gets the byte offset after each record of an uncompressed
+     * file.
+     *
+     * @param recordsToSkip records already done, to read past
+     * @return the number of records read, plus linesDone
+     */
+    private int storeRecords(FileChunk chunk, RowSink sink, LengthPrefixedRowParser parser,
+                             ErrorCollector errors, ContentHash digest, int linesDone, int recordsToSkip,
+                             Checkpoint checkpoint)
+            throws IOException, SQLException {
+
+        int currentLineNumber = linesDone + 1;
+        int linesToCount = LINES_PER_METRICS_UPDATE;
+        RowBuffer row = new RowBuffer(parser.getColumnCount());
+
+        // An uncompressed file is hashed record by record, so the hash is at the checkpoint's offset; a compressed
+        // one as it is read, as it is on disk
+        boolean compressed = compression.isCompressed();
+        try (RecordReader records = new RecordReader(chunk.openStream(compressed ? digest : null, compression),
+                parser.getMaxRecordLength(), compressed ? null : digest)) {
+            for (int i = 0; i < recordsToSkip; i++) {
+                records.next();
+            }
+
+            while (records.next()) {
 
-                try {
-                    int width = Integer.parseInt(attributes[1].trim());  //todo NFE
-                    specs.add(new ColumnSpecification(attributes[0].trim(), width, dataType));
-                } catch (NumberFormatException nfe) {
-                    throw new FileReaderException(
-                            "Whole file not processed. Matching spec file: " + specFileName +
-                                    " contains a width which is not an integer: " + currentLine);
+                ByteBuffer buffer = records.getBuffer();
+                int start = records.getRecordStart();
+                int end = records.getRecordEnd();
+                if (parser.parse(buffer, start, end, row)) {
+                    sink.addRow(currentLineNumber, new MappedLine(parser, buffer, start, end), row);
+                } else if (records.isDamaged() || !parser.isWellFormed(buffer, start, end)) {
+                    String message = records.isDamaged()
+                            ? "The file is damaged from byte " + (chunk.getStart() + records.getBytesRead()
+                            - (end - start)) + ": no record can be read from there to its end"
+                            : parser.describeMalformed(buffer, start, end);
+                    errors.addInvalid(currentLineNumber, parser.toLine(buffer, start, end), DBHelper.MALFORMED_LINE,
+                            message);
+                } else {
+                    String currentDataLine = parser.toLine(buffer, start, end);
+                    int invalidColumn = parser.parse(currentDataLine, row);
+                    if (invalidColumn < 0) {
+                        sink.addRow(currentLineNumber, currentDataLine, row);
+                    } else {
+                        errors.addInvalid(currentLineNumber, currentDataLine,
+                                parser.getErrorCode(currentDataLine, invalidColumn),
+                                parser.describeError(currentDataLine, invalidColumn));
+                    }
                 }
 
+                if (checkpoint != null) {
+                    // What is left of a damaged file is read, and hashed, to its end
+                    checkpoint.lineDone(compressed ? -1 : records.isDamaged() ? chunk.getEnd()
+                            : chunk.getStart() + records.getBytesRead(), currentLineNumber);
+                }
+                if (--linesToCount == 0) {
+                    IngestMetrics.get().linesRead(LINES_PER_METRICS_UPDATE);
+                    linesToCount = LINES_PER_METRICS_UPDATE;
+                }
+                currentLineNumber++;
             }
-        } catch (IOException ex){
-            throw new FileReaderException(
-                    "Whole file not processed due to an error reading: " + ex);
         }
 
-        return specs;
+        IngestMetrics.get().linesRead(LINES_PER_METRICS_UPDATE - linesToCount);
+        return currentLineNumber - 1;
+
+    }
+
+    /**
+     * @return the date after the table name in a file name of the form table_yyyy-MM-dd.ext, or null if there is none
+     */
+    static Date getLoadDate(String fileName) {
+        int underscore = fileName.indexOf('_');
+        int dot = fileName.indexOf('.', underscore + 1);
+        String suffix = fileName.substring(underscore + 1, dot < 0 ? fileName.length() : dot);
+        if (underscore < 0 || !suffix.matches("\\d{4}-\\d{2}-\\d{2}")) return null;
+        try {
+            return Date.valueOf(suffix);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
 
+    private String getDataTable() {
+        String filename = this.file.getFileName().toString();
+        return filename.substring(0,filename.indexOf('_'));
+    }
+
+    /**
+     * Line count, errors (by line number within the chunk) and content hash of one parsed chunk.
+     */
+    private static class ChunkResult {
+        final int lineCount;
+        final ErrorCollector errors;
+        final ContentHash hash;
+
+        ChunkResult(int lineCount, ErrorCollector errors, ContentHash hash) {
+            this.lineCount = lineCount;
+            this.errors = errors;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * A line in a memory mapped file, or a record in a block read by RecordReader, viewed in place.  Only made into a
+     * String (by the parser's toLine) when needed for an error message or a bulk load.
+     */
+    private static class MappedLine implements CharSequence {
+        private final RowParser parser;
+        private final ByteBuffer buffer;
+        private final int start;
+        private final int end;
+
+        MappedLine(RowParser parser, ByteBuffer buffer, int start, int end) {
+            this.parser = parser;
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+        }
+
+        String decode(CharsetDecoder decoder) throws CharacterCodingException {
+            ByteBuffer lineBytes = buffer.duplicate();
+            lineBytes.limit(end);
+            lineBytes.position(start);
+            return decoder.decode(lineBytes).toString();
+        }
+
+        @Override
+        public int length() {
+            return toString().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return toString().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return parser.toLine(buffer, start, end);
+        }
     }
 }
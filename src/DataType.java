@@ -0,0 +1,197 @@
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A datatype that can be used in a specification file (INTEGER, BOOLEAN, TEXT, BIGINT, DECIMAL, DATE, TIMESTAMP).
+ * Knows how to parse a data cell of that type into a RowBuffer, how to stage it in a RowBatch, how to bind it to an
+ * insert (or write it out for a bulk load), and which SQL column type stores it.
+ * Datatypes are looked up once per spec by the name used in the spec files, so the per-line code does not compare
+ * datatype strings.
+ *
+ * Datatypes are registered once, by name.  A datatype can take parameters in the spec file, e.g. DECIMAL(10,2): the
+ * datatype registered as DECIMAL makes one for those parameters (withParameters) the first time the name is looked
+ * up, and it is registered under the full name from then on.
+ */
+public abstract class DataType {
+
+    private static final Map<String, DataType> dataTypes = new ConcurrentHashMap<String, DataType>();
+
+    public static final DataType INTEGER = register(new IntegerDataType());
+    public static final DataType BOOLEAN = register(new BooleanDataType());
+    public static final DataType TEXT = register(new TextDataType());
+    public static final DataType BIGINT = register(new BigIntDataType());
+    public static final DataType DECIMAL = register(new DecimalDataType());
+    public static final DataType DATE = register(new DateDataType());
+    public static final DataType TIMESTAMP = register(new TimestampDataType());
+
+    private final String name;
+
+    protected DataType(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the datatype with this name in the spec files, e.g. INTEGER or DECIMAL(10,2), or null if there is none
+     */
+    public static DataType forName(String name) {
+
+        if (name == null) return null;
+        DataType dataType = dataTypes.get(name);
+        if (dataType != null) return dataType;
+
+        int open = name.indexOf('(');
+        if (open <= 0 || !name.endsWith(")")) return null;
+        DataType unparameterized = dataTypes.get(name.substring(0, open).trim());
+        if (unparameterized == null) return null;
+        dataType = unparameterized.withParameters(name.substring(open + 1, name.length() - 1));
+        if (dataType == null) return null;
+        DataType registered = dataTypes.putIfAbsent(name, dataType);
+        return registered != null ? registered : dataType;
+
+    }
+
+    /**
+     * Make a datatype usable in spec files under its name.
+     *
+     * @throws IllegalArgumentException if another datatype already has the name
+     */
+    public static DataType register(DataType dataType) {
+        if (dataTypes.putIfAbsent(dataType.getName(), dataType) != null) {
+            throw new IllegalArgumentException("A datatype is already registered as " + dataType.getName());
+        }
+        return dataType;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the SQL type for a column of this datatype, e.g. INT or VARCHAR(10)
+     */
+    public abstract String getSqlType(int width);
+
+    /**
+     * @return true if a column of the JDBC type sqlType (java.sql.Types), e.g. created for an earlier spec, can store
+     * values of this datatype as they are
+     */
+    public abstract boolean isStoredAs(int sqlType);
+
+    /**
+     * @return the column size (as in DatabaseMetaData.getColumns) a column of this datatype needs for the spec width,
+     * so a narrower column can be widened in place; or 0 if every column of this datatype is the same size
+     */
+    public int getColumnSize(int width) {
+        return 0;
+    }
+
+    /**
+     * @return the digits after the point (DECIMAL_DIGITS, as in DatabaseMetaData.getColumns) of a column of this
+     * datatype, or -1 if it has none
+     */
+    public int getDecimalDigits() {
+        return -1;
+    }
+
+    /**
+     * @return this datatype with the parameters given in parentheses after its name in a spec file, e.g. "10,2", or
+     * null if it takes none or they are not valid
+     */
+    protected DataType withParameters(String parameters) {
+        return null;
+    }
+
+    /**
+     * Parse the characters of line from (inclusive) to to (exclusive) and write the value into column of row.
+     * The range is already trimmed and is not empty.
+     *
+     * @return DBHelper.VALID, or the DBHelper result code for why the value is invalid
+     */
+    public abstract int parse(String line, int from, int to, RowBuffer row, int column);
+
+    /**
+     * Same as parse for a String, for ASCII bytes in buffer.
+     */
+    public abstract int parse(ByteBuffer buffer, int from, int to, RowBuffer row, int column);
+
+    /**
+     * Bind the value in column of row to the insert parameter.
+     */
+    public abstract void bind(PreparedStatement stmt, int parameterIndex, RowBuffer row, int column)
+            throws SQLException;
+
+    /**
+     * Copy the value in column of row into the row at index of batch.
+     */
+    public abstract void copy(RowBuffer row, int column, RowBatch batch, int index);
+
+    /**
+     * Bind the value in column of the row at index of batch to the insert parameter.
+     */
+    public abstract void bind(PreparedStatement stmt, int parameterIndex, RowBatch batch, int index, int column)
+            throws SQLException;
+
+    /**
+     * Append the value in column of row as text the database converts back to this datatype's SQL type, e.g. for a
+     * bulk load from a CSV file.
+     */
+    public abstract void appendText(StringBuilder out, RowBuffer row, int column);
+
+    /**
+     * Same as appendText for a RowBuffer, for the value in column of the row at index of batch.
+     */
+    public abstract void appendText(StringBuilder out, RowBatch batch, int index, int column);
+
+    /**
+     * @return the value in column of row as a SQL literal, e.g. for the original insertDataRow
+     */
+    public String formatLiteral(RowBuffer row, int column) {
+        StringBuilder literal = new StringBuilder();
+        appendText(literal, row, column);
+        return literal.toString();
+    }
+
+    /**
+     * @return the value of the count decimal digits of text from from, or -1 if any of them is not a digit
+     */
+    protected static int parseDigits(String text, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Same as parseDigits for a String, for ASCII bytes in buffer.
+     */
+    protected static int parseDigits(ByteBuffer buffer, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Append value, with leading zeros up to digits digits.
+     */
+    protected static void appendPadded(StringBuilder out, long value, int digits) {
+        for (long limit = 10; digits > 1; digits--, limit *= 10) {
+            if (value < limit) out.append('0');
+        }
+        out.append(value);
+    }
+
+    public String toString() {
+        return name;
+    }
+
+}
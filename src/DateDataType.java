@@ -0,0 +1,107 @@
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+
+/**
+ * DATE data: a calendar date as yyyy-MM-dd, e.g. 2016-10-04.
+ * Parsed into one int, yyyymmdd (20161004), so parsing allocates nothing; a java.sql.Date is only made to bind it.
+ */
+public class DateDataType extends DataType {
+
+    private static final int[] DAYS_IN_MONTH = {31, 29, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    DateDataType() {
+        super("DATE");
+    }
+
+    @Override
+    public String getSqlType(int width) {
+        return "DATE";
+    }
+
+    @Override
+    public boolean isStoredAs(int sqlType) {
+        return sqlType == Types.DATE;
+    }
+
+    @Override
+    public int parse(String line, int from, int to, RowBuffer row, int column) {
+        if (to - from != 10 || line.charAt(from + 4) != '-' || line.charAt(from + 7) != '-') {
+            return DBHelper.NOT_A_DATE;
+        }
+        int date = toDate(parseDigits(line, from, 4), parseDigits(line, from + 5, 2), parseDigits(line, from + 8, 2));
+        if (date < 0) return DBHelper.NOT_A_DATE;
+        row.setInt(column, date);
+        return DBHelper.VALID;
+    }
+
+    @Override
+    public int parse(ByteBuffer buffer, int from, int to, RowBuffer row, int column) {
+        if (to - from != 10 || buffer.get(from + 4) != '-' || buffer.get(from + 7) != '-') {
+            return DBHelper.NOT_A_DATE;
+        }
+        int date = toDate(parseDigits(buffer, from, 4), parseDigits(buffer, from + 5, 2),
+                parseDigits(buffer, from + 8, 2));
+        if (date < 0) return DBHelper.NOT_A_DATE;
+        row.setInt(column, date);
+        return DBHelper.VALID;
+    }
+
+    /**
+     * @return the date as yyyymmdd, or -1 if it is not a date (or a field was not digits, so is -1)
+     */
+    static int toDate(int year, int month, int day) {
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > DAYS_IN_MONTH[month - 1]) return -1;
+        if (month == 2 && day == 29 && !(year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) return -1;
+        return (year * 100 + month) * 100 + day;
+    }
+
+    static Date toSqlDate(int date) {
+        return Date.valueOf(LocalDate.of(date / 10000, date / 100 % 100, date % 100));
+    }
+
+    static void appendDate(StringBuilder out, int date) {
+        appendPadded(out, date / 10000, 4);
+        out.append('-');
+        appendPadded(out, date / 100 % 100, 2);
+        out.append('-');
+        appendPadded(out, date % 100, 2);
+    }
+
+    @Override
+    public void bind(PreparedStatement stmt, int parameterIndex, RowBuffer row, int column) throws SQLException {
+        stmt.setDate(parameterIndex, toSqlDate(row.getInt(column)));
+    }
+
+    @Override
+    public void copy(RowBuffer row, int column, RowBatch batch, int index) {
+        batch.setInt(index, column, row.getInt(column));
+    }
+
+    @Override
+    public void bind(PreparedStatement stmt, int parameterIndex, RowBatch batch, int index, int column)
+            throws SQLException {
+        stmt.setDate(parameterIndex, toSqlDate(batch.getInt(index, column)));
+    }
+
+    @Override
+    public void appendText(StringBuilder out, RowBuffer row, int column) {
+        appendDate(out, row.getInt(column));
+    }
+
+    @Override
+    public void appendText(StringBuilder out, RowBatch batch, int index, int column) {
+        appendDate(out, batch.getInt(index, column));
+    }
+
+    @Override
+    public String formatLiteral(RowBuffer row, int column) {
+        StringBuilder literal = new StringBuilder("DATE '");
+        appendDate(literal, row.getInt(column));
+        return literal.append("'").toString();
+    }
+
+}
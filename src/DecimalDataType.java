@@ -0,0 +1,201 @@
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * DECIMAL(precision,scale) data: an exact decimal number, e.g. a money amount, with an optional sign and at most
+ * scale digits after the point.  DECIMAL on its own is DECIMAL(18,0).
+ * Parsed into its unscaled value as a long (12.30 in DECIMAL(10,2) is 1230), so parsing allocates nothing; a
+ * BigDecimal is only made to bind it.  That limits the precision to 18 digits.
+ */
+public class DecimalDataType extends DataType {
+
+    static final int MAX_PRECISION = 18;
+
+    private static final long[] POWERS_OF_TEN = new long[MAX_PRECISION + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_PRECISION; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final int precision;
+    private final int scale;
+
+    DecimalDataType() {
+        super("DECIMAL");
+        this.precision = MAX_PRECISION;
+        this.scale = 0;
+    }
+
+    private DecimalDataType(int precision, int scale) {
+        super("DECIMAL(" + precision + "," + scale + ")");
+        this.precision = precision;
+        this.scale = scale;
+    }
+
+    /**
+     * @param parameters precision, or precision and scale, e.g. "10,2"
+     */
+    @Override
+    protected DataType withParameters(String parameters) {
+        String[] values = parameters.split(",");
+        if (values.length > 2) return null;
+        try {
+            int precision = Integer.parseInt(values[0].trim());
+            int scale = values.length == 2 ? Integer.parseInt(values[1].trim()) : 0;
+            if (precision < 1 || precision > MAX_PRECISION || scale < 0 || scale > precision) return null;
+            return new DecimalDataType(precision, scale);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    @Override
+    public String getSqlType(int width) {
+        return "DECIMAL(" + precision + "," + scale + ")";
+    }
+
+    @Override
+    public boolean isStoredAs(int sqlType) {
+        return sqlType == Types.DECIMAL || sqlType == Types.NUMERIC;
+    }
+
+    @Override
+    public int getColumnSize(int width) {
+        return precision;
+    }
+
+    @Override
+    public int getDecimalDigits() {
+        return scale;
+    }
+
+    // Leading zeros are not counted against the precision, so zero padded amounts fit
+    @Override
+    public int parse(String line, int from, int to, RowBuffer row, int column) {
+
+        boolean negative = false;
+        char first = line.charAt(from);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            from++;
+        }
+
+        long value = 0;
+        int digits = 0;
+        int integerDigits = 0;
+        int fractionDigits = -1;
+        for (int i = from; i < to; i++) {
+            char c = line.charAt(i);
+            if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            int digit = c - '0';
+            if (digit < 0 || digit > 9) return DBHelper.NOT_A_DECIMAL;
+            digits++;
+            if (fractionDigits >= 0) {
+                if (++fractionDigits > scale) return DBHelper.NOT_A_DECIMAL;
+            } else if (value > 0 || digit > 0) {
+                if (++integerDigits > precision - scale) return DBHelper.NOT_A_DECIMAL;
+            }
+            value = value * 10 + digit;
+        }
+        return store(negative, value, digits, fractionDigits, row, column);
+
+    }
+
+    @Override
+    public int parse(ByteBuffer buffer, int from, int to, RowBuffer row, int column) {
+
+        boolean negative = false;
+        byte first = buffer.get(from);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            from++;
+        }
+
+        long value = 0;
+        int digits = 0;
+        int integerDigits = 0;
+        int fractionDigits = -1;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9) return DBHelper.NOT_A_DECIMAL;
+            digits++;
+            if (fractionDigits >= 0) {
+                if (++fractionDigits > scale) return DBHelper.NOT_A_DECIMAL;
+            } else if (value > 0 || digit > 0) {
+                if (++integerDigits > precision - scale) return DBHelper.NOT_A_DECIMAL;
+            }
+            value = value * 10 + digit;
+        }
+        return store(negative, value, digits, fractionDigits, row, column);
+
+    }
+
+    private int store(boolean negative, long value, int digits, int fractionDigits, RowBuffer row, int column) {
+        if (digits == 0) return DBHelper.NOT_A_DECIMAL;
+        long unscaled = value * POWERS_OF_TEN[scale - Math.max(fractionDigits, 0)];
+        row.setLong(column, negative ? -unscaled : unscaled);
+        return DBHelper.VALID;
+    }
+
+    @Override
+    public void bind(PreparedStatement stmt, int parameterIndex, RowBuffer row, int column) throws SQLException {
+        stmt.setBigDecimal(parameterIndex, BigDecimal.valueOf(row.getLong(column), scale));
+    }
+
+    @Override
+    public void copy(RowBuffer row, int column, RowBatch batch, int index) {
+        batch.setLong(index, column, row.getLong(column));
+    }
+
+    @Override
+    public void bind(PreparedStatement stmt, int parameterIndex, RowBatch batch, int index, int column)
+            throws SQLException {
+        stmt.setBigDecimal(parameterIndex, BigDecimal.valueOf(batch.getLong(index, column), scale));
+    }
+
+    @Override
+    public void appendText(StringBuilder out, RowBuffer row, int column) {
+        appendDecimal(out, row.getLong(column));
+    }
+
+    @Override
+    public void appendText(StringBuilder out, RowBatch batch, int index, int column) {
+        appendDecimal(out, batch.getLong(index, column));
+    }
+
+    private void appendDecimal(StringBuilder out, long value) {
+        if (value < 0) {
+            out.append('-');
+            value = -value;
+        }
+        if (scale == 0) {
+            out.append(value);
+            return;
+        }
+        out.append(value / POWERS_OF_TEN[scale]).append('.');
+        appendPadded(out, value % POWERS_OF_TEN[scale], scale);
+    }
+
+}
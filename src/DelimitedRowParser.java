@@ -0,0 +1,245 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Parses delimited data lines (CSV, TSV and the like) for one spec: one field per column, in spec order, separated
+ * by the delimiter.  A field can be quoted, to hold the delimiter, with the quote itself doubled inside it ("a ""b""").
+ * Unquoted fields are trimmed the way fixed width cells are; quoted fields are kept as they are.  A field longer than
+ * its column's width is VALUE_TOO_LONG.
+ *
+ * Fields are found in place, in the String or the bytes of the line, and each is handed to its DataType by offsets:
+ * nothing is copied but TEXT values.  A quoted field cannot span lines, so a quote left open at the end of the line,
+ * text after a closing quote, or the wrong number of fields makes the line MALFORMED.
+ */
+public class DelimitedRowParser extends RowParser {
+
+    // Offsets in the field array filled by nextField
+    private static final int FROM = 0;
+    private static final int TO = 1;
+    private static final int DOUBLED_QUOTES = 2;
+
+    private final char delimiter;
+    // 0 for a format without quoting
+    private final char quote;
+
+    DelimitedRowParser(ArrayList<ColumnSpecification> specs, char delimiter, char quote) {
+        super(specs);
+        this.delimiter = delimiter;
+        this.quote = quote;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public char getQuote() {
+        return quote;
+    }
+
+    @Override
+    public int parse(String line, RowBuffer row) {
+
+        int[] field = new int[3];
+        int length = line.length();
+        int position = 0;
+        int invalidColumn = -1;
+        for (int column = 0; column < dataTypes.length; column++) {
+
+            if (position > length) return MALFORMED;   // too few fields
+            position = nextField(line, position, field);
+            if (position < 0) return MALFORMED;
+
+            int from = field[FROM];
+            int to = field[TO];
+            if (from == to || to - from - field[DOUBLED_QUOTES] > widths[column]
+                    || dataTypes[column].parse(line, from, to, row, column) != DBHelper.VALID) {
+                invalidColumn = column;
+            } else if (field[DOUBLED_QUOTES] > 0 && dataTypes[column] instanceof TextDataType) {
+                row.removeDoubled(column, quote);
+            }
+        }
+        return position <= length ? MALFORMED : invalidColumn;   // too many fields
+
+    }
+
+    /**
+     * Find the field starting at position: its value from field[FROM] to field[TO], quotes removed, with
+     * field[DOUBLED_QUOTES] doubled quotes still in it.
+     *
+     * @return the start of the next field, past the length of the line if this was the last one, or -1 if the
+     *         field is quoted but not properly
+     */
+    private int nextField(String line, int position, int[] field) {
+
+        int length = line.length();
+        int start = position;
+        while (start < length && line.charAt(start) <= ' ' && line.charAt(start) != delimiter) start++;
+
+        if (quote == 0 || start == length || line.charAt(start) != quote) {
+            int end = line.indexOf(delimiter, position);
+            if (end < 0) end = length;
+            int to = end;
+            while (to > start && line.charAt(to - 1) <= ' ') to--;
+            field[FROM] = start;
+            field[TO] = to;
+            field[DOUBLED_QUOTES] = 0;
+            return end + 1;
+        }
+
+        int doubledQuotes = 0;
+        int i = start + 1;
+        while (true) {
+            if (i >= length) return -1;   // not closed on this line
+            if (line.charAt(i) == quote) {
+                if (i + 1 < length && line.charAt(i + 1) == quote) {
+                    doubledQuotes++;
+                    i += 2;
+                    continue;
+                }
+                break;
+            }
+            i++;
+        }
+        field[FROM] = start + 1;
+        field[TO] = i;
+        field[DOUBLED_QUOTES] = doubledQuotes;
+
+        int end = i + 1;
+        while (end < length && line.charAt(end) <= ' ' && line.charAt(end) != delimiter) end++;
+        if (end < length && line.charAt(end) != delimiter) return -1;   // text after the closing quote
+        return end + 1;
+
+    }
+
+    @Override
+    public boolean parse(ByteBuffer buffer, int lineStart, int lineEnd, RowBuffer row) {
+
+        int position = lineStart;
+        for (int column = 0; column < dataTypes.length; column++) {
+
+            if (position > lineEnd) return false;
+
+            int start = position;
+            while (start < lineEnd && buffer.get(start) <= ' ' && buffer.get(start) != delimiter) {
+                if (buffer.get(start) < 0) return false;   // not ASCII
+                start++;
+            }
+
+            int from;
+            int to;
+            int end;
+            int doubledQuotes = 0;
+            if (quote == 0 || start == lineEnd || buffer.get(start) != quote) {
+                end = start;
+                while (end < lineEnd && buffer.get(end) != delimiter) {
+                    if (buffer.get(end) < 0) return false;
+                    end++;
+                }
+                from = start;
+                to = end;
+                while (to > from && buffer.get(to - 1) <= ' ') to--;
+            } else {
+                int i = start + 1;
+                while (true) {
+                    if (i >= lineEnd) return false;
+                    byte b = buffer.get(i);
+                    if (b < 0) return false;
+                    if (b == quote) {
+                        if (i + 1 < lineEnd && buffer.get(i + 1) == quote) {
+                            doubledQuotes++;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                from = start + 1;
+                to = i;
+                end = i + 1;
+                while (end < lineEnd && buffer.get(end) <= ' ' && buffer.get(end) != delimiter) {
+                    if (buffer.get(end) < 0) return false;
+                    end++;
+                }
+                if (end < lineEnd && buffer.get(end) != delimiter) return false;
+            }
+
+            if (from == to || to - from - doubledQuotes > widths[column]
+                    || dataTypes[column].parse(buffer, from, to, row, column) != DBHelper.VALID) {
+                return false;
+            }
+            if (doubledQuotes > 0 && dataTypes[column] instanceof TextDataType) {
+                row.removeDoubled(column, quote);
+            }
+            position = end + 1;
+        }
+        return position > lineEnd;
+
+    }
+
+    @Override
+    protected String getValue(String line, int column) {
+        int[] field = new int[3];
+        int position = 0;
+        for (int i = 0; i <= column; i++) {
+            position = nextField(line, position, field);
+        }
+        return fieldValue(line, field);
+    }
+
+    /**
+     * @return the fields of the line, unquoted.  From a field that is not quoted properly, the rest of the line is
+     *         the last field, as it is.
+     */
+    protected ArrayList<String> splitFields(String line) {
+        ArrayList<String> fields = new ArrayList<String>();
+        int[] field = new int[3];
+        int position = 0;
+        while (position <= line.length()) {
+            int next = nextField(line, position, field);
+            if (next < 0) {
+                fields.add(line.substring(position));
+                break;
+            }
+            fields.add(fieldValue(line, field));
+            position = next;
+        }
+        return fields;
+    }
+
+    private String fieldValue(String line, int[] field) {
+        String value = line.substring(field[FROM], field[TO]);
+        if (field[DOUBLED_QUOTES] == 0) return value;
+        String quoteText = String.valueOf(quote);
+        return value.replace(quoteText + quoteText, quoteText);
+    }
+
+    // The number of fields in the line, or -1 - the index of the first field that is not quoted properly
+    private int countFields(String line) {
+        int[] field = new int[3];
+        int position = 0;
+        int count = 0;
+        while (position <= line.length()) {
+            position = nextField(line, position, field);
+            if (position < 0) return -1 - count;
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    protected int getMalformedCode(String line) {
+        int count = countFields(line);
+        return count >= 0 && count < dataTypes.length ? DBHelper.LINE_TOO_SHORT : DBHelper.MALFORMED_LINE;
+    }
+
+    @Override
+    protected String describeMalformed(String line) {
+        int count = countFields(line);
+        if (count < 0) {
+            return "Field " + -count + " of the line has a quote that is not closed, or text after its closing quote";
+        }
+        return "Line has " + count + (count == 1 ? " field, " : " fields, ") + dataTypes.length + " expected";
+    }
+
+}
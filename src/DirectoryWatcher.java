@@ -0,0 +1,186 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a directory for new data files and hands each one over once it is fully written.
+ *
+ * A file counts as fully written once its size and modified time have not changed for settleMillis.  Writers that
+ * can rename into place should write to a name starting with "." or ending in .tmp or .part, and rename the file to
+ * its final name when done: those names are never handed over, and the rename is picked up at once (after
+ * settleMillis).  Files already in the directory when run starts are handed over too.
+ *
+ * A file that changes after it was handed over is handed over again, but not while it is still being processed: it
+ * waits until the processing the listener returned is done, so a file is never processed twice at once.
+ */
+public class DirectoryWatcher {
+
+    // How often to check waiting files for whether they have settled
+    private static final long POLL_MILLIS = 250;
+
+    /**
+     * Receives each fully written file.  Called on the watching thread, so it should hand the file off quickly.
+     */
+    public interface Listener {
+        /**
+         * @return the processing of the file, e.g. from ExecutorService.submit, or null if it is already processed
+         */
+        Future<?> fileReady(Path file);
+    }
+
+    private final Path directory;
+    private final long settleMillis;
+    private final Listener listener;
+    private final WatchService watchService;
+
+    // Files not handed over yet, by when they were last seen changing.  In the order they were first seen.
+    private final Map<Path, FileState> waiting = new LinkedHashMap<Path, FileState>();
+    // Files handed over and still being processed
+    private final Map<Path, Future<?>> inFlight = new HashMap<Path, Future<?>>();
+
+    public DirectoryWatcher(Path directory, long settleMillis, Listener listener) throws IOException {
+        this.directory = directory;
+        this.settleMillis = settleMillis;
+        this.listener = listener;
+        this.watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+     * Watch the directory until stop is called (from another thread).
+     *
+     * @throws IOException if the directory can no longer be watched, e.g. it was deleted
+     */
+    public void run() throws IOException, InterruptedException {
+
+        this.scanDirectory();
+
+        try {
+            while (true) {
+                WatchKey key = watchService.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // Events were lost; look at everything again
+                            this.scanDirectory();
+                        } else {
+                            this.fileChanged(directory.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        throw new IOException("Directory can no longer be watched: " + directory);
+                    }
+                }
+                this.handOverSettledFiles();
+            }
+        } catch (ClosedWatchServiceException stopped) {
+            // stop was called
+        }
+
+    }
+
+    /**
+     * Stop watching.  run returns once it notices, without handing over any more files.
+     */
+    public void stop() throws IOException {
+        watchService.close();
+    }
+
+    private void scanDirectory() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                this.fileChanged(file);
+            }
+        }
+    }
+
+    private void fileChanged(Path file) {
+        if (!isDataFile(file)) return;
+        FileState state = FileState.of(file);
+        if (state != null) {
+            waiting.put(file, state);
+        }
+    }
+
+    /**
+     * Hand over the waiting files that have not changed for settleMillis, unless they are still being processed.
+     * Forget files that have disappeared.
+     */
+    private void handOverSettledFiles() {
+        Iterator<Future<?>> handedOver = inFlight.values().iterator();
+        while (handedOver.hasNext()) {
+            if (handedOver.next().isDone()) handedOver.remove();
+        }
+
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, FileState>> files = waiting.entrySet().iterator();
+        while (files.hasNext()) {
+            Map.Entry<Path, FileState> waitingFile = files.next();
+            FileState current = FileState.of(waitingFile.getKey());
+            if (current == null) {
+                files.remove();
+            } else if (!current.sameAs(waitingFile.getValue())) {
+                waitingFile.setValue(current);
+            } else if (now - waitingFile.getValue().seenAt >= settleMillis
+                    && !inFlight.containsKey(waitingFile.getKey())) {
+                files.remove();
+                Future<?> processing = listener.fileReady(waitingFile.getKey());
+                if (processing != null) inFlight.put(waitingFile.getKey(), processing);
+            }
+        }
+    }
+
+    private static boolean isDataFile(Path file) {
+        String name = file.getFileName().toString();
+        return !name.startsWith(".") && !name.endsWith(".tmp") && !name.endsWith(".part")
+                && Files.isRegularFile(file);
+    }
+
+    /**
+     * Size and modified time of a file, and when they were seen.
+     */
+    private static class FileState {
+        final long size;
+        final long modified;
+        final long seenAt;
+
+        FileState(long size, long modified, long seenAt) {
+            this.size = size;
+            this.modified = modified;
+            this.seenAt = seenAt;
+        }
+
+        /**
+         * @return the file's current state, or null if it no longer exists
+         */
+        static FileState of(Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return new FileState(attributes.size(), attributes.lastModifiedTime().toMillis(),
+                        System.currentTimeMillis());
+            } catch (IOException ex) {
+                // deleted, or renamed away
+                return null;
+            }
+        }
+
+        boolean sameAs(FileState other) {
+            return size == other.size && modified == other.modified;
+        }
+    }
+
+}
@@ -0,0 +1,261 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The lines of one data file (or chunk) that were not stored.  Only the first sampleSize are kept in memory, for the
+ * console report, so a file with millions of bad lines does not fill the heap.  Every one is counted by reason and
+ * written to two reject files in the reject directory, which are only created once there is a line to write:
+ *  - name.rejected.txt holds the rejected lines exactly as they were.  Once corrected, it can be put in the data
+ *    directory and loaded like any other file for the same table.  For a format that is not lines of text (see
+ *    setRejectFormat), it is name.rejected.bin instead, with the rejected records in that format.
+ *  - name.rejected.tsv holds, for each line of name.rejected.txt in the same order, its line number in the original
+ *    file, the reason code (a DBHelper result name, or NOT_STORED) and the error message, tab separated.
+ * With a Limit, adding a line past the limit throws ErrorLimitException, once the line is written.
+ * A load resumed from its checkpoints appends to the reject files of the interrupted load (see setAppend), so they
+ * still hold every line rejected in the file.
+ */
+public class ErrorCollector implements AutoCloseable {
+
+    // Reason code of valid lines the database rejected
+    public static final String NOT_STORED = "NOT_STORED";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Path directory;
+    private final String name;
+    private final int sampleSize;
+
+    private final TreeMap<Integer, String> sample = new TreeMap<Integer, String>();
+    private final TreeMap<String, Integer> countsByReason = new TreeMap<String, Integer>();
+    private int count = 0;
+
+    private OutputStream rejectedLines;
+    private BufferedWriter reasons;
+    private Limit limit;
+    private boolean append = false;
+    // Writes rejected lines in the data file's format, or null for lines of text
+    private RowParser rejectFormat;
+
+    /**
+     * @param name reject file names start with this, usually the data file name
+     */
+    public ErrorCollector(Path directory, String name, int sampleSize) {
+        this.directory = directory;
+        this.name = name;
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * A line with an invalid data cell.
+     *
+     * @param result the result code of the invalid cell (see DBHelper)
+     */
+    public void addInvalid(int lineNumber, String line, int result, String message) throws IOException {
+        add(lineNumber, line, DBHelper.getResultName(result), message, line + " - INVALID: " + message);
+    }
+
+    /**
+     * A valid line the database would not store.
+     */
+    public void addNotStored(int lineNumber, String line, SQLException ex) throws IOException {
+        add(lineNumber, line, NOT_STORED, ex.toString(), line + " NOT STORED: " + ex);
+    }
+
+    private void add(int lineNumber, String line, String reason, String message, String report) throws IOException {
+
+        count++;
+        IngestMetrics.get().lineRejected(reason);
+        Integer reasonCount = countsByReason.get(reason);
+        countsByReason.put(reason, reasonCount == null ? 1 : reasonCount + 1);
+        if (sample.size() < sampleSize) {
+            sample.put(lineNumber, report);
+        }
+
+        if (rejectedLines == null) open();
+        if (rejectFormat != null) {
+            rejectFormat.writeReject(rejectedLines, line);
+        } else {
+            RowParser.writeLine(rejectedLines, line);
+        }
+        writeReason(lineNumber, reason + "\t" + message.replaceAll("[\t\r\n]+", " "));
+
+        if (limit != null && limit.count.incrementAndGet() > limit.maxErrors) {
+            throw new ErrorLimitException(limit.maxErrors);
+        }
+
+    }
+
+    /**
+     * Throw ErrorLimitException from addInvalid or addNotStored once limit is exceeded.  The chunks of a file share
+     * the file's limit, so it counts the lines rejected in all of them.
+     */
+    public void setLimit(Limit limit) {
+        this.limit = limit;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+
+    /**
+     * Add to the reject files left by an interrupted load of the same file (true), keeping the lines it rejected,
+     * rather than replacing them (false).  Appended reject files are kept even if no more lines are rejected.  Set
+     * before the first line is added.
+     */
+    public void setAppend(boolean append) {
+        this.append = append;
+    }
+
+    /**
+     * Write rejected lines as parser's format would have them (see RowParser.writeReject), so the reject file loads
+     * under the same spec as the data file.  Set before the first line is added.
+     */
+    public void setRejectFormat(RowParser parser) {
+        this.rejectFormat = parser;
+    }
+
+    /**
+     * Delete the reject files of an earlier load of the same file, if there are any.
+     */
+    public void deleteRejectFiles() throws IOException {
+        Files.deleteIfExists(getRejectFilePath());
+        Files.deleteIfExists(getReasonFile());
+    }
+
+    /**
+     * Add the lines rejected in a chunk of the file, and delete the chunk's reject files.
+     *
+     * @param lineOffset the number of lines in the file before the chunk, added to the chunk's line numbers
+     */
+    public void addAll(ErrorCollector chunk, int lineOffset) throws IOException {
+
+        chunk.close();
+        count += chunk.count;
+        for (Map.Entry<String, Integer> reasonCount : chunk.countsByReason.entrySet()) {
+            Integer current = countsByReason.get(reasonCount.getKey());
+            countsByReason.put(reasonCount.getKey(), (current == null ? 0 : current) + reasonCount.getValue());
+        }
+        for (Map.Entry<Integer, String> errorLine : chunk.sample.entrySet()) {
+            if (sample.size() >= sampleSize) break;
+            sample.put(lineOffset + errorLine.getKey(), errorLine.getValue());
+        }
+
+        // An appending chunk can have reject files from before a resume, even with no lines rejected since
+        if (chunk.getRejectFile() == null) return;
+        if (rejectedLines == null) open();
+        Files.copy(chunk.getRejectFile(), rejectedLines);
+        try (BufferedReader chunkReasons = Files.newBufferedReader(chunk.getReasonFile(), UTF8)) {
+            String line;
+            while ((line = chunkReasons.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                writeReason(lineOffset + Integer.parseInt(line.substring(0, tab)), line.substring(tab + 1));
+            }
+        }
+        Files.delete(chunk.getRejectFile());
+        Files.delete(chunk.getReasonFile());
+
+    }
+
+    /**
+     * @return the number of lines rejected
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the first lines rejected (at most sampleSize), by line number, with their error messages
+     */
+    public Map<Integer, String> getSample() {
+        return sample;
+    }
+
+    /**
+     * @return the number of lines rejected for each reason code
+     */
+    public Map<String, Integer> getCountsByReason() {
+        return countsByReason;
+    }
+
+    /**
+     * @return the file of rejected lines, or null if there were none
+     */
+    public Path getRejectFile() {
+        Path rejectFile = getRejectFilePath();
+        return count > 0 || (append && Files.exists(rejectFile)) ? rejectFile : null;
+    }
+
+    private Path getRejectFilePath() {
+        return directory.resolve(name + (rejectFormat == null ? ".rejected.txt" : rejectFormat.getRejectFileSuffix()));
+    }
+
+    private Path getReasonFile() {
+        return directory.resolve(name + ".rejected.tsv");
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        OpenOption[] options = append
+                ? new OpenOption[] {StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE}
+                : new OpenOption[0];
+        rejectedLines = new BufferedOutputStream(Files.newOutputStream(getRejectFilePath(), options));
+        reasons = Files.newBufferedWriter(getReasonFile(), UTF8, options);
+    }
+
+    private void writeReason(int lineNumber, String reasonAndMessage) throws IOException {
+        reasons.write(Integer.toString(lineNumber));
+        reasons.write('\t');
+        reasons.write(reasonAndMessage);
+        reasons.newLine();
+    }
+
+    /**
+     * Flush and close the reject files.  They stay on disk.  If no line was rejected, reject files left by an earlier
+     * load of the same file are deleted, unless appending to them.
+     */
+    @Override
+    public void close() throws IOException {
+        if (rejectedLines == null) {
+            if (!append) deleteRejectFiles();
+            return;
+        }
+        try {
+            rejectedLines.close();
+        } finally {
+            reasons.close();
+        }
+    }
+
+    /**
+     * Most lines of one file that can be rejected, counted across its chunks.
+     */
+    public static class Limit {
+        private final int maxErrors;
+        private final AtomicInteger count;
+
+        /**
+         * @param earlierErrors lines already rejected, e.g. before an interrupted load was resumed
+         */
+        public Limit(int maxErrors, int earlierErrors) {
+            this.maxErrors = maxErrors;
+            this.count = new AtomicInteger(earlierErrors);
+        }
+
+        public int getMaxErrors() {
+            return maxErrors;
+        }
+    }
+
+}
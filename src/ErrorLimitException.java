@@ -0,0 +1,21 @@
+import java.io.IOException;
+
+/**
+ * Thrown while a file is loaded once more of its lines are rejected than its error limit allows, to stop reading and
+ * storing a file that will not be kept.  An IOException, so it stops every way of reading the file (see
+ * ErrorCollector.setLimit).
+ */
+public class ErrorLimitException extends IOException {
+
+    private final int maxErrors;
+
+    public ErrorLimitException(int maxErrors) {
+        super("More than " + maxErrors + " lines were not stored");
+        this.maxErrors = maxErrors;
+    }
+
+    public int getMaxErrors() {
+        return maxErrors;
+    }
+
+}
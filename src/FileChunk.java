@@ -0,0 +1,203 @@
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+
+/**
+ * A byte range of a data file that starts at the beginning of a line and ends just after a line break (or at the
+ * end of the file).  Large files are split into chunks so the parts can be parsed on separate threads.
+ */
+public class FileChunk {
+
+    private final Path file;
+    private final long start;
+    private final long end;
+
+    public FileChunk(Path file, long start, long end) {
+        this.file = file;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Split the file into at most count chunks of roughly equal size.  Each boundary is moved forward to the
+     * start of the next line, so no line is split between two chunks.
+     */
+    public static ArrayList<FileChunk> split(Path file, int count) throws IOException {
+
+        ArrayList<FileChunk> chunks = new ArrayList<FileChunk>();
+        long size = Files.size(file);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long chunkStart = 0;
+            for (int i = 1; i < count; i++) {
+                long target = size * i / count;
+                if (target <= chunkStart) continue;
+
+                long boundary = nextLineStart(channel, target, size);
+                if (boundary >= size) break;
+                chunks.add(new FileChunk(file, chunkStart, boundary));
+                chunkStart = boundary;
+            }
+            chunks.add(new FileChunk(file, chunkStart, size));
+        }
+
+        return chunks;
+
+    }
+
+    // Find the first line start at or after position: the byte after the first '\n' at or after position - 1
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long current = position - 1;
+
+        while (current < size) {
+            buffer.clear();
+            int read = channel.read(buffer, current);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return current + i + 1;
+                }
+            }
+            current += read;
+        }
+        return size;
+
+    }
+
+    /**
+     * Open a reader over just the lines of this chunk.
+     *
+     * @param digest updated with every byte of the chunk as it is read, or null
+     */
+    public BufferedReader openReader(Charset charset, MessageDigest digest) throws IOException {
+        return openReader(charset, digest, Compression.NONE);
+    }
+
+    /**
+     * Open a reader over the uncompressed lines of this chunk, which for a compressed file must be the whole file.
+     * The file is decompressed on a thread of its own, ahead of the reader.
+     *
+     * @param digest updated with every byte of the chunk as it is on disk, or null
+     */
+    public BufferedReader openReader(Charset charset, MessageDigest digest, Compression compression)
+            throws IOException {
+        return new BufferedReader(new InputStreamReader(openStream(digest, compression), charset));
+    }
+
+    /**
+     * Open a stream of the uncompressed bytes of this chunk, which for a compressed file must be the whole file.
+     * The file is decompressed on a thread of its own, ahead of the stream.
+     *
+     * @param digest updated with every byte of the chunk as it is on disk, or null
+     */
+    public InputStream openStream(MessageDigest digest, Compression compression) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        channel.position(start);
+        InputStream in = new RangeInputStream(Channels.newInputStream(channel), end - start);
+        if (digest != null) {
+            in = new DigestInputStream(in, digest);
+        }
+        if (compression.isCompressed()) {
+            try {
+                in = new ReadAheadInputStream(compression.decompress(in), "fileparser-" + compression + "-"
+                        + file.getFileName());
+            } catch (IOException | RuntimeException ex) {
+                in.close();
+                throw ex;
+            }
+        }
+        return in;
+    }
+
+    /**
+     * Read the bytes of this chunk into digest.
+     */
+    public void digest(MessageDigest digest) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long position = start;
+            while (position < end) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), end - position));
+                int read = channel.read(buffer, position);
+                if (read <= 0) break;
+                buffer.flip();
+                digest.update(buffer);
+                position += read;
+            }
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public String toString() {
+        return this.file + " [" + this.start + ", " + this.end + ")";
+    }
+
+    /**
+     * Stops reading once the end of the chunk is reached.
+     */
+    private static class RangeInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = super.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) remaining -= read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+    }
+
+}
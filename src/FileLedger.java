@@ -0,0 +1,108 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+/**
+ * The ledger of processed data files, in the PROCESSED_FILES table: one row per file name, with the size, modified
+ * time and content hash of the file when it was loaded, and how many of its rows were stored and rejected.
+ *
+ * A file whose name, size and modified time match its ledger row has already been loaded, and is skipped without
+ * reading it.  One whose modified time changed but whose content did not is skipped too, after hashing it.  A file
+ * that has changed since is loaded again, and its ledger row replaced.
+ */
+public class FileLedger {
+
+    public static final String TABLE = "PROCESSED_FILES";
+
+    public static void createTableIfNotExists(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + TABLE + " (FILE_NAME VARCHAR(255) PRIMARY KEY, "
+                    + "FILE_SIZE BIGINT, MODIFIED_MILLIS BIGINT, CONTENT_HASH VARCHAR(64), ROWS_STORED INT, "
+                    + "ROWS_REJECTED INT, PROCESSED_AT TIMESTAMP)");
+        }
+    }
+
+    /**
+     * @return true if the file was loaded before and has not changed since: same size and modified time, or failing
+     *         that, same size and content hash.  A file that was only touched (e.g. copied over with the same
+     *         content) is hashed, found by its hash, and its ledger row given the new modified time, rather than
+     *         loaded a second time.
+     */
+    public static boolean isProcessed(Connection connection, Path file, String fileName, long size,
+                                      long modifiedMillis) throws IOException, SQLException {
+
+        String contentHash;
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT FILE_SIZE, MODIFIED_MILLIS, CONTENT_HASH FROM " + TABLE + " WHERE FILE_NAME = ?")) {
+            stmt.setString(1, fileName);
+            try (ResultSet result = stmt.executeQuery()) {
+                if (!result.next() || result.getLong(1) != size) return false;
+                if (result.getLong(2) == modifiedMillis) return true;
+                contentHash = result.getString(3);
+            }
+        }
+
+        // Only files read to the end have a hash; the size matches, so compare the content
+        if (contentHash == null || !contentHash.equals(hash(file))) return false;
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE " + TABLE + " SET MODIFIED_MILLIS = ? WHERE FILE_NAME = ? AND CONTENT_HASH = ?")) {
+            update.setLong(1, modifiedMillis);
+            update.setString(2, fileName);
+            update.setString(3, contentHash);
+            update.executeUpdate();
+        }
+        return true;
+
+    }
+
+    /**
+     * Record the file as loaded, replacing any earlier row for the same file name.  One upsert on the file name
+     * (the primary key), so concurrent loads of the same name cannot both insert a row.
+     *
+     * @param contentHash hex ContentHash of the file's content, computed while it was read
+     */
+    public static void recordProcessed(Connection connection, String fileName, long size, long modifiedMillis,
+                                       String contentHash, int rowsStored, int rowsRejected) throws SQLException {
+
+        String sql = SqlDialect.forConnection(connection).buildUpsertSql(TABLE, "FILE_NAME", "FILE_NAME",
+                "FILE_SIZE", "MODIFIED_MILLIS", "CONTENT_HASH", "ROWS_STORED", "ROWS_REJECTED", "PROCESSED_AT");
+        try (PreparedStatement upsert = connection.prepareStatement(sql)) {
+            upsert.setString(1, fileName);
+            upsert.setLong(2, size);
+            upsert.setLong(3, modifiedMillis);
+            upsert.setString(4, contentHash);
+            upsert.setInt(5, rowsStored);
+            upsert.setInt(6, rowsRejected);
+            upsert.setTimestamp(7, new Timestamp(System.currentTimeMillis()));
+            upsert.executeUpdate();
+        }
+
+    }
+
+    /**
+     * @return hex ContentHash of the file's bytes as they are on disk, the same hash a load records
+     */
+    public static String hash(Path file) throws IOException {
+        ContentHash digest = new ContentHash();
+        new FileChunk(file, 0, Files.size(file)).digest(digest);
+        return digest.toHex();
+    }
+
+    /**
+     * @return bytes as lower case hex, e.g. for a digest
+     */
+    public static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+}
@@ -1,5 +1,17 @@
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
 import java.nio.file.*;
+import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An application to load data into a database from drops of data files and specification files.
@@ -9,12 +21,30 @@ import java.util.Map;
  * It includes some basic output with success messages and/or error reporting of data rows not successfully
  * stored in the database.
  *
- * This application could be run in a cron job, or be extended to watch for file additions to the data directory,
- * to process data from any new file drops (though note the caution below.)
+ * Files are processed one at a time by default.  Set -Dfileparser.workers=N to process up to N files at the same
+ * time, each on its own thread and database connection.  Output is still reported file by file, in directory order.
+ * For drops of many small files, -Dfileparser.virtualThreads=true starts a (virtual) thread for every file instead,
+ * and lets as many files store data at once as the connection pool allows.
  *
- * CAUTION: Rerunning the application with the same files in the data directory will result in the data entered
- * into the database twice.
- * Desired behavior on a rerun of the application needs to be further explored with the customer.
+ * Progress is printed every few seconds, and a JSON summary of IngestMetrics at the end of the run, both to standard
+ * error so standard output has only the file reports.  The same metrics are available through JMX while it runs.
+ * -Dfileparser.metrics=false turns all three off.
+ *
+ * This application could be run in a cron job, or with -Dfileparser.watch=true it keeps running and processes each
+ * new file drop in the data directory as soon as it is fully written (though note the caution below.)
+ *
+ * Rerunning the application with the same files in the data directory does not enter their data twice: files
+ * already loaded are recorded in a ledger table and skipped, unless they have changed since (see FileLedger).
+ * CAUTION: a changed file is loaded again in full, so rows from its earlier version stay in the database.
+ * Desired behavior for changed files needs to be further explored with the customer.
+ * The ledger is on by default: each run creates the PROCESSED_FILES table if missing, looks up every file in it, and
+ * hashes and records each file it loads (one more row written per file).  -Dfileparser.ledger=false turns it off,
+ * and every file in the directory is then loaded on every run.
+ *
+ * Loads are checkpointed by default, so a file whose load was interrupted is resumed where it stopped rather than
+ * started over (see Checkpoint).  Each run creates the FILE_CHECKPOINTS table if missing, and every batch of rows
+ * stored also updates the file's checkpoint row in the same transaction: a little extra work for every batch, measured
+ * by InsertBenchmark.readAndStoreDataCheckpoints.  -Dfileparser.checkpoints=false turns checkpoints off.
  *
  * User: Heidi Smith
  * Date: 10/3/17
@@ -25,25 +55,35 @@ public class FileParser {
 
         // Find the data directory
         Path dataDir = Paths.get("data");
+        // No more file workers than the connection pool has connections for, with their chunk workers
+        int workers = Math.min(ParserSettings.getWorkers(), ParserSettings.getConcurrentFiles());
+
+        IngestMetrics metrics = IngestMetrics.get();
+        ScheduledExecutorService progress = null;
+        if (ParserSettings.isMetrics()) {
+            metrics.register();
+            progress = metrics.startReporting(ParserSettings.getMetricsIntervalSeconds(), System.err);
+        }
 
-        // Iterate over all the data files in the data directory
-        try (DirectoryStream < Path > stream = Files.newDirectoryStream(dataDir)) {
+        try {
 
-            for (Path file : stream) {
+            if (ParserSettings.isWatch()) {
+                watch(dataDir, workers);
+            } else {
+                // Iterate over all the data files in the data directory
+                try (DirectoryStream < Path > stream = Files.newDirectoryStream(dataDir)) {
 
-                //parse file and store valid data in the associated database tables. Report invalid data
-                try {
-                    DataFileReader reader = new DataFileReader(file.toAbsolutePath());
-                    reader.readAndStoreData();
-                    System.out.println("File: " + file.getFileName().toString() + " processed successfully.");
-                } catch (FileReaderException fre) {
-                    System.out.println("ERROR for file: " + file.getFileName().toString() + ". " + fre.getMessage());
-                    if (fre.getErrorLines() != null && fre.getErrorLines().size() > 0) {
-                        for (Map.Entry errorLine : fre.getErrorLines().entrySet()) {
-                            System.out.println("  Data not saved for Line #" + errorLine.getKey() + ": "
-                                    + errorLine.getValue());
+                    if (ParserSettings.isVirtualThreads()) {
+                        processThreadPerFile(stream, ParserSettings.getConcurrentFiles(), System.out);
+                    } else if (workers > 1) {
+                        processConcurrently(stream, workers, System.out);
+                    } else {
+                        for (Path file : stream) {
+                            //parse file and store valid data in the associated database tables. Report invalid data
+                            System.out.print(processFile(file, null));
                         }
                     }
+
                 }
             }
 
@@ -51,8 +91,198 @@ public class FileParser {
             System.out.println("There was an unexpected error.");
             ex.printStackTrace();
         } finally {
-            DBConnection.closeConnection();
+            if (progress != null) {
+                progress.shutdownNow();
+                System.err.println("Summary: " + metrics.toJson());
+            }
+            DBConnection.shutdown();
+        }
+
+    }
+
+    /**
+     * Process the files on a bounded pool of worker threads.  Each worker borrows its own database connection from the pool.
+     * Reports are printed to out in directory order as each file's result becomes available.
+     */
+    public static void processConcurrently(Iterable<Path> files, int workers, PrintStream out) throws Exception {
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            ArrayList<Future<String>> results = new ArrayList<Future<String>>();
+            for (final Path file : files) {
+                results.add(pool.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        // The reader borrows its own connection from the pool
+                        return processFile(file, null);
+                    }
+                }));
+            }
+
+            for (Future<String> result : results) {
+                out.print(result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+    }
+
+    /**
+     * Process every file on a virtual thread of its own, so thousands of small files can be in flight without a
+     * thread pool that size.  A semaphore lets concurrentFiles of them work at once, sized so each gets its
+     * connections from the pool without waiting (and without running into the pool's borrow timeout).
+     * Virtual threads need Java 21.  On earlier versions, a pool of concurrentFiles platform threads is used instead,
+     * which processes the files the same way.
+     * Reports are printed to out in directory order as each file's result becomes available.
+     */
+    public static void processThreadPerFile(Iterable<Path> files, int concurrentFiles, PrintStream out)
+            throws Exception {
+        processThreadPerFile(files, concurrentFiles, newVirtualThreadPerTaskExecutor(), out);
+    }
+
+    /**
+     * processThreadPerFile on threads, or on a pool of concurrentFiles platform threads if threads is null.
+     */
+    static void processThreadPerFile(Iterable<Path> files, int concurrentFiles, ExecutorService threads,
+                                     PrintStream out) throws Exception {
+
+        if (threads == null) {
+            threads = Executors.newFixedThreadPool(concurrentFiles);
+        }
+        final Semaphore permits = new Semaphore(concurrentFiles, true);
+        try {
+            ArrayList<Future<String>> results = new ArrayList<Future<String>>();
+            for (final Path file : files) {
+                results.add(threads.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        permits.acquire();
+                        try {
+                            return processFile(file, null);
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                }));
+            }
+
+            for (Future<String> result : results) {
+                out.print(result.get());
+            }
+        } finally {
+            threads.shutdown();
+        }
+
+    }
+
+    /**
+     * @return Executors.newVirtualThreadPerTaskExecutor() on Java 21 and later, otherwise null.  Looked up by
+     * reflection, since the application is built for Java 8.
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Keep running and process each new file in the data directory once it is fully written (see
+     * DirectoryWatcher), on a bounded pool of worker threads.  Files already in the directory are processed first.
+     * Reports are printed as each file finishes.  On shutdown (e.g. Ctrl-C), stops watching and finishes the files
+     * already handed to the workers.
+     */
+    private static void watch(Path dataDir, int workers) throws Exception {
+
+        final ExecutorService pool = Executors.newFixedThreadPool(workers);
+        final DirectoryWatcher watcher = new DirectoryWatcher(dataDir, ParserSettings.getWatchSettleMillis(),
+                new DirectoryWatcher.Listener() {
+                    @Override
+                    public Future<?> fileReady(final Path file) {
+                        return pool.submit(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    System.out.print(processFile(file, null));
+                                } catch (RuntimeException ex) {
+                                    System.out.println("There was an unexpected error processing file: " + file);
+                                    ex.printStackTrace();
+                                }
+                            }
+                        });
+                    }
+                });
+
+        final Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                try {
+                    watcher.stop();
+                    mainThread.join();    // let main finish the queued files and close the database
+                } catch (IOException | InterruptedException ex) {
+                    // shutting down anyway
+                }
+            }
+        });
+
+        System.out.println("Watching " + dataDir.toAbsolutePath() + " for new files.");
+        try {
+            watcher.run();
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+
+    }
+
+    /**
+     * Parse one file and store valid data in the associated database tables.
+     *
+     * @param connection connection to store the data with, or null to borrow one from the pool
+     * @return the console report for the file: a success message, or the error and any invalid lines
+     */
+    static String processFile(Path file, Connection connection) {
+
+        StringBuilder report = new StringBuilder();
+        try {
+            DataFileReader reader = new DataFileReader(file.toAbsolutePath(), connection,
+                    ParserSettings.getBatchSize());
+            reader.readAndStoreData();
+            if (reader.isAlreadyProcessed()) {
+                IngestMetrics.get().fileSkipped();
+                report.append("File: ").append(file.getFileName().toString())
+                        .append(" already processed, skipped.\n");
+            } else {
+                IngestMetrics.get().fileLoaded();
+                report.append("File: ").append(file.getFileName().toString()).append(" processed successfully.\n");
+            }
+        } catch (FileReaderException fre) {
+            IngestMetrics.get().fileWithErrors();
+            report.append("ERROR for file: ").append(file.getFileName().toString()).append(". ")
+                    .append(fre.getMessage()).append("\n");
+            if (fre.getErrorLines() != null && fre.getErrorLines().size() > 0) {
+                for (Map.Entry errorLine : fre.getErrorLines().entrySet()) {
+                    report.append("  Data not saved for Line #").append(errorLine.getKey()).append(": ")
+                            .append(errorLine.getValue()).append("\n");
+                }
+                if (fre.getErrorCount() > fre.getErrorLines().size()) {
+                    report.append("  ... and ").append(fre.getErrorCount() - fre.getErrorLines().size())
+                            .append(" more lines not saved.\n");
+                }
+            }
+            if (fre.getErrorCountsByReason() != null && !fre.getErrorCountsByReason().isEmpty()) {
+                report.append("  Lines not saved by reason: ").append(fre.getErrorCountsByReason()).append("\n");
+            }
+            if (fre.getRejectFile() != null) {
+                report.append("  All lines not saved are in: ").append(fre.getRejectFile().toAbsolutePath())
+                        .append("\n");
+            }
         }
+        return report.toString();
 
     }
 
@@ -1,28 +1,69 @@
+import java.nio.file.Path;
 import java.util.Map;
 
 /**
  * An exception to return more information about what lines failed when parsing a file.
  * Includes one message about the overall file, plus a list of line numbers and an error message for each line.
+ * For large files that list is only a sample: the total count, counts by reason and the reject file with every line
+ * are kept as well (see ErrorCollector).
  * <p/>
  * User: Heidi
  * Date: 10/3/17
  */
 public class FileReaderException extends Exception {
-    // Keep track of all lines in the file that did not validate
+    // Keep track of the lines in the file that did not validate (the first ones, when there are many)
     final Map<Integer, String> errorLines;
+    final int errorCount;
+    final Map<String, Integer> errorCountsByReason;
+    final Path rejectFile;
 
     public FileReaderException(String message) {
         super(message);
         this.errorLines = null;
+        this.errorCount = 0;
+        this.errorCountsByReason = null;
+        this.rejectFile = null;
     }
 
     public FileReaderException(Map<Integer, String> errorLines, String message) {
         super(message);
         this.errorLines = errorLines;
+        this.errorCount = errorLines == null ? 0 : errorLines.size();
+        this.errorCountsByReason = null;
+        this.rejectFile = null;
+    }
+
+    public FileReaderException(ErrorCollector errors, String message) {
+        super(message);
+        this.errorLines = errors.getSample();
+        this.errorCount = errors.size();
+        this.errorCountsByReason = errors.getCountsByReason();
+        this.rejectFile = errors.getRejectFile();
     }
 
     public Map<Integer, String> getErrorLines() {
         return errorLines;
     }
 
+    /**
+     * @return the number of lines that were not stored, which can be more than getErrorLines has
+     */
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return the number of lines not stored for each reason code, or null if not known
+     */
+    public Map<String, Integer> getErrorCountsByReason() {
+        return errorCountsByReason;
+    }
+
+    /**
+     * @return the file every line not stored was written to, or null if there is none
+     */
+    public Path getRejectFile() {
+        return rejectFile;
+    }
+
 }
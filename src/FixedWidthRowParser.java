@@ -0,0 +1,112 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Parses fixed width data lines for one spec.  The spec is compiled once per file: the cell offsets are worked out
+ * from the widths, and each column's DataType is looked up, so the per-line loop only walks arrays.
+ * Immutable, so one parser can be shared by threads parsing different chunks of a file.
+ *
+ * Lines can be parsed from a String, or straight from the bytes of a (memory mapped) file.  Byte offsets are only
+ * the same as character offsets for ASCII, so the byte version only handles plain ASCII lines that are valid.  For
+ * any other line it returns false, and the caller decodes the line as a String and parses that instead, which also
+ * finds the error to report.
+ *
+ * A line may stop short of the full width, as when an editor strips the trailing spaces of its last cell: the cells
+ * it reaches into are cut at its end.  A line that does not reach the last cell at all is MALFORMED (LINE_TOO_SHORT).
+ */
+public class FixedWidthRowParser extends RowParser {
+
+    private final int[] cellStarts;
+    private final int[] cellEnds;
+    private final int lineWidth;
+    // Shortest line that reaches into every cell
+    private final int minLineWidth;
+
+    private FixedWidthRowParser(ArrayList<ColumnSpecification> specs) {
+        super(specs);
+        int columnCount = specs.size();
+        this.cellStarts = new int[columnCount];
+        this.cellEnds = new int[columnCount];
+
+        int offset = 0;
+        for (int i = 0; i < columnCount; i++) {
+            cellStarts[i] = offset;
+            offset += widths[i];
+            cellEnds[i] = offset;
+        }
+        this.lineWidth = offset;
+        this.minLineWidth = columnCount == 0 ? 0 : cellStarts[columnCount - 1] + 1;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a spec has a datatype that is not known
+     */
+    public static FixedWidthRowParser compile(ArrayList<ColumnSpecification> specs) {
+        return new FixedWidthRowParser(specs);
+    }
+
+    @Override
+    public int parse(String line, RowBuffer row) {
+
+        int length = line.length();
+        if (length < minLineWidth) return MALFORMED;
+
+        int invalidColumn = -1;
+        for (int column = 0; column < dataTypes.length; column++) {
+
+            // trim the same way String.trim does
+            int from = cellStarts[column];
+            int to = Math.min(cellEnds[column], length);
+            while (from < to && line.charAt(from) <= ' ') from++;
+            while (to > from && line.charAt(to - 1) <= ' ') to--;
+
+            // There are no nullable/not nullable specifications in the database table specs.  Therefore, assume
+            // all columns are not-nullable.
+            if (from == to || dataTypes[column].parse(line, from, to, row, column) != DBHelper.VALID) {
+                invalidColumn = column;
+            }
+        }
+        return invalidColumn;
+
+    }
+
+    @Override
+    public boolean parse(ByteBuffer buffer, int lineStart, int lineEnd, RowBuffer row) {
+
+        if (lineEnd - lineStart < lineWidth) return false;
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (buffer.get(i) < 0) return false;   // not ASCII
+        }
+
+        for (int column = 0; column < dataTypes.length; column++) {
+
+            int from = lineStart + cellStarts[column];
+            int to = lineStart + cellEnds[column];
+            while (from < to && buffer.get(from) <= ' ') from++;
+            while (to > from && buffer.get(to - 1) <= ' ') to--;
+
+            if (from == to || dataTypes[column].parse(buffer, from, to, row, column) != DBHelper.VALID) {
+                return false;
+            }
+        }
+        return true;
+
+    }
+
+    @Override
+    protected String getValue(String line, int column) {
+        return line.substring(cellStarts[column], Math.min(cellEnds[column], line.length())).trim();
+    }
+
+    @Override
+    protected int getMalformedCode(String line) {
+        return DBHelper.LINE_TOO_SHORT;
+    }
+
+    @Override
+    protected String describeMalformed(String line) {
+        return "Line is " + line.length() + " characters, too short to reach the " + columnNames[dataTypes.length - 1]
+                + " cell at character " + minLineWidth;
+    }
+
+}
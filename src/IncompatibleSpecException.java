@@ -0,0 +1,24 @@
+import java.sql.SQLException;
+
+/**
+ * Thrown when a table already in the database cannot be altered in place to match its spec file, e.g. because a
+ * column's datatype changed.  Nothing is changed in the table, and no line of the file is loaded.
+ */
+public class IncompatibleSpecException extends SQLException {
+
+    private final String dataTable;
+
+    /**
+     * @param differences why, e.g. column count is BOOLEAN, which cannot store INTEGER
+     */
+    public IncompatibleSpecException(String dataTable, String differences) {
+        super("Matching spec file: " + dataTable + ".csv does not fit the existing table " + dataTable
+                + ", which would have to be rebuilt: " + differences);
+        this.dataTable = dataTable;
+    }
+
+    public String getDataTable() {
+        return dataTable;
+    }
+
+}
@@ -0,0 +1,362 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and timers for each stage of loading files: reading and parsing, rejected lines, inserts and commits.
+ * One instance for the application (get()), updated by every worker thread.
+ *
+ * Cheap enough to leave on: counters are LongAdders, and the hot paths only update them once per batch, chunk, file
+ * or few thousand lines, never per valid line.  Insert latency and batch size are kept in histograms with power of 2
+ * buckets, so their percentiles are accurate to within a factor of 2.
+ *
+ * Shown through JMX (see IngestMetricsMXBean), as a progress line every few seconds (startReporting), and as a JSON
+ * summary at the end of a run (toJson).
+ */
+public class IngestMetrics implements IngestMetricsMXBean {
+
+    public static final String OBJECT_NAME = "fileparser:type=IngestMetrics";
+
+    private static final IngestMetrics INSTANCE = new IngestMetrics();
+
+    private final long startNanos = System.nanoTime();
+
+    private final LongAdder filesLoaded = new LongAdder();
+    private final LongAdder filesSkipped = new LongAdder();
+    private final LongAdder filesWithErrors = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder readAndParseNanos = new LongAdder();
+    private final LongAdder rowsStored = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> linesRejected = new ConcurrentHashMap<String, LongAdder>();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchRows = new LongAdder();
+    private final Log2Histogram batchSizes = new Log2Histogram();
+    private final LongAdder insertNanos = new LongAdder();
+    private final Log2Histogram insertLatencyMicros = new Log2Histogram();
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder commitNanos = new LongAdder();
+
+    public static IngestMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Register with the platform MBean server as OBJECT_NAME.
+     */
+    public void register() throws JMException {
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        }
+    }
+
+    /**
+     * Print a progress line to out every intervalSeconds, on a daemon thread.  Shut the returned executor down to
+     * stop.
+     */
+    public ScheduledExecutorService startReporting(final long intervalSeconds, final PrintStream out) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "fileparser-metrics");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        reporter.scheduleAtFixedRate(new Runnable() {
+            private long linesBefore = 0;
+
+            @Override
+            public void run() {
+                long lines = linesRead.sum();
+                out.println(toLogLine((lines - linesBefore) / intervalSeconds));
+                linesBefore = lines;
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        return reporter;
+    }
+
+    // Recording.  Times are in nanoseconds.
+
+    public void fileLoaded() {
+        filesLoaded.increment();
+    }
+
+    public void fileSkipped() {
+        filesSkipped.increment();
+    }
+
+    public void fileWithErrors() {
+        filesWithErrors.increment();
+    }
+
+    /**
+     * A chunk (or whole file) was read and parsed.
+     *
+     * @param nanos time spent on it, not counting time waiting on the database
+     */
+    public void chunkRead(long bytes, long nanos) {
+        bytesRead.add(bytes);
+        readAndParseNanos.add(nanos);
+    }
+
+    /**
+     * Lines read so far.  Called every few thousand lines, so progress shows while a large file is loading.
+     */
+    public void linesRead(int lines) {
+        linesRead.add(lines);
+    }
+
+    /**
+     * @param reason reason code, as in ErrorCollector
+     */
+    public void lineRejected(String reason) {
+        LongAdder count = linesRejected.get(reason);
+        if (count == null) {
+            LongAdder added = new LongAdder();
+            count = linesRejected.putIfAbsent(reason, added);
+            if (count == null) count = added;
+        }
+        count.increment();
+    }
+
+    /**
+     * A batch (or bulk statement, or single insert) of rows was sent to the database.
+     */
+    public void batchInserted(int rows, long nanos) {
+        batches.increment();
+        batchRows.add(rows);
+        batchSizes.record(rows);
+        insertNanos.add(nanos);
+        insertLatencyMicros.record(nanos / 1000);
+    }
+
+    public void rowsStored(int rows) {
+        rowsStored.add(rows);
+    }
+
+    public void committed(long nanos) {
+        commits.increment();
+        commitNanos.add(nanos);
+    }
+
+    // Reporting
+
+    @Override
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public long getFilesLoaded() {
+        return filesLoaded.sum();
+    }
+
+    @Override
+    public long getFilesSkipped() {
+        return filesSkipped.sum();
+    }
+
+    @Override
+    public long getFilesWithErrors() {
+        return filesWithErrors.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getLinesRead() {
+        return linesRead.sum();
+    }
+
+    @Override
+    public long getLinesPerSecond() {
+        long elapsedMillis = getElapsedMillis();
+        return elapsedMillis == 0 ? 0 : getLinesRead() * 1000 / elapsedMillis;
+    }
+
+    @Override
+    public long getReadAndParseMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readAndParseNanos.sum());
+    }
+
+    @Override
+    public long getRowsStored() {
+        return rowsStored.sum();
+    }
+
+    @Override
+    public long getLinesRejected() {
+        long total = 0;
+        for (LongAdder count : linesRejected.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getLinesRejectedByReason() {
+        TreeMap<String, Long> byReason = new TreeMap<String, Long>();
+        for (Map.Entry<String, LongAdder> count : linesRejected.entrySet()) {
+            byReason.put(count.getKey(), count.getValue().sum());
+        }
+        return byReason;
+    }
+
+    @Override
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    @Override
+    public long getAverageBatchSize() {
+        long batchCount = getBatches();
+        return batchCount == 0 ? 0 : batchRows.sum() / batchCount;
+    }
+
+    @Override
+    public long getBatchSizeP50() {
+        return batchSizes.percentile(50);
+    }
+
+    @Override
+    public long getBatchSizeP99() {
+        return batchSizes.percentile(99);
+    }
+
+    @Override
+    public long getBatchSizeMax() {
+        return batchSizes.getMax();
+    }
+
+    @Override
+    public long getInsertMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(insertNanos.sum());
+    }
+
+    @Override
+    public long getInsertLatencyP50Micros() {
+        return insertLatencyMicros.percentile(50);
+    }
+
+    @Override
+    public long getInsertLatencyP99Micros() {
+        return insertLatencyMicros.percentile(99);
+    }
+
+    @Override
+    public long getInsertLatencyMaxMicros() {
+        return insertLatencyMicros.getMax();
+    }
+
+    @Override
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    @Override
+    public long getCommitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(commitNanos.sum());
+    }
+
+    /**
+     * @param linesPerSecond the current rate, e.g. over the last reporting interval
+     */
+    public String toLogLine(long linesPerSecond) {
+        return "Progress: " + (getFilesLoaded() + getFilesWithErrors() + getFilesSkipped()) + " files done, "
+                + getLinesRead() + " lines read (" + linesPerSecond + "/s), " + getRowsStored() + " rows stored, "
+                + getLinesRejected() + " rejected, batch size p50 " + getBatchSizeP50() + ", insert latency p50 "
+                + getInsertLatencyP50Micros() + "us p99 " + getInsertLatencyP99Micros() + "us";
+    }
+
+    /**
+     * @return every metric as one line of JSON, for the end of run summary
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"elapsedMillis\":").append(getElapsedMillis());
+        json.append(",\"filesLoaded\":").append(getFilesLoaded());
+        json.append(",\"filesSkipped\":").append(getFilesSkipped());
+        json.append(",\"filesWithErrors\":").append(getFilesWithErrors());
+        json.append(",\"bytesRead\":").append(getBytesRead());
+        json.append(",\"linesRead\":").append(getLinesRead());
+        json.append(",\"linesPerSecond\":").append(getLinesPerSecond());
+        json.append(",\"readAndParseMillis\":").append(getReadAndParseMillis());
+        json.append(",\"rowsStored\":").append(getRowsStored());
+        json.append(",\"linesRejected\":").append(getLinesRejected());
+        json.append(",\"linesRejectedByReason\":{");
+        String separator = "";
+        for (Map.Entry<String, Long> count : getLinesRejectedByReason().entrySet()) {
+            json.append(separator).append('"').append(count.getKey()).append("\":").append(count.getValue());
+            separator = ",";
+        }
+        json.append('}');
+        json.append(",\"batches\":").append(getBatches());
+        json.append(",\"averageBatchSize\":").append(getAverageBatchSize());
+        json.append(",\"batchSize\":{\"p50\":").append(getBatchSizeP50())
+                .append(",\"p99\":").append(getBatchSizeP99())
+                .append(",\"max\":").append(getBatchSizeMax()).append('}');
+        json.append(",\"insertMillis\":").append(getInsertMillis());
+        json.append(",\"insertLatencyMicros\":{\"p50\":").append(getInsertLatencyP50Micros())
+                .append(",\"p99\":").append(getInsertLatencyP99Micros())
+                .append(",\"max\":").append(getInsertLatencyMaxMicros()).append('}');
+        json.append(",\"commits\":").append(getCommits());
+        json.append(",\"commitMillis\":").append(getCommitMillis());
+        return json.append('}').toString();
+    }
+
+    /**
+     * Counts of non-negative values in power of 2 buckets: bucket 0 holds 0, bucket i holds 2^(i-1) to 2^i - 1.
+     */
+    static class Log2Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(Math.max(0, value)));
+            long currentMax;
+            while (value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+                // another thread raised it, compare again
+            }
+        }
+
+        /**
+         * @return the upper end of the bucket holding the given percentile, or 0 if nothing was recorded
+         */
+        long percentile(int percent) {
+            long total = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                total += buckets.get(i);
+            }
+            long rank = (total * percent + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank && seen > 0) {
+                    return Math.min(i == 0 ? 0 : (1L << i) - 1, max.get());
+                }
+            }
+            return 0;
+        }
+
+        long getMax() {
+            return max.get();
+        }
+    }
+
+}
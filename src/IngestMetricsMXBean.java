@@ -0,0 +1,56 @@
+import java.util.Map;
+
+/**
+ * What IngestMetrics shows through JMX (e.g. in jconsole, under fileparser:type=IngestMetrics).  Counts are since the
+ * application started.
+ */
+public interface IngestMetricsMXBean {
+
+    long getElapsedMillis();
+
+    long getFilesLoaded();
+
+    long getFilesSkipped();
+
+    long getFilesWithErrors();
+
+    long getBytesRead();
+
+    long getLinesRead();
+
+    long getLinesPerSecond();
+
+    /**
+     * @return time spent reading, decoding, parsing and validating lines: everything but waiting on the database
+     */
+    long getReadAndParseMillis();
+
+    long getRowsStored();
+
+    long getLinesRejected();
+
+    Map<String, Long> getLinesRejectedByReason();
+
+    long getBatches();
+
+    long getAverageBatchSize();
+
+    long getBatchSizeP50();
+
+    long getBatchSizeP99();
+
+    long getBatchSizeMax();
+
+    long getInsertMillis();
+
+    long getInsertLatencyP50Micros();
+
+    long getInsertLatencyP99Micros();
+
+    long getInsertLatencyMaxMicros();
+
+    long getCommits();
+
+    long getCommitMillis();
+
+}
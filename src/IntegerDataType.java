@@ -0,0 +1,102 @@
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * INTEGER data: a 32 bit signed integer, following the same rules as Integer.parseInt but without throwing
+ * for invalid data.
+ */
+public class IntegerDataType extends DataType {
+
+    IntegerDataType() {
+        super("INTEGER");
+    }
+
+    @Override
+    public String getSqlType(int width) {
+        return "INT";
+    }
+
+    @Override
+    public boolean isStoredAs(int sqlType) {
+        return sqlType == Types.INTEGER || sqlType == Types.BIGINT;
+    }
+
+    @Override
+    public int parse(String line, int from, int to, RowBuffer row, int column) {
+
+        boolean negative = false;
+        char first = line.charAt(from);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            from++;
+            if (from == to) return DBHelper.NOT_AN_INTEGER;
+        }
+
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = Character.digit(line.charAt(i), 10);
+            if (digit < 0) return DBHelper.NOT_AN_INTEGER;
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) return DBHelper.NOT_AN_INTEGER;
+        }
+        return store(negative ? -value : value, row, column);
+
+    }
+
+    @Override
+    public int parse(ByteBuffer buffer, int from, int to, RowBuffer row, int column) {
+
+        boolean negative = false;
+        byte first = buffer.get(from);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            from++;
+            if (from == to) return DBHelper.NOT_AN_INTEGER;
+        }
+
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) return DBHelper.NOT_AN_INTEGER;
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) return DBHelper.NOT_AN_INTEGER;
+        }
+        return store(negative ? -value : value, row, column);
+
+    }
+
+    private static int store(long value, RowBuffer row, int column) {
+        if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) return DBHelper.NOT_AN_INTEGER;
+        row.setInt(column, (int) value);
+        return DBHelper.VALID;
+    }
+
+    @Override
+    public void bind(PreparedStatement stmt, int parameterIndex, RowBuffer row, int column) throws SQLException {
+        stmt.setInt(parameterIndex, row.getInt(column));
+    }
+
+    @Override
+    public void copy(RowBuffer row, int column, RowBatch batch, int index) {
+        batch.setInt(index, column, row.getInt(column));
+    }
+
+    @Override
+    public void bind(PreparedStatement stmt, int parameterIndex, RowBatch batch, int index, int column)
+            throws SQLException {
+        stmt.setInt(parameterIndex, batch.getInt(index, column));
+    }
+
+    @Override
+    public void appendText(StringBuilder out, RowBuffer row, int column) {
+        out.append(row.getInt(column));
+    }
+
+    @Override
+    public void appendText(StringBuilder out, RowBatch batch, int index, int column) {
+        out.append(batch.getInt(index, column));
+    }
+
+}
@@ -0,0 +1,162 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Parses length-prefixed binary records for one spec.  Each record (framed by RecordReader) holds one field per
+ * column, in spec order, each a 2 byte big-endian length followed by that many bytes of UTF-8 text, e.g. the digits
+ * of an INTEGER.  Values are exact: they are not trimmed.  A field longer than its column's width is VALUE_TOO_LONG.
+ *
+ * ASCII records are parsed from their bytes, in place.  Any other record is made into a CSV line by toLine, and that
+ * is parsed as a delimited line instead; it is also the line that is bulk loaded.  Rejected records are written back
+ * as length-prefixed records, to name.rejected.bin (see writeReject), so a corrected reject file loads under the same
+ * spec.  A record whose fields do not add up to its length is MALFORMED_LINE; see isWellFormed.
+ */
+public class LengthPrefixedRowParser extends DelimitedRowParser {
+
+    private static final int FIELD_HEADER = 2;
+    private static final int MAX_FIELD_LENGTH = 0xffff;
+
+    LengthPrefixedRowParser(ArrayList<ColumnSpecification> specs) {
+        super(specs, ',', '"');
+    }
+
+    /**
+     * @return the longest record a spec with this many columns could have, to tell a damaged record length
+     */
+    public int getMaxRecordLength() {
+        return (int) Math.min(Integer.MAX_VALUE, (long) dataTypes.length * (FIELD_HEADER + MAX_FIELD_LENGTH));
+    }
+
+    @Override
+    public boolean parse(ByteBuffer buffer, int start, int end, RowBuffer row) {
+
+        int position = start;
+        for (int column = 0; column < dataTypes.length; column++) {
+
+            if (position + FIELD_HEADER > end) return false;
+            int from = position + FIELD_HEADER;
+            int to = from + fieldLength(buffer, position);
+            if (to > end || from == to || to - from > widths[column]) return false;
+            for (int i = from; i < to; i++) {
+                if (buffer.get(i) < 0) return false;   // not ASCII
+            }
+            if (dataTypes[column].parse(buffer, from, to, row, column) != DBHelper.VALID) return false;
+            position = to;
+        }
+        return position == end;
+
+    }
+
+    /**
+     * @return true if the record from start to end is exactly one length-prefixed field per column
+     */
+    public boolean isWellFormed(ByteBuffer buffer, int start, int end) {
+        int position = start;
+        for (int column = 0; column < dataTypes.length; column++) {
+            if (position + FIELD_HEADER > end) return false;
+            position += FIELD_HEADER + fieldLength(buffer, position);
+        }
+        return position == end;
+    }
+
+    /**
+     * @return why the record from start to end is not well formed
+     */
+    public String describeMalformed(ByteBuffer buffer, int start, int end) {
+        return "Record of " + (end - start) + " bytes does not hold exactly " + dataTypes.length
+                + " length-prefixed fields";
+    }
+
+    /**
+     * @return the record as a CSV line, every field quoted where it needs to be.  Bytes left over after the last
+     *         field that fits are added as one more field, so a damaged record is still written out whole.
+     */
+    @Override
+    public String toLine(ByteBuffer buffer, int start, int end) {
+
+        StringBuilder line = new StringBuilder(end - start + dataTypes.length * 3);
+        int position = start;
+        while (position < end) {
+            int from = position + FIELD_HEADER;
+            int to = from <= end ? from + fieldLength(buffer, position) : end + 1;
+            if (to > end) {
+                from = position;
+                to = end;
+            }
+            if (position > start) line.append(',');
+            appendField(line, decode(buffer, from, to));
+            position = to;
+        }
+        return line.toString();
+
+    }
+
+    /**
+     * Write a rejected record back as a length-prefixed record, from the CSV line toLine made of it.  A field longer
+     * than a field can be is split in two, and the bytes left over from a damaged record are one more field, so such
+     * a record is rejected again when the reject file is loaded rather than dropped.
+     */
+    @Override
+    public void writeReject(OutputStream out, String line) throws IOException {
+
+        ArrayList<byte[]> fields = new ArrayList<byte[]>();
+        int length = 0;
+        if (!line.isEmpty()) {
+            for (String value : splitFields(line)) {
+                byte[] bytes = value.getBytes(Charset.forName("UTF-8"));
+                int from = 0;
+                do {
+                    int to = Math.min(bytes.length, from + MAX_FIELD_LENGTH);
+                    fields.add(Arrays.copyOfRange(bytes, from, to));
+                    length += FIELD_HEADER + to - from;
+                    from = to;
+                } while (from < bytes.length);
+            }
+        }
+
+        // Not closed or flushed: it writes straight through to out
+        DataOutputStream record = new DataOutputStream(out);
+        record.writeInt(length);
+        for (byte[] field : fields) {
+            record.writeShort(field.length);
+            record.write(field);
+        }
+
+    }
+
+    @Override
+    public String getRejectFileSuffix() {
+        return ".rejected.bin";
+    }
+
+    private static int fieldLength(ByteBuffer buffer, int position) {
+        return (buffer.get(position) & 0xff) << 8 | buffer.get(position + 1) & 0xff;
+    }
+
+    private static String decode(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return new String(bytes, Charset.forName("UTF-8"));
+    }
+
+    private static void appendField(StringBuilder line, String value) {
+        boolean needsQuotes = !value.isEmpty() && (value.charAt(0) <= ' ' || value.charAt(value.length() - 1) <= ' ');
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            line.append(value);
+            return;
+        }
+        line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+}
@@ -0,0 +1,195 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Reads, parses and stores the lines of a file (or chunk) in three stages that run at the same time, so the disk,
+ * the CPU and the database are all kept busy rather than taking turns:
+ *  - a reader thread reads blocks of BLOCK_LINES lines,
+ *  - parseThreads threads parse and validate the blocks,
+ *  - the calling thread, which holds the database connection, sends each block's valid rows to the sink and its
+ *    invalid lines to errors.
+ *
+ * The reader hands the writer one Future per block, in file order, through a queue of at most queueSize blocks.
+ * When the writer falls behind the queue fills up and the reader waits; parsing can only run as far ahead as the
+ * queue.  Since blocks are written in file order, the checkpoint and the line numbers of errors are the same as when
+ * the lines are stored one after another.
+ *
+ * More writers for one file would give up that order, so the writer stage is scaled with chunk workers instead
+ * (see DataFileReader.setChunking): each chunk runs its own pipeline on its own connection.
+ */
+public class LinePipeline {
+
+    // Lines handed from stage to stage at a time
+    static final int BLOCK_LINES = 1024;
+
+    private final RowParser parser;
+    private final int parseThreads;
+    private final int queueSize;
+
+    public LinePipeline(RowParser parser, int parseThreads, int queueSize) {
+        this.parser = parser;
+        this.parseThreads = parseThreads;
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Store every line from reader.  Lines are numbered from linesDone + 1.
+     *
+     * @param checkpoint noted after each line is written, or null
+     * @return the number of lines read, plus linesDone
+     */
+    public int run(final BufferedReader reader, RowSink sink, ErrorCollector errors, final int linesDone,
+                   Checkpoint checkpoint) throws IOException, SQLException {
+
+        final BlockingQueue<Future<Block>> blocks = new ArrayBlockingQueue<Future<Block>>(queueSize);
+        // Blocks the writer is done with, for the reader to fill again
+        final BlockingQueue<Block> written = new ArrayBlockingQueue<Block>(queueSize + 2);
+        final ExecutorService parsers = Executors.newFixedThreadPool(parseThreads);
+        ExecutorService readerThread = Executors.newSingleThreadExecutor();
+
+        try {
+            readerThread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    readBlocks(reader, linesDone + 1, blocks, written, parsers);
+                }
+            });
+
+            int lineNumber = linesDone;
+            while (true) {
+                Block block = blocks.take().get();
+                if (block.count == 0) break;   // end of file
+
+                for (int i = 0; i < block.count; i++) {
+                    lineNumber = block.firstLineNumber + i;
+                    if (block.valid[i]) {
+                        sink.addRow(lineNumber, block.lines[i], block.rows[i]);
+                    } else {
+                        errors.addInvalid(lineNumber, block.lines[i], block.errorCodes[i], block.errorMessages[i]);
+                    }
+                    if (checkpoint != null) checkpoint.lineDone(-1, lineNumber);
+                }
+                IngestMetrics.get().linesRead(block.count);
+                written.offer(block);
+            }
+            return lineNumber;
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while storing lines", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+            if (ex.getCause() instanceof RuntimeException) throw (RuntimeException) ex.getCause();
+            throw new IOException("Error parsing lines", ex.getCause());
+        } finally {
+            readerThread.shutdownNow();
+            parsers.shutdownNow();
+        }
+
+    }
+
+    /**
+     * The reader stage: read blocks of lines and queue a parse of each, then an empty block for the end of the file.
+     * A read error is queued in place of the next block.  Blocks already written are reused.
+     */
+    private void readBlocks(BufferedReader reader, int firstLineNumber, BlockingQueue<Future<Block>> blocks,
+                            BlockingQueue<Block> written, ExecutorService parsers) {
+        try {
+            int lineNumber = firstLineNumber;
+            while (true) {
+                Block reused = written.poll();
+                final Block block = reused == null ? new Block(parser.getColumnCount()) : reused;
+                block.start(lineNumber);
+                String line;
+                while (block.count < BLOCK_LINES && (line = reader.readLine()) != null) {
+                    block.lines[block.count++] = line;
+                }
+                if (block.count == 0) {
+                    blocks.put(completed(new Callable<Block>() {
+                        @Override
+                        public Block call() {
+                            return block;
+                        }
+                    }));
+                    return;
+                }
+                blocks.put(parsers.submit(new Callable<Block>() {
+                    @Override
+                    public Block call() {
+                        return parse(block);
+                    }
+                }));
+                lineNumber += block.count;
+            }
+        } catch (final IOException | RuntimeException ex) {
+            try {
+                blocks.put(completed(new Callable<Block>() {
+                    @Override
+                    public Block call() throws IOException {
+                        throw ex;
+                    }
+                }));
+            } catch (InterruptedException stopped) {
+                // the writer stopped
+            }
+        } catch (InterruptedException ex) {
+            // the writer stopped
+        }
+    }
+
+    /**
+     * The parse stage: parse and validate each line of the block into its row.  Invalid lines get the code and
+     * message of the error.
+     */
+    private Block parse(Block block) {
+        for (int i = 0; i < block.count; i++) {
+            int invalidColumn = parser.parse(block.lines[i], block.rows[i]);
+            block.valid[i] = invalidColumn < 0;
+            if (invalidColumn >= 0) {
+                block.errorCodes[i] = parser.getErrorCode(block.lines[i], invalidColumn);
+                block.errorMessages[i] = parser.describeError(block.lines[i], invalidColumn);
+            }
+        }
+        return block;
+    }
+
+    private static Future<Block> completed(Callable<Block> result) {
+        FutureTask<Block> task = new FutureTask<Block>(result);
+        task.run();
+        return task;
+    }
+
+    /**
+     * Consecutive lines of the file, and once parsed, their rows or errors.  Reused for later lines once written.
+     */
+    private static class Block {
+        final String[] lines = new String[BLOCK_LINES];
+        final RowBuffer[] rows = new RowBuffer[BLOCK_LINES];
+        final boolean[] valid = new boolean[BLOCK_LINES];
+        final int[] errorCodes = new int[BLOCK_LINES];
+        final String[] errorMessages = new String[BLOCK_LINES];
+        int firstLineNumber;
+        int count;
+
+        Block(int columnCount) {
+            for (int i = 0; i < BLOCK_LINES; i++) {
+                rows[i] = new RowBuffer(columnCount);
+            }
+        }
+
+        void start(int firstLineNumber) {
+            this.firstLineNumber = firstLineNumber;
+            this.count = 0;
+        }
+    }
+
+}
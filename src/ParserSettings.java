@@ -0,0 +1,263 @@
+/**
+ * Settings for the application.  Read from Java system properties so they can be given on the command line,
+ * e.g. -Dfileparser.batchSize=5000.  Anything not set (or not a valid number) falls back to the default.
+ */
+public class ParserSettings {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_WORKERS = 1;
+    public static final int DEFAULT_CHUNK_WORKERS = 1;
+    public static final long DEFAULT_CHUNK_MIN_FILE_SIZE = 64L * 1024 * 1024;
+    public static final String DEFAULT_DATABASE_URL = "jdbc:h2:~/test";
+    public static final int DEFAULT_BULK_LOAD_ROWS = 100000;
+    public static final long DEFAULT_WATCH_SETTLE_MILLIS = 1000;
+    public static final long DEFAULT_POOL_IDLE_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    public static final long DEFAULT_POOL_BORROW_TIMEOUT_MILLIS = 30 * 1000;
+    public static final int DEFAULT_ERROR_SAMPLE_SIZE = 100;
+    public static final String DEFAULT_REJECT_DIRECTORY = "rejects";
+    public static final long DEFAULT_METRICS_INTERVAL_SECONDS = 10;
+    public static final int DEFAULT_PARSE_THREADS = 2;
+    public static final int DEFAULT_PIPELINE_QUEUE_BLOCKS = 16;
+    public static final int DEFAULT_MAX_ERRORS = 0;
+
+    /**
+     * @return number of rows sent to the database in one batch, and committed together
+     */
+    public static int getBatchSize() {
+        return getPositiveInt("fileparser.batchSize", DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @return number of data files processed at the same time, each on its own thread and database connection
+     */
+    public static int getWorkers() {
+        return getPositiveInt("fileparser.workers", DEFAULT_WORKERS);
+    }
+
+    /**
+     * @return number of threads a single large data file is split across.  1 means files are not split.
+     */
+    public static int getChunkWorkers() {
+        return getPositiveInt("fileparser.chunkWorkers", DEFAULT_CHUNK_WORKERS);
+    }
+
+    /**
+     * @return smallest file size, in bytes, that is split into chunks when chunkWorkers is more than 1
+     */
+    public static long getChunkMinFileSize() {
+        long value = Long.getLong("fileparser.chunkMinFileSize", DEFAULT_CHUNK_MIN_FILE_SIZE);
+        return value >= 0 ? value : DEFAULT_CHUNK_MIN_FILE_SIZE;
+    }
+
+    /**
+     * @return true to decode data files from memory mapped bytes, false to always read lines as Strings
+     */
+    public static boolean isMappedDecoder() {
+        return Boolean.parseBoolean(System.getProperty("fileparser.mappedDecoder", "true"));
+    }
+
+    /**
+     * @return true to skip data files already loaded and record each file loaded in the PROCESSED_FILES table (see
+     * FileLedger), false to load every file on every run
+     */
+    public static boolean isLedger() {
+        return Boolean.parseBoolean(System.getProperty("fileparser.ledger", "true"));
+    }
+
+    /**
+     * @return true to save a checkpoint of each file's progress with every commit, so an interrupted load resumes
+     * where it stopped (see Checkpoint), false to always load whole files
+     */
+    public static boolean isCheckpoints() {
+        return Boolean.parseBoolean(System.getProperty("fileparser.checkpoints", "true"));
+    }
+
+    /**
+     * @return true to keep running and process new files as they arrive in the data directory (see
+     * DirectoryWatcher), false to process the files there once and exit
+     */
+    public static boolean isWatch() {
+        return Boolean.parseBoolean(System.getProperty("fileparser.watch", "false"));
+    }
+
+    /**
+     * @return how long a new file's size and modified time must stay the same before it is processed, in watch mode
+     */
+    public static long getWatchSettleMillis() {
+        return getPositiveLong("fileparser.watchSettleMillis", DEFAULT_WATCH_SETTLE_MILLIS);
+    }
+
+    /**
+     * @return true to read, parse and store each file (or chunk) in overlapping stages on separate threads (see
+     * LinePipeline), false to do all three on one thread, line by line
+     */
+    public static boolean isPipeline() {
+        return Boolean.parseBoolean(System.getProperty("fileparser.pipeline", "false"));
+    }
+
+    /**
+     * @return threads parsing and validating lines for each file (or chunk), in pipeline mode
+     */
+    public static int getParseThreads() {
+        return getPositiveInt("fileparser.parseThreads", DEFAULT_PARSE_THREADS);
+    }
+
+    /**
+     * @return blocks of lines the reader stage may get ahead of the writer stage, in pipeline mode
+     */
+    public static int getPipelineQueueBlocks() {
+        return getPositiveInt("fileparser.pipelineQueueBlocks", DEFAULT_PIPELINE_QUEUE_BLOCKS);
+    }
+
+    /**
+     * @return true to process every file on a thread of its own (a virtual thread on Java 21 and later), with at
+     * most getConcurrentFiles storing data at once, rather than on a pool of getWorkers threads
+     */
+    public static boolean isVirtualThreads() {
+        return Boolean.parseBoolean(System.getProperty("fileparser.virtualThreads", "false"));
+    }
+
+    /**
+     * @return files processed at the same time with virtual threads, and most file workers otherwise: as many as the
+     * connection pool has connections for, each file taking one plus one per chunk worker
+     */
+    public static int getConcurrentFiles() {
+        return Math.max(1, (getPoolSize() - 1) / (getChunkWorkers() + 1));
+    }
+
+    /**
+     * @return true to load each file's valid rows with bulk statements from a temporary CSV file (see
+     * BulkLoader), false to insert them in JDBC batches, or null if not set: whichever is faster for the database
+     * (see SqlDialect.isBulkLoadPreferred)
+     */
+    public static Boolean getBulkLoad() {
+        String value = System.getProperty("fileparser.bulkLoad");
+        return value == null ? null : Boolean.valueOf(value);
+    }
+
+    /**
+     * @return true to store the date in a data file's name (e.g. 2016-10-04 in testformat1_2016-10-04.txt) with each
+     * of its rows, in an indexed load date column (see SqlDialect)
+     */
+    public static boolean isPartitionByDate() {
+        return Boolean.parseBoolean(System.getProperty("fileparser.partitionByDate", "false"));
+    }
+
+    /**
+     * @return true to replace the rows of a file's date when the file is loaded, rather than add to them: the file is
+     * loaded into a staging table, then swapped in for that date's rows in one transaction.  Implies
+     * partitionByDate.
+     */
+    public static boolean isReplacePartition() {
+        return Boolean.parseBoolean(System.getProperty("fileparser.replacePartition", "false"));
+    }
+
+    /**
+     * @return true to store a file whole or not at all: it is loaded into a staging table and moved into its table
+     * in one transaction only if no more than maxErrors of its lines are rejected.  False to store every valid line
+     * as it is read.
+     */
+    public static boolean isWholeFile() {
+        return Boolean.parseBoolean(System.getProperty("fileparser.wholeFile", "false"));
+    }
+
+    /**
+     * @return most lines of a file that can be rejected when storing whole files.  Loading stops at the next one.
+     */
+    public static int getMaxErrors() {
+        int value = Integer.getInteger("fileparser.maxErrors", DEFAULT_MAX_ERRORS);
+        return value >= 0 ? value : DEFAULT_MAX_ERRORS;
+    }
+
+    /**
+     * @return rows loaded and committed per bulk statement when bulk loading
+     */
+    public static int getBulkLoadRows() {
+        return getPositiveInt("fileparser.bulkLoadRows", DEFAULT_BULK_LOAD_ROWS);
+    }
+
+    /**
+     * @return true to show IngestMetrics through JMX, print a progress line every metrics interval and a JSON
+     * summary at the end of the run.  The metrics are collected either way.
+     */
+    public static boolean isMetrics() {
+        return Boolean.parseBoolean(System.getProperty("fileparser.metrics", "true"));
+    }
+
+    /**
+     * @return seconds between progress lines
+     */
+    public static long getMetricsIntervalSeconds() {
+        return getPositiveLong("fileparser.metricsIntervalSeconds", DEFAULT_METRICS_INTERVAL_SECONDS);
+    }
+
+    /**
+     * @return how many of a file's rejected lines are kept in memory and reported on the console.  Every rejected
+     * line is written to the file's reject files either way (see ErrorCollector).
+     */
+    public static int getErrorSampleSize() {
+        return getPositiveInt("fileparser.errorSampleSize", DEFAULT_ERROR_SAMPLE_SIZE);
+    }
+
+    /**
+     * @return directory the reject files of files with invalid lines are written to
+     */
+    public static String getRejectDirectory() {
+        return System.getProperty("fileparser.rejectDir", DEFAULT_REJECT_DIRECTORY);
+    }
+
+    /**
+     * @return JDBC URL of the database, e.g. jdbc:h2:mem:test for an in-memory database, or
+     * jdbc:postgresql://localhost/fileparser.  The URL decides the SqlDialect.
+     */
+    public static String getDatabaseUrl() {
+        return System.getProperty("fileparser.dbUrl", DEFAULT_DATABASE_URL);
+    }
+
+    /**
+     * @return user to connect to the database as; by default sa for H2 and postgres for PostgreSQL
+     */
+    public static String getDatabaseUser() {
+        String user = System.getProperty("fileparser.dbUser");
+        return user != null ? user : SqlDialect.forUrl(getDatabaseUrl()).getDefaultUser();
+    }
+
+    public static String getDatabasePassword() {
+        return System.getProperty("fileparser.dbPassword", "");
+    }
+
+    /**
+     * @return most database connections open at once.  By default, enough for every file worker and each of its
+     * chunk workers to have one, plus the shared connection, and at least 10.  Never less than one file and its
+     * chunk workers need, plus the shared connection: a file holds its connection while its chunks borrow theirs.
+     */
+    public static int getPoolSize() {
+        int needed = getWorkers() * (getChunkWorkers() + 1) + 1;
+        return Math.max(getChunkWorkers() + 2, getPositiveInt("fileparser.poolSize", Math.max(10, needed)));
+    }
+
+    /**
+     * @return how long a pooled connection can sit unused before it is closed
+     */
+    public static long getPoolIdleTimeoutMillis() {
+        return getPositiveLong("fileparser.poolIdleTimeoutMillis", DEFAULT_POOL_IDLE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @return how long to wait for a pooled connection to become free before giving up
+     */
+    public static long getPoolBorrowTimeoutMillis() {
+        return getPositiveLong("fileparser.poolBorrowTimeoutMillis", DEFAULT_POOL_BORROW_TIMEOUT_MILLIS);
+    }
+
+    static int getPositiveInt(String name, int defaultValue) {
+        int value = Integer.getInteger(name, defaultValue);
+        return value > 0 ? value : defaultValue;
+    }
+
+    static long getPositiveLong(String name, long defaultValue) {
+        long value = Long.getLong(name, defaultValue);
+        return value > 0 ? value : defaultValue;
+    }
+
+}
@@ -0,0 +1,128 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * A PostgreSQL server.  Unquoted names are lower case.
+ * Across the network COPY is much faster than inserts, so files are bulk loaded by default: the CSV file is streamed
+ * to the server through the driver's CopyManager, so the server does not need to see the file.  Batched inserts (e.g.
+ * for a rejected segment) are rewritten by the driver into multi-row inserts.
+ *
+ * The PostgreSQL driver is only needed on the classpath when a PostgreSQL URL is configured, so it is called by
+ * reflection.
+ */
+public class PostgreSqlDialect extends SqlDialect {
+
+    // Longest VARCHAR PostgreSQL allows; wider TEXT columns are unbounded TEXT
+    private static final int MAX_VARCHAR_WIDTH = 10485760;
+
+    PostgreSqlDialect() {
+        super("PostgreSQL", "jdbc:postgresql:");
+    }
+
+    @Override
+    public String getDriverClassName() {
+        return "org.postgresql.Driver";
+    }
+
+    @Override
+    public String getDefaultUser() {
+        return "postgres";
+    }
+
+    @Override
+    public Properties getConnectionProperties(String user, String password) {
+        Properties properties = super.getConnectionProperties(user, password);
+        properties.setProperty("reWriteBatchedInserts", "true");
+        return properties;
+    }
+
+    @Override
+    protected String foldCase(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public String getColumnType(DataType dataType, int width) {
+        if (dataType == DataType.TEXT && width > MAX_VARCHAR_WIDTH) return "TEXT";
+        return super.getColumnType(dataType, width);
+    }
+
+    /**
+     * INSERT INTO table (columns) VALUES (...) ON CONFLICT (keyColumn) DO UPDATE SET column = EXCLUDED.column, ...
+     */
+    @Override
+    public String buildUpsertSql(String table, String keyColumn, String... columns) {
+        StringBuilder columnList = new StringBuilder();
+        StringBuilder parameters = new StringBuilder();
+        StringBuilder updates = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            String column = quoteIdentifier(columns[i]);
+            if (i > 0) {
+                columnList.append(",");
+                parameters.append(",");
+            }
+            columnList.append(column);
+            parameters.append("?");
+            if (!columns[i].equals(keyColumn)) {
+                if (updates.length() > 0) updates.append(",");
+                updates.append(column).append(" = EXCLUDED.").append(column);
+            }
+        }
+        return "INSERT INTO " + quoteIdentifier(table) + " (" + columnList + ") VALUES (" + parameters
+                + ") ON CONFLICT (" + quoteIdentifier(keyColumn) + ") DO UPDATE SET " + updates;
+    }
+
+    @Override
+    public boolean isBulkLoadPreferred() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsBulkLoad() {
+        try {
+            Class.forName("org.postgresql.PGConnection");
+            return true;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * @return COPY table (columns) FROM STDIN WITH (FORMAT csv), to stream a CSV file into the table
+     */
+    public String buildCopySql(String dataTable, ArrayList<ColumnSpecification> specs, boolean withLoadDate) {
+        return "COPY " + quoteIdentifier(dataTable) + " (" + buildColumnList(specs, withLoadDate)
+                + ") FROM STDIN WITH (FORMAT csv)";
+    }
+
+    /**
+     * Streams the file through the driver's CopyManager, with buildCopySql
+     */
+    @Override
+    public long bulkLoad(Connection connection, String dataTable, ArrayList<ColumnSpecification> specs,
+                         boolean withLoadDate, Path csvFile) throws IOException, SQLException {
+        try (Reader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8)) {
+            Class<?> pgConnection = Class.forName("org.postgresql.PGConnection");
+            Object copyManager = pgConnection.getMethod("getCopyAPI").invoke(connection.unwrap(pgConnection));
+            Object copied = copyManager.getClass().getMethod("copyIn", String.class, Reader.class)
+                    .invoke(copyManager, buildCopySql(dataTable, specs, withLoadDate), reader);
+            return (Long) copied;
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof SQLException) throw (SQLException) ex.getCause();
+            if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+            throw new SQLException("Error in COPY to " + dataTable, ex.getCause());
+        } catch (ReflectiveOperationException ex) {
+            throw new SQLException("PostgreSQL driver does not support COPY: " + ex, ex);
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads its source on a thread of its own, up to BUFFERS buffers of BUFFER_SIZE bytes ahead of the reader.  Used to
+ * decompress files, so decompressing and parsing run at the same time rather than taking turns.
+ *
+ * Buffers go back to the reading thread once read, so a file of any size only ever uses BUFFERS + 2 of them.
+ * An error reading the source is thrown from read once the bytes before it are read.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final int BUFFERS = 8;
+
+    private final InputStream source;
+    private final BlockingQueue<Buffer> filled = new ArrayBlockingQueue<Buffer>(BUFFERS);
+    // Buffers already read, for the reading thread to fill again
+    private final BlockingQueue<Buffer> empty = new ArrayBlockingQueue<Buffer>(BUFFERS + 2);
+    private final Thread readingThread;
+
+    private Buffer current;
+    private int position;
+    private boolean closed = false;
+
+    public ReadAheadInputStream(InputStream source, String threadName) {
+        this.source = source;
+        this.readingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readAhead();
+            }
+        }, threadName);
+        this.readingThread.setDaemon(true);
+        this.readingThread.start();
+    }
+
+    private void readAhead() {
+        try {
+            while (true) {
+                Buffer buffer = empty.poll();
+                if (buffer == null) buffer = new Buffer();
+                buffer.length = 0;
+                int read = 0;
+                while (buffer.length < BUFFER_SIZE
+                        && (read = source.read(buffer.bytes, buffer.length, BUFFER_SIZE - buffer.length)) >= 0) {
+                    buffer.length += read;
+                }
+                if (buffer.length > 0) filled.put(buffer);
+                if (read < 0) {
+                    filled.put(Buffer.END);
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            try {
+                filled.put(new Buffer(ex));
+            } catch (InterruptedException stopped) {
+                // closed
+            }
+        } catch (InterruptedException ex) {
+            // closed
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) return -1;
+        return current.bytes[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!fill()) return -1;
+        int read = Math.min(len, current.length - position);
+        System.arraycopy(current.bytes, position, b, off, read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return current == null || current == Buffer.END ? 0 : current.length - position;
+    }
+
+    // Make sure current has bytes left to read.  Returns false at the end of the source.
+    private boolean fill() throws IOException {
+        if (closed) throw new IOException("Stream closed");
+        if (current == Buffer.END) return false;
+        if (current != null && position < current.length) return true;
+
+        if (current != null) empty.offer(current);
+        try {
+            current = filled.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + readingThread.getName());
+        }
+        position = 0;
+        if (current.error instanceof IOException) throw (IOException) current.error;
+        if (current.error != null) throw (RuntimeException) current.error;
+        return current != Buffer.END;
+    }
+
+    /**
+     * Stop the reading thread and close the source.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        readingThread.interrupt();
+        try {
+            readingThread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Bytes read from the source, or the error reading them.
+     */
+    private static class Buffer {
+        static final Buffer END = new Buffer(null);
+
+        final byte[] bytes;
+        final Exception error;
+        int length;
+
+        Buffer() {
+            this.bytes = new byte[BUFFER_SIZE];
+            this.error = null;
+        }
+
+        Buffer(Exception error) {
+            this.bytes = null;
+            this.error = error;
+        }
+    }
+
+}
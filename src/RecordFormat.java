@@ -0,0 +1,93 @@
+import java.util.ArrayList;
+
+/**
+ * How the records of a data file are laid out, chosen per spec: a spec file can start with a line such as
+ * "#format,CSV" (see SpecRegistry).  Without one, data files are FIXED_WIDTH, as they always were.
+ *  - FIXED_WIDTH: one record per line, each column the spec's width of characters.
+ *  - CSV, TSV and DELIMITED(c): one record per line, fields separated by a comma, a tab or the character c.  CSV and
+ *    DELIMITED fields can be quoted with "; TSV fields cannot.
+ *  - LENGTH_PREFIXED: binary records, each a 4 byte length then a 2 byte length and the bytes of each field.
+ * Each format compiles a spec into the RowParser for it.  Line formats can be split into chunks, memory mapped and
+ * pipelined; a LENGTH_PREFIXED file is read as a stream of records from start to end (see RecordReader).
+ */
+public abstract class RecordFormat {
+
+    public static final RecordFormat FIXED_WIDTH = new RecordFormat("FIXED_WIDTH") {
+        @Override
+        public RowParser compile(ArrayList<ColumnSpecification> specs) {
+            return FixedWidthRowParser.compile(specs);
+        }
+    };
+
+    public static final RecordFormat CSV = delimited("CSV", ',', '"');
+
+    public static final RecordFormat TSV = delimited("TSV", '\t', (char) 0);
+
+    public static final RecordFormat LENGTH_PREFIXED = new RecordFormat("LENGTH_PREFIXED") {
+        @Override
+        public RowParser compile(ArrayList<ColumnSpecification> specs) {
+            return new LengthPrefixedRowParser(specs);
+        }
+
+        @Override
+        public boolean isLineBased() {
+            return false;
+        }
+    };
+
+    private static final RecordFormat[] FORMATS = {FIXED_WIDTH, CSV, TSV, LENGTH_PREFIXED};
+
+    private final String name;
+
+    private RecordFormat(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the format with this name in a spec file, e.g. CSV or DELIMITED(|), or null if there is none
+     */
+    public static RecordFormat forName(String name) {
+
+        for (RecordFormat format : FORMATS) {
+            if (format.name.equalsIgnoreCase(name)) return format;
+        }
+        // DELIMITED(c): any one character other than the quote, which is not trimmed away as white space
+        String upperName = name.toUpperCase();
+        if (upperName.startsWith("DELIMITED(") && name.endsWith(")") && name.length() == "DELIMITED(c)".length()) {
+            char delimiter = name.charAt("DELIMITED(".length());
+            if (delimiter != '"' && delimiter != ' ') return delimited("DELIMITED(" + delimiter + ")", delimiter, '"');
+        }
+        return null;
+
+    }
+
+    private static RecordFormat delimited(String name, final char delimiter, final char quote) {
+        return new RecordFormat(name) {
+            @Override
+            public RowParser compile(ArrayList<ColumnSpecification> specs) {
+                return new DelimitedRowParser(specs, delimiter, quote);
+            }
+        };
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a spec has a datatype that is not known
+     */
+    public abstract RowParser compile(ArrayList<ColumnSpecification> specs);
+
+    /**
+     * @return true if each record is one line of text
+     */
+    public boolean isLineBased() {
+        return true;
+    }
+
+    public String toString() {
+        return name;
+    }
+
+}
@@ -0,0 +1,145 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads length-prefixed records from a stream: each a 4 byte big-endian length, followed by that many bytes (see
+ * LengthPrefixedRowParser for what is in them).  The stream is read in blocks, and each record is viewed in place in
+ * its block rather than copied out.  A block is never reused, so the view of a record stays valid after the next one
+ * is read: rows waiting in a batch can keep their records.
+ *
+ * A damaged file cannot be read on past the damage, as the next record cannot be found: a length that is negative or
+ * longer than any record can be, or a file that ends inside a record, gives one last record of the bytes left in
+ * the block, with isDamaged true.  The rest of the stream is still read, so it is all hashed.
+ *
+ * Given a hash, each record's bytes (length included) are added to it once the record is read, so the hash is of
+ * getBytesRead bytes however far ahead the stream was read, or of the whole stream after a damaged record.
+ */
+public class RecordReader implements Closeable {
+
+    static final int RECORD_HEADER = 4;
+    private static final int BLOCK_SIZE = 256 * 1024;
+
+    private final InputStream in;
+    private final int maxRecordLength;
+    private final ContentHash hash;
+    private byte[] block = new byte[0];
+    private ByteBuffer buffer = ByteBuffer.wrap(block);
+    private int position;
+    private int limit;
+    private boolean atEnd = false;
+
+    private int recordStart;
+    private int recordEnd;
+    private long bytesRead;
+    private boolean damaged = false;
+
+    public RecordReader(InputStream in, int maxRecordLength) {
+        this(in, maxRecordLength, null);
+    }
+
+    /**
+     * @param hash updated with the bytes of each record as it is read, or null
+     */
+    public RecordReader(InputStream in, int maxRecordLength, ContentHash hash) {
+        this.in = in;
+        this.maxRecordLength = maxRecordLength;
+        this.hash = hash;
+    }
+
+    /**
+     * Move to the next record.
+     *
+     * @return false at the end of the stream, or after a damaged record
+     */
+    public boolean next() throws IOException {
+
+        if (damaged || !fill(1)) return false;
+
+        int length = fill(RECORD_HEADER) ? buffer.getInt(position) : -1;
+        if (length >= 0 && length <= maxRecordLength && fill(RECORD_HEADER + length)) {
+            recordStart = position + RECORD_HEADER;
+            recordEnd = recordStart + length;
+            if (hash != null) hash.update(block, position, RECORD_HEADER + length);
+            position = recordEnd;
+            bytesRead += RECORD_HEADER + length;
+            return true;
+        }
+
+        damaged = true;
+        recordStart = position;
+        recordEnd = limit;
+        bytesRead += limit - position;
+        if (hash != null) hash.update(block, position, limit - position);
+        position = limit;
+        byte[] rest = new byte[BLOCK_SIZE];
+        int read;
+        while ((read = in.read(rest)) >= 0) {
+            // read to the end, for the hash
+            if (hash != null) hash.update(rest, 0, read);
+        }
+        return true;
+
+    }
+
+    // Make sure the block holds at least needed bytes from position, in a new block if need be
+    private boolean fill(int needed) throws IOException {
+
+        if (limit - position >= needed) return true;
+        if (atEnd) return false;
+
+        byte[] next = new byte[Math.max(BLOCK_SIZE, needed)];
+        int kept = limit - position;
+        System.arraycopy(block, position, next, 0, kept);
+        block = next;
+        buffer = ByteBuffer.wrap(block);
+        position = 0;
+        limit = kept;
+        while (limit < block.length) {
+            int read = in.read(block, limit, block.length - limit);
+            if (read < 0) {
+                atEnd = true;
+                break;
+            }
+            limit += read;
+        }
+        return limit >= needed;
+
+    }
+
+    /**
+     * @return the block holding the current record
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getRecordStart() {
+        return recordStart;
+    }
+
+    public int getRecordEnd() {
+        return recordEnd;
+    }
+
+    /**
+     * @return the number of bytes read up to the end of the current record
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return true if the current record is what was left of a damaged file
+     */
+    public boolean isDamaged() {
+        return damaged;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
@@ -0,0 +1,135 @@
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A batch of validated rows for one table, stored by column rather than as one object per row: an int array for
+ * each INTEGER or DATE column, a long array for each BIGINT or DECIMAL column (and both for TIMESTAMP), a bitset for
+ * each BOOLEAN column, and for each TEXT column the offset and length of every value in one character array shared
+ * by the whole batch.  The datatypes come from the spec once, for the batch.
+ *
+ * Reused from batch to batch with clear, so staging a row only copies its values.  A column's arrays are only
+ * created for the datatype that uses them (see DataType.copy, and DataType.bind and DataType.appendText, which read
+ * the batch back for an insert or a bulk load's CSV file).
+ */
+public class RowBatch {
+
+    private final DataType[] dataTypes;
+    private final int capacity;
+
+    private final int[][] ints;
+    private final long[][] longs;
+    private final long[][] booleans;
+    private final int[][] textStarts;
+    private final int[][] textLengths;
+    private char[] textChars = new char[1024];
+    private int textUsed = 0;
+    private int size = 0;
+
+    public RowBatch(DataType[] dataTypes, int capacity) {
+        this.dataTypes = dataTypes;
+        this.capacity = capacity;
+        this.ints = new int[dataTypes.length][];
+        this.longs = new long[dataTypes.length][];
+        this.booleans = new long[dataTypes.length][];
+        this.textStarts = new int[dataTypes.length][];
+        this.textLengths = new int[dataTypes.length][];
+    }
+
+    /**
+     * Copy row into the batch.
+     *
+     * @return the index of the row in the batch
+     * @throws IllegalStateException if the batch is full
+     */
+    public int add(RowBuffer row) {
+        if (size == capacity) throw new IllegalStateException("Row batch is full");
+        for (int column = 0; column < dataTypes.length; column++) {
+            dataTypes[column].copy(row, column, this, size);
+        }
+        return size++;
+    }
+
+    /**
+     * Bind each column of the row at index to the insert parameters, in column order.
+     */
+    public void bind(PreparedStatement stmt, int index) throws SQLException {
+        for (int column = 0; column < dataTypes.length; column++) {
+            dataTypes[column].bind(stmt, column + 1, this, index, column);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public void clear() {
+        size = 0;
+        textUsed = 0;
+    }
+
+    public int getInt(int index, int column) {
+        return ints[column][index];
+    }
+
+    public void setInt(int index, int column, int value) {
+        if (ints[column] == null) ints[column] = new int[capacity];
+        ints[column][index] = value;
+    }
+
+    public long getLong(int index, int column) {
+        return longs[column][index];
+    }
+
+    public void setLong(int index, int column, long value) {
+        if (longs[column] == null) longs[column] = new long[capacity];
+        longs[column][index] = value;
+    }
+
+    public boolean getBoolean(int index, int column) {
+        return (booleans[column][index >> 6] & (1L << index)) != 0;
+    }
+
+    public void setBoolean(int index, int column, boolean value) {
+        if (booleans[column] == null) booleans[column] = new long[(capacity + 63) >> 6];
+        if (value) {
+            booleans[column][index >> 6] |= 1L << index;
+        } else {
+            booleans[column][index >> 6] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * @return the text at index in column, as a new String
+     */
+    public String getText(int index, int column) {
+        return new String(textChars, textStarts[column][index], textLengths[column][index]);
+    }
+
+    public void appendText(StringBuilder out, int index, int column) {
+        out.append(textChars, textStarts[column][index], textLengths[column][index]);
+    }
+
+    /**
+     * Set the text at index in column to the first length characters of text.
+     */
+    public void setText(int index, int column, char[] text, int length) {
+        if (textStarts[column] == null) {
+            textStarts[column] = new int[capacity];
+            textLengths[column] = new int[capacity];
+        }
+        if (textUsed + length > textChars.length) {
+            char[] larger = new char[Math.max(textUsed + length, textChars.length * 2)];
+            System.arraycopy(textChars, 0, larger, 0, textUsed);
+            textChars = larger;
+        }
+        System.arraycopy(text, 0, textChars, textUsed, length);
+        textStarts[column][index] = textUsed;
+        textLengths[column][index] = length;
+        textUsed += length;
+    }
+
+}
@@ -0,0 +1,127 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Holds the parsed values of one data row, by column index, so they can be bound to the database as native types.
+ * Only the array matching a column's datatype is used for that column.  Reused from row to row.
+ * Text is copied into a character array per column rather than made into a String, so parsing a row allocates
+ * nothing once the arrays are big enough.
+ */
+public class RowBuffer {
+
+    private final int[] ints;
+    private final long[] longs;
+    private final boolean[] booleans;
+    private final char[][] texts;
+    private final int[] textLengths;
+
+    public RowBuffer(int columnCount) {
+        this.ints = new int[columnCount];
+        this.longs = new long[columnCount];
+        this.booleans = new boolean[columnCount];
+        this.texts = new char[columnCount][];
+        this.textLengths = new int[columnCount];
+    }
+
+    public int getColumnCount() {
+        return ints.length;
+    }
+
+    public int getInt(int column) {
+        return ints[column];
+    }
+
+    public void setInt(int column, int value) {
+        ints[column] = value;
+    }
+
+    public long getLong(int column) {
+        return longs[column];
+    }
+
+    public void setLong(int column, long value) {
+        longs[column] = value;
+    }
+
+    public boolean getBoolean(int column) {
+        return booleans[column];
+    }
+
+    public void setBoolean(int column, boolean value) {
+        booleans[column] = value;
+    }
+
+    /**
+     * @return the text in column, as a new String
+     */
+    public String getText(int column) {
+        return new String(texts[column], 0, textLengths[column]);
+    }
+
+    /**
+     * @return the characters of the text in column, valid up to getTextLength
+     */
+    public char[] getTextChars(int column) {
+        return texts[column];
+    }
+
+    public int getTextLength(int column) {
+        return textLengths[column];
+    }
+
+    /**
+     * Set column to the characters of text from (inclusive) to to (exclusive).
+     */
+    public void setText(int column, String text, int from, int to) {
+        text.getChars(from, to, textArray(column, to - from), 0);
+        textLengths[column] = to - from;
+    }
+
+    /**
+     * Set column to the ASCII bytes of buffer from (inclusive) to to (exclusive).
+     */
+    public void setAsciiText(int column, ByteBuffer buffer, int from, int to) {
+        char[] text = textArray(column, to - from);
+        for (int i = from; i < to; i++) {
+            text[i - from] = (char) buffer.get(i);
+        }
+        textLengths[column] = to - from;
+    }
+
+    /**
+     * Replace each pair of c in the text of column with one, in place: unescapes a quoted delimited field.
+     */
+    public void removeDoubled(int column, char c) {
+        char[] text = texts[column];
+        int length = textLengths[column];
+        int kept = 0;
+        for (int i = 0; i < length; i++) {
+            text[kept++] = text[i];
+            if (text[i] == c && i + 1 < length && text[i + 1] == c) i++;
+        }
+        textLengths[column] = kept;
+    }
+
+    public void appendText(StringBuilder out, int column) {
+        out.append(texts[column], 0, textLengths[column]);
+    }
+
+    public void copyFrom(RowBuffer other) {
+        System.arraycopy(other.ints, 0, ints, 0, ints.length);
+        System.arraycopy(other.longs, 0, longs, 0, longs.length);
+        System.arraycopy(other.booleans, 0, booleans, 0, booleans.length);
+        for (int column = 0; column < texts.length; column++) {
+            if (other.texts[column] == null) continue;
+            System.arraycopy(other.texts[column], 0, textArray(column, other.textLengths[column]), 0,
+                    other.textLengths[column]);
+            textLengths[column] = other.textLengths[column];
+        }
+    }
+
+    private char[] textArray(int column, int length) {
+        if (texts[column] == null || texts[column].length < length) {
+            texts[column] = new char[Math.max(length, 16)];
+        }
+        return texts[column];
+    }
+
+}
@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+/**
+ * Parses the records of a data file into rows, for one spec in one RecordFormat.  Compiled once per spec, and
+ * immutable, so one parser can be shared by threads parsing different chunks of a file.
+ *
+ * Records can be parsed from a String, or straight from the bytes of the file.  The byte version only handles
+ * records that are plain ASCII and valid; for any other it returns false, and the caller makes the record into a
+ * String with toLine and parses that instead, which also finds the error to report.
+ *
+ * A line (or record) that cannot be split into its cells at all, e.g. one that is too short or has the wrong number
+ * of fields, is reported as a whole: parse returns MALFORMED rather than a column.
+ */
+public abstract class RowParser {
+
+    /**
+     * Returned by parse, in place of a column, for a line that could not be split into its cells
+     */
+    public static final int MALFORMED = Integer.MAX_VALUE;
+
+    protected final String[] columnNames;
+    protected final DataType[] dataTypes;
+    protected final int[] widths;
+
+    /**
+     * @throws IllegalArgumentException if a spec has a datatype that is not known
+     */
+    protected RowParser(ArrayList<ColumnSpecification> specs) {
+        int columnCount = specs.size();
+        this.columnNames = new String[columnCount];
+        this.dataTypes = new DataType[columnCount];
+        this.widths = new int[columnCount];
+
+        for (int i = 0; i < columnCount; i++) {
+            ColumnSpecification spec = specs.get(i);
+            columnNames[i] = spec.getName();
+            dataTypes[i] = DataType.forName(spec.getDataType());
+            if (dataTypes[i] == null) {
+                throw new IllegalArgumentException(spec.getDataType() + " is not an known datatype");
+            }
+            widths[i] = spec.getWidth();
+        }
+    }
+
+    public int getColumnCount() {
+        return dataTypes.length;
+    }
+
+    public DataType[] getDataTypes() {
+        return dataTypes;
+    }
+
+    /**
+     * Parse and validate each data cell of the line into row.  Every cell is checked, even after an invalid one.
+     *
+     * @return -1 if all data cells are valid, MALFORMED if the line could not be split into its cells, otherwise the
+     *         column of the last invalid cell (see describeError)
+     */
+    public abstract int parse(String line, RowBuffer row);
+
+    /**
+     * Parse the record in buffer from start (inclusive) to end (exclusive, any line break already removed).
+     *
+     * @return true if the record is ASCII, every data cell was valid and has been written to row
+     */
+    public abstract boolean parse(ByteBuffer buffer, int start, int end, RowBuffer row);
+
+    /**
+     * @return the record in buffer from start to end as a line, to parse as a String, report or bulk load.  UTF-8 for
+     *         text formats.
+     */
+    public String toLine(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Write a rejected line (as toLine made it) to the reject file in this format, so that once corrected the reject
+     * file loads under the same spec as the data file.  Text formats write the line as it is, on a line of its own.
+     */
+    public void writeReject(OutputStream out, String line) throws IOException {
+        writeLine(out, line);
+    }
+
+    /**
+     * @return the end of the name of the reject file written by writeReject
+     */
+    public String getRejectFileSuffix() {
+        return ".rejected.txt";
+    }
+
+    static void writeLine(OutputStream out, String line) throws IOException {
+        out.write(line.getBytes(Charset.forName("UTF-8")));
+        out.write(System.lineSeparator().getBytes(Charset.forName("UTF-8")));
+    }
+
+    /**
+     * @return the value of the cell in column of the line, trimmed (and unquoted), for error messages.  Only called
+     *         for lines that could be split into their cells.
+     */
+    protected abstract String getValue(String line, int column);
+
+    /**
+     * @return LINE_TOO_SHORT or MALFORMED_LINE (see DBHelper), for a line parse found MALFORMED
+     */
+    protected abstract int getMalformedCode(String line);
+
+    /**
+     * @return why the line could not be split into its cells, for a line parse found MALFORMED
+     */
+    protected abstract String describeMalformed(String line);
+
+    /**
+     * @return the result code (see DBHelper) for an invalid cell, or a malformed line, found by parse
+     */
+    public int getErrorCode(String line, int column) {
+        if (column == MALFORMED) return getMalformedCode(line);
+        String value = getValue(line, column);
+        if (value.isEmpty()) return DBHelper.EMPTY_VALUE;
+        if (value.length() > widths[column]) return DBHelper.VALUE_TOO_LONG;
+        return dataTypes[column].parse(value, 0, value.length(), new RowBuffer(dataTypes.length), column);
+    }
+
+    /**
+     * Build the error message for an invalid cell, or a malformed line, found by parse.  Only called for lines that
+     * are reported, so the cell is parsed again here rather than keeping the details of every failure.
+     */
+    public String describeError(String line, int column) {
+
+        if (column == MALFORMED) return describeMalformed(line);
+        String value = getValue(line, column);
+        int result = getErrorCode(line, column);
+        if (result == DBHelper.VALUE_TOO_LONG) {
+            return value + " is longer than the " + widths[column] + " characters of " + columnNames[column];
+        }
+        return DBHelper.describeInvalidData(result, value, dataTypes[column].getName());
+
+    }
+
+}
@@ -0,0 +1,29 @@
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Where DataFileReader sends the validated rows of a file: a BatchInserter, or a BulkLoader.
+ */
+public interface RowSink extends AutoCloseable {
+
+    /**
+     * Add one validated row.
+     *
+     * @param lineNumber line number in the data file, for error reporting
+     * @param line the raw line from the data file, for error reporting.  Only turned into a String if the row fails.
+     * @param row validated values, by column index in the same order as the column specifications
+     */
+    void addRow(int lineNumber, CharSequence line, RowBuffer row) throws IOException, SQLException;
+
+    /**
+     * @return time spent waiting on the database so far, in nanoseconds
+     */
+    long getDatabaseNanos();
+
+    /**
+     * Store any rows not stored yet.
+     */
+    @Override
+    void close() throws IOException, SQLException;
+
+}
@@ -0,0 +1,177 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of the parsed specification files, by data table.  Many data files for the same table only
+ * read and parse its spec once, and only create the table once.
+ *
+ * Each lookup checks the spec file's modified time and size.  If either changed, the file is read again and
+ * hashed: a new hash means a new spec (and the table is checked again, and altered to fit it if needed); the same
+ * hash keeps the cached spec.
+ */
+public class SpecRegistry {
+
+    private static final ConcurrentHashMap<String, TableSpec> tableSpecs = new ConcurrentHashMap<String, TableSpec>();
+
+    /**
+     * @return the current spec for the data table, from the cache if the spec file has not changed
+     * @throws FileReaderException if there is no spec file for the table, or it is not valid
+     */
+    public static TableSpec getSpec(String dataTable) throws FileReaderException {
+
+        String specFileName = dataTable +".csv";
+        Path specFile = Paths.get("specs" , specFileName);
+
+        if (Files.notExists(specFile)) {
+            throw new FileReaderException(
+                    "Whole file not processed. We could not find a matching spec file: " + specFileName);
+        }
+
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(specFile, BasicFileAttributes.class);
+            TableSpec cached = tableSpecs.get(dataTable);
+            if (cached != null && cached.isReadFrom(attributes.lastModifiedTime(), attributes.size())) {
+                return cached;
+            }
+
+            synchronized (SpecRegistry.class) {
+                cached = tableSpecs.get(dataTable);
+                if (cached != null && cached.isReadFrom(attributes.lastModifiedTime(), attributes.size())) {
+                    return cached;
+                }
+
+                byte[] content = Files.readAllBytes(specFile);
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(content);
+
+                TableSpec tableSpec;
+                if (cached != null && Arrays.equals(cached.getHash(), hash)) {
+                    tableSpec = new TableSpec(cached, attributes.lastModifiedTime(), attributes.size());
+                } else {
+                    String text = new String(content, Charset.forName("UTF-8"));
+                    tableSpec = new TableSpec(dataTable, readFormat(specFileName, text),
+                            readSpec(specFileName, text), attributes.lastModifiedTime(), attributes.size(), hash);
+                }
+                tableSpecs.put(dataTable, tableSpec);
+                return tableSpec;
+            }
+
+        } catch (IOException | NoSuchAlgorithmException ex){
+            throw new FileReaderException(
+                    "Whole file not processed due to an error reading: " + ex);
+        }
+
+    }
+
+    /**
+     * Forget every cached spec, so they are all read again on next use.
+     */
+    public static void clear() {
+        tableSpecs.clear();
+    }
+
+    private static ArrayList<ColumnSpecification> readSpec(String specFileName, String content)
+            throws FileReaderException, IOException {
+
+        ArrayList<ColumnSpecification> specs = new ArrayList<ColumnSpecification>();
+
+        try (BufferedReader reader = new BufferedReader(new StringReader(content))) {
+
+            // Parse the file into a list of specifications.  Ignore the first line, and directives (see readFormat)
+            String currentLine;
+            while ((currentLine = reader.readLine()) != null) {
+                if (currentLine.startsWith("#")) continue;
+                String[] attributes = splitAttributes(currentLine);
+                if (attributes.length !=3 ) {
+                    throw new FileReaderException(
+                            "Whole file not processed. Matching spec file: " + specFileName +
+                                    " does not have exactly 3 attributes: " + currentLine);
+                } else if (attributes[1].equalsIgnoreCase("width")) {
+                    continue;
+                }
+
+                String dataType = attributes[2].trim();
+                if (DataType.forName(dataType) == null) {
+                    throw new FileReaderException(
+                            "Whole file not processed. Matching spec file: " + specFileName +
+                                    " contains an unknown datatype: " + dataType);
+                }
+
+                try {
+                    int width = Integer.parseInt(attributes[1].trim());
+                    specs.add(new ColumnSpecification(attributes[0].trim(), width, dataType));
+                } catch (NumberFormatException nfe) {
+                    throw new FileReaderException(
+                            "Whole file not processed. Matching spec file: " + specFileName +
+                                    " contains a width which is not an integer: " + currentLine);
+                }
+
+            }
+        }
+
+        return specs;
+
+    }
+
+    /**
+     * A spec file can say how its data files' records are laid out, with a directive line such as "#format,CSV" or
+     * "#format,DELIMITED(|)" (see RecordFormat).  Without one, they are fixed width.
+     */
+    private static RecordFormat readFormat(String specFileName, String content) throws FileReaderException {
+
+        RecordFormat format = RecordFormat.FIXED_WIDTH;
+        for (String line : content.split("\r?\n")) {
+            if (!line.startsWith("#")) continue;
+            String[] attributes = splitAttributes(line);
+            if (!attributes[0].trim().equalsIgnoreCase("#format")) {
+                throw new FileReaderException(
+                        "Whole file not processed. Matching spec file: " + specFileName +
+                                " contains an unknown directive: " + line);
+            }
+            format = attributes.length == 2 ? RecordFormat.forName(attributes[1].trim()) : null;
+            if (format == null) {
+                throw new FileReaderException(
+                        "Whole file not processed. Matching spec file: " + specFileName +
+                                " contains an unknown record format: " + line);
+            }
+        }
+        return format;
+
+    }
+
+    /**
+     * Split a spec line at its commas, except those in parentheses: the datatype can have parameters, e.g.
+     * DECIMAL(10,2).  Trailing empty attributes are dropped, as String.split does.
+     */
+    static String[] splitAttributes(String line) {
+        ArrayList<String> attributes = new ArrayList<String>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && depth > 0) {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                attributes.add(line.substring(start, i));
+                start = i + 1;
+            }
+        }
+        attributes.add(line.substring(start));
+        int size = attributes.size();
+        while (size > 0 && attributes.get(size - 1).isEmpty()) size--;
+        return attributes.subList(0, size).toArray(new String[size]);
+    }
+
+}
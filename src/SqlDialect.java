@@ -0,0 +1,275 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Properties;
+
+/**
+ * What differs between the databases the application can store data in (H2, PostgreSQL): the JDBC driver and
+ * connection properties, how identifiers are quoted, the SQL type of each datatype, and how rows are loaded fastest.
+ * Chosen from the JDBC URL for the connection pool (forUrl), or from the database of a connection (forConnection).
+ *
+ * Table and column names come from data and spec file names, so they are always quoted.  They are folded to the case
+ * the database uses for unquoted names first, so the tables can still be queried without quotes.
+ *
+ * A table can have one more column after the spec's: LOAD_DATE_COLUMN, the date of the file each row came from.  It is
+ * indexed, so one day's rows can be deleted or replaced at the cost of that day's size, not the table's.
+ */
+public abstract class SqlDialect {
+
+    public static final SqlDialect H2 = new H2Dialect();
+    public static final SqlDialect POSTGRESQL = new PostgreSqlDialect();
+
+    public static final String LOAD_DATE_COLUMN = "load_date";
+
+    private static final SqlDialect[] DIALECTS = {H2, POSTGRESQL};
+
+    private final String name;
+    private final String urlPrefix;
+
+    protected SqlDialect(String name, String urlPrefix) {
+        this.name = name;
+        this.urlPrefix = urlPrefix;
+    }
+
+    /**
+     * @return the dialect for a JDBC URL, e.g. jdbc:postgresql://localhost/fileparser
+     * @throws IllegalArgumentException if no dialect supports the URL
+     */
+    public static SqlDialect forUrl(String url) {
+        for (SqlDialect dialect : DIALECTS) {
+            if (url.startsWith(dialect.urlPrefix)) return dialect;
+        }
+        throw new IllegalArgumentException("No SQL dialect for database URL " + url + ".  Supported: jdbc:h2:, "
+                + "jdbc:postgresql:");
+    }
+
+    /**
+     * @return the dialect for the database connection is to, by its product name
+     */
+    public static SqlDialect forConnection(Connection connection) throws SQLException {
+        String product = connection.getMetaData().getDatabaseProductName();
+        for (SqlDialect dialect : DIALECTS) {
+            if (dialect.name.equals(product)) return dialect;
+        }
+        throw new SQLException("No SQL dialect for database " + product + ".  Supported: H2, PostgreSQL");
+    }
+
+    /**
+     * @return the database product name, as in DatabaseMetaData
+     */
+    public String getName() {
+        return name;
+    }
+
+    public abstract String getDriverClassName();
+
+    /**
+     * @return the user name to connect as when none is set
+     */
+    public abstract String getDefaultUser();
+
+    /**
+     * @return properties to open a connection with: the user and password, and any driver settings that make
+     * loading faster
+     */
+    public Properties getConnectionProperties(String user, String password) {
+        Properties properties = new Properties();
+        properties.setProperty("user", user);
+        properties.setProperty("password", password);
+        return properties;
+    }
+
+    /**
+     * Quote a table or column name, folded to the case of unquoted names.
+     */
+    public String quoteIdentifier(String name) {
+        return '"' + foldCase(name).replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * @return name in the case the database stores unquoted names in
+     */
+    protected abstract String foldCase(String name);
+
+    /**
+     * @return the SQL type of a column of dataType, e.g. INT or VARCHAR(10).  The datatype's standard SQL type,
+     * unless the database needs another.
+     */
+    public String getColumnType(DataType dataType, int width) {
+        return dataType.getSqlType(width);
+    }
+
+    /**
+     * @return a CREATE TABLE IF NOT EXISTS statement for the columns.  Columns of unknown datatypes are TEXT.
+     */
+    public String buildCreateTableSql(String dataTable, ArrayList<ColumnSpecification> specs) {
+        return buildCreateTableSql(dataTable, specs, false);
+    }
+
+    /**
+     * @param withLoadDate add LOAD_DATE_COLUMN after the spec's columns
+     */
+    public String buildCreateTableSql(String dataTable, ArrayList<ColumnSpecification> specs, boolean withLoadDate) {
+
+        StringBuilder columnDefs = new StringBuilder();
+        for (ColumnSpecification spec : specs) {
+            DataType dataType = DataType.forName(spec.getDataType());
+            if (dataType == null) {
+                dataType = DataType.TEXT;
+            }
+            if (columnDefs.length() > 0) columnDefs.append(",");
+            columnDefs.append(quoteIdentifier(spec.getName())).append(" ")
+                    .append(getColumnType(dataType, spec.getWidth()));
+        }
+        if (withLoadDate) {
+            columnDefs.append(",").append(quoteIdentifier(LOAD_DATE_COLUMN)).append(" DATE");
+        }
+        return "CREATE TABLE IF NOT EXISTS " + quoteIdentifier(dataTable) + " (" + columnDefs + ")";
+
+    }
+
+    /**
+     * @return an ALTER TABLE that adds a column, if the table does not have it yet.  Rows already in the table have
+     * NULL in it.
+     */
+    public String buildAddColumnSql(String dataTable, String column, String columnType) {
+        return "ALTER TABLE " + quoteIdentifier(dataTable) + " ADD COLUMN IF NOT EXISTS " + quoteIdentifier(column)
+                + " " + columnType;
+    }
+
+    /**
+     * @return an ALTER TABLE that changes the type of a column, e.g. to widen a VARCHAR.  Standard SQL, which both
+     * databases accept.  PostgreSQL widens a VARCHAR without rewriting the table.
+     */
+    public String buildAlterColumnTypeSql(String dataTable, String column, String columnType) {
+        return "ALTER TABLE " + quoteIdentifier(dataTable) + " ALTER COLUMN " + quoteIdentifier(column)
+                + " SET DATA TYPE " + columnType;
+    }
+
+    /**
+     * @return statements that add LOAD_DATE_COLUMN and its index to a table, if it does not have them yet
+     */
+    public String[] buildAddLoadDateSql(String dataTable) {
+        return new String[] {
+                buildAddColumnSql(dataTable, LOAD_DATE_COLUMN, "DATE"),
+                "CREATE INDEX IF NOT EXISTS " + quoteIdentifier(dataTable + "_" + LOAD_DATE_COLUMN + "_idx")
+                        + " ON " + quoteIdentifier(dataTable) + " (" + quoteIdentifier(LOAD_DATE_COLUMN) + ")"
+        };
+    }
+
+    /**
+     * @return a parameterized insert for the table, with one parameter per column specification (in spec order)
+     */
+    public String buildInsertSql(String dataTable, ArrayList<ColumnSpecification> specs) {
+        return buildInsertSql(dataTable, specs, false);
+    }
+
+    /**
+     * @param withLoadDate with a last parameter for LOAD_DATE_COLUMN
+     */
+    public String buildInsertSql(String dataTable, ArrayList<ColumnSpecification> specs, boolean withLoadDate) {
+
+        StringBuilder parameters = new StringBuilder();
+        int parameterCount = specs.size() + (withLoadDate ? 1 : 0);
+        for (int i = 0; i < parameterCount; i++) {
+            if (i > 0) parameters.append(",");
+            parameters.append("?");
+        }
+        return "INSERT INTO " + quoteIdentifier(dataTable) + " (" + buildColumnList(specs, withLoadDate)
+                + ") VALUES ( " + parameters + " )";
+
+    }
+
+    /**
+     * @return a parameterized statement that inserts a row, or replaces the row with the same key, in one atomic
+     * statement: one parameter per column, in order.  keyColumn must be the table's primary key.
+     */
+    public abstract String buildUpsertSql(String table, String keyColumn, String... columns);
+
+    /**
+     * @return the quoted column names, comma separated, in spec order, then LOAD_DATE_COLUMN if withLoadDate
+     */
+    public String buildColumnList(ArrayList<ColumnSpecification> specs, boolean withLoadDate) {
+        StringBuilder columnNames = new StringBuilder();
+        for (int i = 0; i < specs.size(); i++) {
+            if (i > 0) columnNames.append(",");
+            columnNames.append(quoteIdentifier(specs.get(i).getName()));
+        }
+        if (withLoadDate) {
+            columnNames.append(",").append(quoteIdentifier(LOAD_DATE_COLUMN));
+        }
+        return columnNames.toString();
+    }
+
+    /**
+     * Replace the rows of one load date in dataTable with the rows of stagingTable.  Does not commit: run it in the
+     * same transaction as recording the file as loaded, so readers see either the old rows or the new ones, and an
+     * interrupted swap is done again in full.  The delete uses the load date index.
+     *
+     * @return the number of rows copied from stagingTable
+     */
+    public int replaceLoadDate(Connection connection, String dataTable, String stagingTable,
+                               ArrayList<ColumnSpecification> specs, Date loadDate) throws SQLException {
+
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM " + quoteIdentifier(dataTable)
+                + " WHERE " + quoteIdentifier(LOAD_DATE_COLUMN) + " = ?")) {
+            delete.setDate(1, loadDate);
+            delete.executeUpdate();
+        }
+        return insertFromTable(connection, dataTable, stagingTable, specs, true);
+
+    }
+
+    /**
+     * Copy every row of stagingTable into dataTable.  Does not commit.
+     *
+     * @param withLoadDate copy LOAD_DATE_COLUMN too
+     * @return the number of rows copied
+     */
+    public int insertFromTable(Connection connection, String dataTable, String stagingTable,
+                               ArrayList<ColumnSpecification> specs, boolean withLoadDate) throws SQLException {
+        String columns = buildColumnList(specs, withLoadDate);
+        try (Statement insert = connection.createStatement()) {
+            return insert.executeUpdate("INSERT INTO " + quoteIdentifier(dataTable) + " (" + columns + ") SELECT "
+                    + columns + " FROM " + quoteIdentifier(stagingTable));
+        }
+    }
+
+    /**
+     * @return true if a bulk load is this database's fastest way to store many rows, so files are bulk loaded
+     * unless fileparser.bulkLoad says otherwise.  Otherwise rows are inserted in JDBC batches.
+     */
+    public abstract boolean isBulkLoadPreferred();
+
+    /**
+     * @return true if bulkLoad can be used, e.g. the driver it needs is on the classpath
+     */
+    public abstract boolean supportsBulkLoad();
+
+    /**
+     * Load a CSV file, one row per line with every value quoted, into the table with one statement.  Does not
+     * commit.
+     *
+     * @param withLoadDate the last value of each line is for LOAD_DATE_COLUMN
+     * @return the number of rows loaded
+     */
+    public abstract long bulkLoad(Connection connection, String dataTable, ArrayList<ColumnSpecification> specs,
+                                  boolean withLoadDate, Path csvFile) throws IOException, SQLException;
+
+    /**
+     * @return literal as a SQL string literal, with any quotes in it doubled
+     */
+    public static String quoteLiteral(String literal) {
+        return "'" + literal.replace("'", "''") + "'";
+    }
+
+    public String toString() {
+        return name;
+    }
+
+}
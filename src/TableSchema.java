@@ -0,0 +1,123 @@
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The columns a data table has in the database, read from the JDBC metadata.  Used to bring a table created for an
+ * earlier version of its spec file up to date in place, rather than dropping and reloading it:
+ *  - a column new in the spec is added, and is NULL for the rows already stored;
+ *  - a column narrower than its new spec width is widened;
+ *  - a DECIMAL column is widened if the spec has at least as many digits both before and after the point;
+ *  - a column no longer in the spec, or wider than the spec needs, is left as it is.
+ * Any other difference, e.g. a column whose datatype changed, would mean rewriting the stored rows, so the spec is
+ * rejected before the table is changed or any line is loaded.  So is a DECIMAL with fewer digits before or after the
+ * point than its column: the spec and the stored rows disagree on the column, and narrowing it would round or
+ * overflow the stored values.
+ */
+public class TableSchema {
+
+    private final String dataTable;
+    // By name in upper case: the database folds names to one case or the other
+    private final Map<String, Column> columns;
+
+    private TableSchema(String dataTable, Map<String, Column> columns) {
+        this.dataTable = dataTable;
+        this.columns = columns;
+    }
+
+    /**
+     * @return the columns of the table in the connection's current schema, or null if there is no such table
+     */
+    public static TableSchema read(Connection connection, SqlDialect dialect, String dataTable) throws SQLException {
+
+        DatabaseMetaData metaData = connection.getMetaData();
+        String escape = metaData.getSearchStringEscape();
+        Map<String, Column> columns = new HashMap<String, Column>();
+        try (ResultSet result = metaData.getColumns(null, escapePattern(connection.getSchema(), escape),
+                escapePattern(dialect.foldCase(dataTable), escape), null)) {
+            while (result.next()) {
+                String name = result.getString("COLUMN_NAME");
+                columns.put(name.toUpperCase(Locale.ROOT), new Column(name, result.getInt("DATA_TYPE"),
+                        result.getString("TYPE_NAME"), result.getInt("COLUMN_SIZE"),
+                        result.getInt("DECIMAL_DIGITS")));
+            }
+        }
+        return columns.isEmpty() ? null : new TableSchema(dataTable, columns);
+
+    }
+
+    /**
+     * @return the ALTER TABLE statements that make the table fit specs, in spec order; none if it already does
+     * @throws IncompatibleSpecException if the table cannot be altered in place to fit, with every reason why
+     */
+    public ArrayList<String> buildAlterSql(SqlDialect dialect, ArrayList<ColumnSpecification> specs)
+            throws IncompatibleSpecException {
+
+        ArrayList<String> statements = new ArrayList<String>();
+        StringBuilder differences = new StringBuilder();
+        for (ColumnSpecification spec : specs) {
+            DataType dataType = DataType.forName(spec.getDataType());
+            if (dataType == null) {
+                dataType = DataType.TEXT;
+            }
+            String columnType = dialect.getColumnType(dataType, spec.getWidth());
+            Column column = columns.get(spec.getName().toUpperCase(Locale.ROOT));
+            if (column == null) {
+                statements.add(dialect.buildAddColumnSql(dataTable, spec.getName(), columnType));
+            } else if (!dataType.isStoredAs(column.sqlType)) {
+                if (differences.length() > 0) differences.append("; ");
+                differences.append("column ").append(column.name).append(" is ").append(column.typeName)
+                        .append(", which cannot store ").append(dataType);
+            } else if (dataType.getDecimalDigits() >= 0) {
+                int scale = dataType.getDecimalDigits();
+                int integerDigits = dataType.getColumnSize(spec.getWidth()) - scale;
+                if (integerDigits < column.size - column.decimalDigits || scale < column.decimalDigits) {
+                    if (differences.length() > 0) differences.append("; ");
+                    differences.append("column ").append(column.name).append(" is ").append(column.typeName)
+                            .append('(').append(column.size).append(',').append(column.decimalDigits)
+                            .append("), which would have to be narrowed to ").append(dataType);
+                } else if (integerDigits > column.size - column.decimalDigits || scale > column.decimalDigits) {
+                    statements.add(dialect.buildAlterColumnTypeSql(dataTable, spec.getName(), columnType));
+                }
+            } else if (column.size < dataType.getColumnSize(spec.getWidth())) {
+                statements.add(dialect.buildAlterColumnTypeSql(dataTable, spec.getName(), columnType));
+            }
+        }
+        if (differences.length() > 0) {
+            throw new IncompatibleSpecException(dataTable, differences.toString());
+        }
+        return statements;
+
+    }
+
+    // A name as a DatabaseMetaData pattern that only matches itself: _ and % are wildcards
+    private static String escapePattern(String name, String escape) {
+        if (name == null || escape == null || escape.isEmpty()) return name;
+        return name.replace(escape, escape + escape).replace("_", escape + "_").replace("%", escape + "%");
+    }
+
+    /**
+     * One column of the table, as the database describes it.
+     */
+    private static class Column {
+        final String name;
+        final int sqlType;
+        final String typeName;
+        final int size;
+        final int decimalDigits;
+
+        Column(String name, int sqlType, String typeName, int size, int decimalDigits) {
+            this.name = name;
+            this.sqlType = sqlType;
+            this.typeName = typeName;
+            this.size = size;
+            this.decimalDigits = decimalDigits;
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+
+/**
+ * The parsed specification file for one data table, with its record format and compiled row parser.  Cached by
+ * SpecRegistry along with the state of the spec file it was read from, and whether the table has been created in the
+ * database.
+ */
+public class TableSpec {
+
+    private final String dataTable;
+    private final ArrayList<ColumnSpecification> columns;
+    private final RecordFormat format;
+    private final RowParser parser;
+
+    // State of the spec file when it was read, to tell if it has changed since
+    private final FileTime lastModified;
+    private final long size;
+    private final byte[] hash;
+
+    private volatile boolean tableEnsured = false;
+    private volatile boolean loadDateEnsured = false;
+
+    TableSpec(String dataTable, RecordFormat format, ArrayList<ColumnSpecification> columns, FileTime lastModified,
+              long size, byte[] hash) {
+        this.dataTable = dataTable;
+        this.columns = columns;
+        this.format = format;
+        this.parser = format.compile(columns);
+        this.lastModified = lastModified;
+        this.size = size;
+        this.hash = hash;
+    }
+
+    // Same spec, read from a spec file that was touched but whose content has not changed
+    TableSpec(TableSpec unchanged, FileTime lastModified, long size) {
+        this.dataTable = unchanged.dataTable;
+        this.columns = unchanged.columns;
+        this.format = unchanged.format;
+        this.parser = unchanged.parser;
+        this.lastModified = lastModified;
+        this.size = size;
+        this.hash = unchanged.hash;
+        this.tableEnsured = unchanged.tableEnsured;
+        this.loadDateEnsured = unchanged.loadDateEnsured;
+    }
+
+    public String getDataTable() {
+        return dataTable;
+    }
+
+    public ArrayList<ColumnSpecification> getColumns() {
+        return columns;
+    }
+
+    public RecordFormat getFormat() {
+        return format;
+    }
+
+    public RowParser getParser() {
+        return parser;
+    }
+
+    /**
+     * @return true if the table for this spec is known to exist in the database
+     */
+    public boolean isTableEnsured() {
+        return tableEnsured;
+    }
+
+    /**
+     * @param tableEnsured false also forgets that the table has its load date column
+     */
+    public void setTableEnsured(boolean tableEnsured) {
+        this.tableEnsured = tableEnsured;
+        if (!tableEnsured) this.loadDateEnsured = false;
+    }
+
+    /**
+     * @return true if the table for this spec is known to exist with its load date column (see SqlDialect)
+     */
+    public boolean isLoadDateEnsured() {
+        return loadDateEnsured;
+    }
+
+    public void setLoadDateEnsured(boolean loadDateEnsured) {
+        this.loadDateEnsured = loadDateEnsured;
+    }
+
+    boolean isReadFrom(FileTime lastModified, long size) {
+        return this.lastModified.equals(lastModified) && this.size == size;
+    }
+
+    byte[] getHash() {
+        return hash;
+    }
+
+}
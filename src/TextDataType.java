@@ -0,0 +1,74 @@
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * TEXT data: any non-empty text, stored as a VARCHAR as wide as the column.
+ */
+public class TextDataType extends DataType {
+
+    TextDataType() {
+        super("TEXT");
+    }
+
+    @Override
+    public String getSqlType(int width) {
+        return "VARCHAR(" + width + ")";
+    }
+
+    @Override
+    public boolean isStoredAs(int sqlType) {
+        return sqlType == Types.VARCHAR || sqlType == Types.LONGVARCHAR || sqlType == Types.NVARCHAR
+                || sqlType == Types.LONGNVARCHAR || sqlType == Types.CLOB;
+    }
+
+    @Override
+    public int getColumnSize(int width) {
+        return width;
+    }
+
+    @Override
+    public int parse(String line, int from, int to, RowBuffer row, int column) {
+        row.setText(column, line, from, to);
+        return DBHelper.VALID;
+    }
+
+    @Override
+    public int parse(ByteBuffer buffer, int from, int to, RowBuffer row, int column) {
+        row.setAsciiText(column, buffer, from, to);
+        return DBHelper.VALID;
+    }
+
+    @Override
+    public void bind(PreparedStatement stmt, int parameterIndex, RowBuffer row, int column) throws SQLException {
+        stmt.setString(parameterIndex, row.getText(column));
+    }
+
+    @Override
+    public void copy(RowBuffer row, int column, RowBatch batch, int index) {
+        batch.setText(index, column, row.getTextChars(column), row.getTextLength(column));
+    }
+
+    @Override
+    public void bind(PreparedStatement stmt, int parameterIndex, RowBatch batch, int index, int column)
+            throws SQLException {
+        stmt.setString(parameterIndex, batch.getText(index, column));
+    }
+
+    @Override
+    public void appendText(StringBuilder out, RowBuffer row, int column) {
+        row.appendText(out, column);
+    }
+
+    @Override
+    public void appendText(StringBuilder out, RowBatch batch, int index, int column) {
+        batch.appendText(out, index, column);
+    }
+
+    @Override
+    public String formatLiteral(RowBuffer row, int column) {
+        return SqlDialect.quoteLiteral(row.getText(column));   // enclose in single quotes for DB insert statement
+    }
+
+}
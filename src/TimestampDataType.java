@@ -0,0 +1,140 @@
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+
+/**
+ * TIMESTAMP data: a date and time without a time zone, as yyyy-MM-dd HH:mm:ss (or with a T between them), with an
+ * optional fraction of a second of up to 9 digits, e.g. 2016-10-04 13:45:00.25.
+ * Parsed into a long, yyyymmddhhmmss, and the nanoseconds as an int, so parsing allocates nothing; a Timestamp is
+ * only made to bind it.
+ */
+public class TimestampDataType extends DataType {
+
+    private static final int[] NANOS_PER_DIGITS = {1000000000, 100000000, 10000000, 1000000, 100000, 10000, 1000,
+            100, 10, 1};
+
+    TimestampDataType() {
+        super("TIMESTAMP");
+    }
+
+    @Override
+    public String getSqlType(int width) {
+        return "TIMESTAMP";
+    }
+
+    @Override
+    public boolean isStoredAs(int sqlType) {
+        return sqlType == Types.TIMESTAMP;
+    }
+
+    @Override
+    public int parse(String line, int from, int to, RowBuffer row, int column) {
+
+        int length = to - from;
+        if (length < 19 || length == 20 || length > 29 || line.charAt(from + 4) != '-'
+                || line.charAt(from + 7) != '-' || (line.charAt(from + 10) != ' ' && line.charAt(from + 10) != 'T')
+                || line.charAt(from + 13) != ':' || line.charAt(from + 16) != ':'
+                || (length > 19 && line.charAt(from + 19) != '.')) {
+            return DBHelper.NOT_A_TIMESTAMP;
+        }
+        int date = DateDataType.toDate(parseDigits(line, from, 4), parseDigits(line, from + 5, 2),
+                parseDigits(line, from + 8, 2));
+        int time = toTime(parseDigits(line, from + 11, 2), parseDigits(line, from + 14, 2),
+                parseDigits(line, from + 17, 2));
+        int nanos = length > 19 ? parseDigits(line, from + 20, length - 20) : 0;
+        return store(date, time, nanos, length - 20, row, column);
+
+    }
+
+    @Override
+    public int parse(ByteBuffer buffer, int from, int to, RowBuffer row, int column) {
+
+        int length = to - from;
+        if (length < 19 || length == 20 || length > 29 || buffer.get(from + 4) != '-'
+                || buffer.get(from + 7) != '-' || (buffer.get(from + 10) != ' ' && buffer.get(from + 10) != 'T')
+                || buffer.get(from + 13) != ':' || buffer.get(from + 16) != ':'
+                || (length > 19 && buffer.get(from + 19) != '.')) {
+            return DBHelper.NOT_A_TIMESTAMP;
+        }
+        int date = DateDataType.toDate(parseDigits(buffer, from, 4), parseDigits(buffer, from + 5, 2),
+                parseDigits(buffer, from + 8, 2));
+        int time = toTime(parseDigits(buffer, from + 11, 2), parseDigits(buffer, from + 14, 2),
+                parseDigits(buffer, from + 17, 2));
+        int nanos = length > 19 ? parseDigits(buffer, from + 20, length - 20) : 0;
+        return store(date, time, nanos, length - 20, row, column);
+
+    }
+
+    // The time as hhmmss, or -1 if it is not a time
+    private static int toTime(int hour, int minute, int second) {
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) return -1;
+        return (hour * 100 + minute) * 100 + second;
+    }
+
+    private static int store(int date, int time, int fraction, int fractionDigits, RowBuffer row, int column) {
+        if (date < 0 || time < 0 || fraction < 0) return DBHelper.NOT_A_TIMESTAMP;
+        row.setLong(column, date * 1000000L + time);
+        row.setInt(column, fractionDigits > 0 ? fraction * NANOS_PER_DIGITS[fractionDigits] : 0);
+        return DBHelper.VALID;
+    }
+
+    private static Timestamp toTimestamp(long dateTime, int nanos) {
+        int date = (int) (dateTime / 1000000);
+        int time = (int) (dateTime % 1000000);
+        return Timestamp.valueOf(LocalDateTime.of(date / 10000, date / 100 % 100, date % 100, time / 10000,
+                time / 100 % 100, time % 100, nanos));
+    }
+
+    private static void appendTimestamp(StringBuilder out, long dateTime, int nanos) {
+        int time = (int) (dateTime % 1000000);
+        DateDataType.appendDate(out, (int) (dateTime / 1000000));
+        out.append(' ');
+        appendPadded(out, time / 10000, 2);
+        out.append(':');
+        appendPadded(out, time / 100 % 100, 2);
+        out.append(':');
+        appendPadded(out, time % 100, 2);
+        if (nanos > 0) {
+            out.append('.');
+            appendPadded(out, nanos, 9);
+        }
+    }
+
+    @Override
+    public void bind(PreparedStatement stmt, int parameterIndex, RowBuffer row, int column) throws SQLException {
+        stmt.setTimestamp(parameterIndex, toTimestamp(row.getLong(column), row.getInt(column)));
+    }
+
+    @Override
+    public void copy(RowBuffer row, int column, RowBatch batch, int index) {
+        batch.setLong(index, column, row.getLong(column));
+        batch.setInt(index, column, row.getInt(column));
+    }
+
+    @Override
+    public void bind(PreparedStatement stmt, int parameterIndex, RowBatch batch, int index, int column)
+            throws SQLException {
+        stmt.setTimestamp(parameterIndex, toTimestamp(batch.getLong(index, column), batch.getInt(index, column)));
+    }
+
+    @Override
+    public void appendText(StringBuilder out, RowBuffer row, int column) {
+        appendTimestamp(out, row.getLong(column), row.getInt(column));
+    }
+
+    @Override
+    public void appendText(StringBuilder out, RowBatch batch, int index, int column) {
+        appendTimestamp(out, batch.getLong(index, column), batch.getInt(index, column));
+    }
+
+    @Override
+    public String formatLiteral(RowBuffer row, int column) {
+        StringBuilder literal = new StringBuilder("TIMESTAMP '");
+        appendTimestamp(literal, row.getLong(column), row.getInt(column));
+        return literal.append("'").toString();
+    }
+
+}
@@ -1,11 +1,40 @@
+import com.github.luben.zstd.ZstdOutputStream;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.postgresql.core.Encoding;
+import org.postgresql.core.QueryExecutor;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.Assert.*;
 
@@ -24,10 +53,14 @@ public class DataFileReaderTest {
     private String badSpec1 = "BADSPEC1";
     private String badSpec2 = "BADSPEC2";
     private String badSpec3 = "BADSPEC3";
+    private String csvTable = "CSVFORMAT1";
+    private String binaryTable = "BINFORMAT1";
 
     @Before
     public void clearDBTable() throws Exception {
 
+        DBHelper.createTableIfNotExists(testTable, SpecRegistry.getSpec("testformat1").getColumns());
+
         //Do not put in DBHelper, because you should not do this in productions.
         Statement stmt = DBConnection.getConnection().createStatement();
         stmt.executeUpdate("DELETE FROM " + testTable);
@@ -35,7 +68,14 @@ public class DataFileReaderTest {
         stmt.executeUpdate("DROP TABLE IF EXISTS " + badSpec1);
         stmt.executeUpdate("DROP TABLE IF EXISTS " + badSpec2);
         stmt.executeUpdate("DROP TABLE IF EXISTS " + badSpec3);
+        stmt.executeUpdate("DROP TABLE IF EXISTS " + csvTable);
+        stmt.executeUpdate("DROP TABLE IF EXISTS " + binaryTable);
+        stmt.executeUpdate("DROP TABLE IF EXISTS " + FileLedger.TABLE);
+        stmt.executeUpdate("DROP TABLE IF EXISTS " + Checkpoint.TABLE);
         stmt.close();
+
+        // Tables were dropped behind the spec cache's back
+        SpecRegistry.clear();
     }
 
 
@@ -105,6 +145,14 @@ public class DataFileReaderTest {
 
     }
 
+    @Test
+    public void testSpecIsCached() throws Exception {
+        // The same spec is returned until the spec file changes
+        TableSpec spec = SpecRegistry.getSpec("testformat1");
+        assertSame("Spec should have come from the cache", spec, SpecRegistry.getSpec("testformat1"));
+        assertEquals("Spec should have three columns", 3, spec.getColumns().size());
+    }
+
     @Test
     public void testSpecBadDatatype() throws Exception {
         // Test known file with no errors, but bad spec file
@@ -189,6 +237,825 @@ public class DataFileReaderTest {
 
 
     }
+
+    @Test
+    public void testFileWithTwoDataErrorsStringDecoder() throws Exception {
+        // Test known file with two data errors, reading every line as a String rather than from mapped bytes
+        Path testDataFile = Paths.get("data", "testformat1_2016-10-04.txt");
+        DataFileReader fileReader = new DataFileReader(testDataFile);
+        fileReader.setMappedDecoder(false);
+        boolean exceptionCaught = false;
+        try {
+            fileReader.readAndStoreData();
+        } catch (FileReaderException ex) {
+            exceptionCaught = true;
+            assertEquals("Two lines had errors", 2, ex.getErrorLines().size());
+        }
+        assertTrue("Did get the exception!", exceptionCaught);
+        //check DB Entries in table
+        int resultCount = DBHelper.selectCountFromTable(testTable);
+        assertEquals("One row should have been stored", 1, resultCount);
+    }
+
+    @Test
+    public void testFileWithTwoDataErrorsInChunks() throws Exception {
+        // Test known file with two data errors, split into one chunk per line
+        Path testDataFile = Paths.get("data", "testformat1_2016-10-04.txt");
+        DataFileReader fileReader = new DataFileReader(testDataFile);
+        fileReader.setChunking(3, 0);
+        boolean exceptionCaught = false;
+        try {
+            fileReader.readAndStoreData();
+        } catch (FileReaderException ex) {
+            exceptionCaught = true;
+            assertEquals("Two lines had errors", 2, ex.getErrorLines().size());
+            assertTrue("Line numbers should be for the whole file",
+                    ex.getErrorLines().containsKey(1) && ex.getErrorLines().containsKey(2));
+        }
+        assertTrue("Did get the exception!", exceptionCaught);
+        //check DB Entries in table
+        int resultCount = DBHelper.selectCountFromTable(testTable);
+        assertEquals("One row should have been stored", 1, resultCount);
+    }
+
+    @Test
+    public void testFileWithTwoDataErrorsBulkLoad() throws Exception {
+        // Test known file with two data errors, with the valid row bulk loaded from a CSV file
+        Path testDataFile = Paths.get("data", "testformat1_2016-10-04.txt");
+        DataFileReader fileReader = new DataFileReader(testDataFile);
+        fileReader.setBulkLoad(true);
+        boolean exceptionCaught = false;
+        try {
+            fileReader.readAndStoreData();
+        } catch (FileReaderException ex) {
+            exceptionCaught = true;
+            assertEquals("Two lines had errors", 2, ex.getErrorLines().size());
+        }
+        assertTrue("Did get the exception!", exceptionCaught);
+        //check DB Entries in table
+        int resultCount = DBHelper.selectCountFromTable(testTable);
+        assertEquals("One row should have been stored", 1, resultCount);
+    }
+
+    @Test
+    public void testBulkLoadRejectedSegment() throws Exception {
+        // The database rejects a valid row, so the segment is stored in batches instead: only that row is rejected
+        DBHelper.createTableIfNotExists(testCreateTable, SpecRegistry.getSpec("scoreRecord").getColumns());
+        Statement stmt = DBConnection.getConnection().createStatement();
+        stmt.executeUpdate("ALTER TABLE " + testCreateTable + " ADD CONSTRAINT UNIQUE_SCORE UNIQUE (SCORE)");
+        stmt.close();
+        String duplicate = "Jim Gunn   4155551236   78                                      33 5th Street";
+        Path directory = Files.createTempDirectory("data");
+        Path dataFile = directory.resolve("scoreRecord_2016-10-04.txt");
+        Files.write(dataFile, (new String(Files.readAllBytes(Paths.get("data", "scoreRecord_2016-10-04.txt")),
+                "UTF-8") + duplicate + "\n").getBytes("UTF-8"));
+        Path rejectDirectory = Files.createTempDirectory("rejects");
+
+        for (boolean mapped : new boolean[] {false, true}) {
+            DBConnection.getConnection().createStatement().executeUpdate("DELETE FROM " + testCreateTable);
+            DataFileReader fileReader = new DataFileReader(dataFile);
+            fileReader.setBulkLoad(true);
+            fileReader.setMappedDecoder(mapped);
+            fileReader.setLedger(false);
+            fileReader.setRejects(rejectDirectory, 10);
+            try {
+                fileReader.readAndStoreData();
+                fail("Expected the not stored row");
+            } catch (FileReaderException ex) {
+                assertEquals(Integer.valueOf(1), ex.getErrorCountsByReason().get(ErrorCollector.NOT_STORED));
+                assertEquals(Collections.singletonList(duplicate), Files.readAllLines(ex.getRejectFile()));
+            }
+            assertEquals(2, DBHelper.selectCountFromTable(testCreateTable));
+        }
+    }
+
+    @Test
+    public void testBulkLoadRejectedSegmentSavesCheckpoints() throws Exception {
+        // The rejected segment is stored in batches of one row, each saved with the checkpoint up to its own line
+        DBHelper.createTableIfNotExists(testCreateTable, SpecRegistry.getSpec("scoreRecord").getColumns());
+        Connection connection = DBConnection.getConnection();
+        Statement stmt = connection.createStatement();
+        stmt.executeUpdate("ALTER TABLE " + testCreateTable + " ADD CONSTRAINT UNIQUE_SCORE UNIQUE (SCORE)");
+        Checkpoint.createTableIfNotExists(connection);
+        stmt.executeUpdate("CREATE TRIGGER CHECKPOINT_LOG AFTER UPDATE ON " + Checkpoint.TABLE
+                + " FOR EACH ROW CALL \"" + CheckpointLog.class.getName() + "\"");
+        stmt.close();
+        Path directory = Files.createTempDirectory("data");
+        Path dataFile = directory.resolve("scoreRecord_2016-10-04.txt");
+        Files.write(dataFile, (new String(Files.readAllBytes(Paths.get("data", "scoreRecord_2016-10-04.txt")),
+                "UTF-8") + "Jim Gunn   4155551236   78                                      33 5th Street\n")
+                .getBytes("UTF-8"));
+        byte[] content = Files.readAllBytes(dataFile);
+
+        CheckpointLog.saved.clear();
+        DataFileReader fileReader = new DataFileReader(dataFile, 1);
+        fileReader.setBulkLoad(true);
+        fileReader.setMappedDecoder(true);
+        fileReader.setCheckpoints(true);
+        fileReader.setLedger(false);
+        fileReader.setRejects(Files.createTempDirectory("rejects"), 10);
+        try {
+            fileReader.readAndStoreData();
+            fail("Expected the not stored row");
+        } catch (FileReaderException ex) {
+            assertEquals(1, ex.getErrorCount());
+        }
+
+        // Line number, error count, and the byte offset and hash of the end of that line
+        List<String> expected = new ArrayList<String>();
+        int[][] saves = {{1, 0}, {2, 0}, {3, 1}, {3, 1}};
+        for (int[] save : saves) {
+            int lineEnd = 0;
+            for (int lineBreaks = 0; lineBreaks < save[0]; lineEnd++) {
+                if (content[lineEnd] == '\n') lineBreaks++;
+            }
+            ContentHash hash = new ContentHash();
+            hash.update(content, 0, lineEnd);
+            expected.add(save[0] + " " + save[1] + " " + lineEnd + " " + hash.toHex());
+        }
+        assertEquals(expected, CheckpointLog.saved);
+        assertEquals(2, DBHelper.selectCountFromTable(testCreateTable));
+    }
+
+    @Test
+    public void testFileWithTwoDataErrorsPipeline() throws Exception {
+        // Test known file with two data errors, read, parsed and stored in separate stages
+        Path testDataFile = Paths.get("data", "testformat1_2016-10-04.txt");
+        DataFileReader fileReader = new DataFileReader(testDataFile);
+        fileReader.setPipeline(true, 2);
+        boolean exceptionCaught = false;
+        try {
+            fileReader.readAndStoreData();
+        } catch (FileReaderException ex) {
+            exceptionCaught = true;
+            assertEquals("Two lines had errors", 2, ex.getErrorLines().size());
+            assertTrue("Line numbers should be in file order",
+                    ex.getErrorLines().containsKey(1) && ex.getErrorLines().containsKey(2));
+        }
+        assertTrue("Did get the exception!", exceptionCaught);
+        //check DB Entries in table
+        int resultCount = DBHelper.selectCountFromTable(testTable);
+        assertEquals("One row should have been stored", 1, resultCount);
+    }
+
+    @Test
+    public void testRejectedLinesWrittenToRejectFile() throws Exception {
+        // Keep one error in memory, the rest only in the reject files.  In chunks, so those are merged too.
+        Path testDataFile = Paths.get("data", "testformat1_2016-10-04.txt");
+        Path rejectDirectory = Files.createTempDirectory("rejects");
+        DataFileReader fileReader = new DataFileReader(testDataFile);
+        fileReader.setChunking(3, 0);
+        fileReader.setRejects(rejectDirectory, 1);
+        boolean exceptionCaught = false;
+        try {
+            fileReader.readAndStoreData();
+        } catch (FileReaderException ex) {
+            exceptionCaught = true;
+            assertEquals("Only the first error is kept", Collections.singleton(1), ex.getErrorLines().keySet());
+            assertEquals("Two lines had errors", 2, ex.getErrorCount());
+            assertEquals(Integer.valueOf(1), ex.getErrorCountsByReason().get("NOT_A_BOOLEAN"));
+            assertEquals(Integer.valueOf(1), ex.getErrorCountsByReason().get("NOT_AN_INTEGER"));
+
+            // The rejected lines as they were, and why, ready to correct and load again
+            assertEquals(Files.readAllLines(testDataFile).subList(0, 2), Files.readAllLines(ex.getRejectFile()));
+            List<String> reasons =
+                    Files.readAllLines(rejectDirectory.resolve("testformat1_2016-10-04.txt.rejected.tsv"));
+            assertEquals(2, reasons.size());
+            assertTrue(reasons.get(0).startsWith("1\tNOT_A_BOOLEAN\t"));
+            assertTrue(reasons.get(1).startsWith("2\tNOT_AN_INTEGER\t"));
+        }
+        assertTrue("Did get the exception!", exceptionCaught);
+        assertEquals("Chunk reject files are merged", 2, rejectDirectory.toFile().list().length);
+    }
+
+    @Test
+    public void testGzipCompressedFile() throws Exception {
+        // Same file with two data errors, gzip compressed: once named .gz, once found by its magic bytes
+        Path testDataFile = Paths.get("data", "testformat1_2016-10-04.txt");
+        Path directory = Files.createTempDirectory("data");
+        Path rejectDirectory = Files.createTempDirectory("rejects");
+        for (String name : new String[] {"testformat1_2016-10-04.txt.gz", "testformat1_2016-10-05.txt"}) {
+            Path compressedFile = directory.resolve(name);
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressedFile))) {
+                Files.copy(testDataFile, out);
+            }
+            assertSame(Compression.GZIP, Compression.detect(compressedFile));
+
+            DataFileReader fileReader = new DataFileReader(compressedFile);
+            fileReader.setRejects(rejectDirectory, 100);
+            try {
+                fileReader.readAndStoreData();
+                fail("Expected the invalid data exception");
+            } catch (FileReaderException ex) {
+                assertEquals("Two lines had errors", 2, ex.getErrorLines().size());
+                assertEquals("Rejected lines are uncompressed, named for the uncompressed file",
+                        rejectDirectory.resolve(Compression.stripSuffix(name) + ".rejected.txt"), ex.getRejectFile());
+                assertEquals(Files.readAllLines(testDataFile).subList(0, 2), Files.readAllLines(ex.getRejectFile()));
+            }
+        }
+        assertEquals("One row of each file should have been stored", 2, DBHelper.selectCountFromTable(testTable));
+        assertSame(Compression.NONE, Compression.detect(testDataFile));
+    }
+
+    @Test
+    public void testZstdCompressedFile() throws Exception {
+        // Same file with two data errors, zstd compressed: once named .zst, once found by its magic bytes
+        Path testDataFile = Paths.get("data", "testformat1_2016-10-04.txt");
+        Path directory = Files.createTempDirectory("data");
+        Path rejectDirectory = Files.createTempDirectory("rejects");
+        for (String name : new String[] {"testformat1_2016-10-04.txt.zst", "testformat1_2016-10-05.txt"}) {
+            Path compressedFile = directory.resolve(name);
+            try (OutputStream out = new ZstdOutputStream(Files.newOutputStream(compressedFile))) {
+                Files.copy(testDataFile, out);
+            }
+            assertSame(Compression.ZSTD, Compression.detect(compressedFile));
+            ByteArrayOutputStream roundTrip = new ByteArrayOutputStream();
+            try (InputStream in = Compression.ZSTD.decompress(Files.newInputStream(compressedFile))) {
+                byte[] buffer = new byte[8192];
+                for (int read; (read = in.read(buffer)) >= 0; ) {
+                    roundTrip.write(buffer, 0, read);
+                }
+            }
+            assertArrayEquals(Files.readAllBytes(testDataFile), roundTrip.toByteArray());
+
+            DataFileReader fileReader = new DataFileReader(compressedFile);
+            fileReader.setRejects(rejectDirectory, 100);
+            try {
+                fileReader.readAndStoreData();
+                fail("Expected the invalid data exception");
+            } catch (FileReaderException ex) {
+                assertEquals("Two lines had errors", 2, ex.getErrorLines().size());
+                assertEquals("Rejected lines are uncompressed, named for the uncompressed file",
+                        rejectDirectory.resolve(Compression.stripSuffix(name) + ".rejected.txt"), ex.getRejectFile());
+                assertEquals(Files.readAllLines(testDataFile).subList(0, 2), Files.readAllLines(ex.getRejectFile()));
+            }
+        }
+        assertEquals("One row of each file should have been stored", 2, DBHelper.selectCountFromTable(testTable));
+    }
+
+    @Test
+    public void testMetricsCountLinesAndRejects() throws Exception {
+        // Metrics are for the whole run, so compare before and after
+        IngestMetrics metrics = IngestMetrics.get();
+        long linesBefore = metrics.getLinesRead();
+        long rowsBefore = metrics.getRowsStored();
+        long rejectedBefore = metrics.getLinesRejected();
+        long batchesBefore = metrics.getBatches();
+        try {
+            new DataFileReader(Paths.get("data", "testformat1_2016-10-04.txt")).readAndStoreData();
+            fail("Expected the invalid data exception");
+        } catch (FileReaderException ex) {
+            assertEquals(3, metrics.getLinesRead() - linesBefore);
+            assertEquals(1, metrics.getRowsStored() - rowsBefore);
+            assertEquals(2, metrics.getLinesRejected() - rejectedBefore);
+            assertEquals(1, metrics.getBatches() - batchesBefore);
+            assertTrue(metrics.toJson().contains("\"linesRejectedByReason\":{"));
+            assertTrue(metrics.toJson().contains("\"batchSize\":{\"p50\":"));
+            assertTrue(metrics.getBatchSizeMax() >= 1);
+        }
+
+        // Batch sizes are kept in power of 2 buckets, like insert latency
+        IngestMetrics.Log2Histogram sizes = new IngestMetrics.Log2Histogram();
+        for (int size = 1; size <= 100; size++) {
+            sizes.record(size);
+        }
+        assertEquals(63, sizes.percentile(50));
+        assertEquals(100, sizes.percentile(99));
+        assertEquals(100, sizes.getMax());
+    }
+
+    @Test
+    public void testSqlDialects() throws Exception {
+        // The test database is H2; PostgreSQL SQL is checked as text
+        assertSame(SqlDialect.H2, SqlDialect.forConnection(DBConnection.getConnection()));
+        assertSame(SqlDialect.H2, SqlDialect.forUrl("jdbc:h2:mem:test"));
+        assertSame(SqlDialect.POSTGRESQL, SqlDialect.forUrl("jdbc:postgresql://localhost/fileparser"));
+        assertFalse("H2 inserts in batches", SqlDialect.H2.isBulkLoadPreferred());
+        assertTrue("PostgreSQL uses COPY", SqlDialect.POSTGRESQL.isBulkLoadPreferred());
+
+        ArrayList<ColumnSpecification> specs = SpecRegistry.getSpec("testformat1").getColumns();
+        assertEquals("CREATE TABLE IF NOT EXISTS \"testformat1\" (\"name\" VARCHAR(10),\"valid\" BOOLEAN,"
+                + "\"count\" INT)", SqlDialect.POSTGRESQL.buildCreateTableSql("TestFormat1", specs));
+        assertEquals("INSERT INTO \"TESTFORMAT1\" (\"NAME\",\"VALID\",\"COUNT\") VALUES ( ?,?,? )",
+                SqlDialect.H2.buildInsertSql("testformat1", specs));
+        assertEquals("\"A\"\"B\"", SqlDialect.H2.quoteIdentifier("a\"b"));
+        assertEquals("'O''Brien'", DBHelper.validateAndFormatDataValue("O'Brien", "TEXT"));
+    }
+
+    @Test
+    public void testPostgreSqlDialect() throws Exception {
+        // No PostgreSQL server in the tests: its SQL is checked as text, and COPY is run through the driver's
+        // CopyManager on a connection that keeps what it is sent (see CopyConnection)
+        SqlDialect postgreSql = SqlDialect.POSTGRESQL;
+        Class.forName(postgreSql.getDriverClassName());
+        assertTrue("The driver is on the test classpath", postgreSql.supportsBulkLoad());
+        assertEquals("true",
+                postgreSql.getConnectionProperties("loader", "secret").getProperty("reWriteBatchedInserts"));
+
+        // Unquoted names are lower case in PostgreSQL
+        assertEquals("\"scores\"", postgreSql.quoteIdentifier("Scores"));
+        assertEquals("\"a\"\"b\"", postgreSql.quoteIdentifier("A\"B"));
+
+        ArrayList<ColumnSpecification> specs = new ArrayList<ColumnSpecification>();
+        specs.add(new ColumnSpecification("Name", 20000000, "TEXT"));
+        specs.add(new ColumnSpecification("Code", 8, "TEXT"));
+        specs.add(new ColumnSpecification("Amount", 10, "DECIMAL(8,2)"));
+        specs.add(new ColumnSpecification("Count", 3, "INTEGER"));
+        assertEquals("Text wider than a VARCHAR can be is TEXT",
+                "CREATE TABLE IF NOT EXISTS \"scores\" (\"name\" TEXT,\"code\" VARCHAR(8),\"amount\" DECIMAL(8,2),"
+                        + "\"count\" INT,\"load_date\" DATE)", postgreSql.buildCreateTableSql("Scores", specs, true));
+        assertEquals("ALTER TABLE \"scores\" ALTER COLUMN \"code\" SET DATA TYPE VARCHAR(12)",
+                postgreSql.buildAlterColumnTypeSql("Scores", "Code", "VARCHAR(12)"));
+        assertEquals(Arrays.asList("ALTER TABLE \"scores\" ADD COLUMN IF NOT EXISTS \"load_date\" DATE",
+                "CREATE INDEX IF NOT EXISTS \"scores_load_date_idx\" ON \"scores\" (\"load_date\")"),
+                Arrays.asList(postgreSql.buildAddLoadDateSql("Scores")));
+        String columns = "\"name\",\"code\",\"amount\",\"count\",\"load_date\"";
+        assertEquals("INSERT INTO \"scores\" (" + columns + ") VALUES ( ?,?,?,?,? )",
+                postgreSql.buildInsertSql("Scores", specs, true));
+        assertEquals("The key column is not updated",
+                "INSERT INTO \"processed_files\" (\"file_name\",\"file_size\",\"content_hash\") VALUES (?,?,?) "
+                        + "ON CONFLICT (\"file_name\") DO UPDATE SET \"file_size\" = EXCLUDED.\"file_size\","
+                        + "\"content_hash\" = EXCLUDED.\"content_hash\"",
+                postgreSql.buildUpsertSql(FileLedger.TABLE, "FILE_NAME", "FILE_NAME", "FILE_SIZE", "CONTENT_HASH"));
+
+        String copySql = "COPY \"scores\" (" + columns + ") FROM STDIN WITH (FORMAT csv)";
+        assertEquals(copySql, ((PostgreSqlDialect) postgreSql).buildCopySql("Scores", specs, true));
+        Path csvFile = Files.createTempFile("scores", ".csv");
+        String csv = "\"Foonyor\",\"A1\",\"12.50\",\"1\",\"2016-10-04\"\n"
+                + "\"O\"\"Brien\",\"B2\",\"-3.00\",\"2\",\"2016-10-04\"\n";
+        Files.write(csvFile, csv.getBytes(StandardCharsets.UTF_8));
+        CopyConnection connection = new CopyConnection();
+        assertEquals(2, postgreSql.bulkLoad(connection.open(), "Scores", specs, true, csvFile));
+        assertEquals(copySql, connection.copySql);
+        assertEquals("The file is streamed as it is", csv, connection.copied.toString("UTF-8"));
+    }
+
+    @Test
+    public void testValidateDataValueResultCodes() throws Exception {
+        RowBuffer row = new RowBuffer(1);
+        assertEquals(DBHelper.VALID, DBHelper.validateDataValue("-42", "INTEGER", row, 0));
+        assertEquals(-42, row.getInt(0));
+        assertEquals(DBHelper.VALID, DBHelper.validateDataValue("1", "BOOLEAN", row, 0));
+        assertTrue(row.getBoolean(0));
+        assertEquals(DBHelper.VALID, DBHelper.validateDataValue("Foonyor", "TEXT", row, 0));
+        assertEquals("Foonyor", row.getText(0));
+
+        assertEquals(DBHelper.EMPTY_VALUE, DBHelper.validateDataValue("", "TEXT", row, 0));
+        assertEquals(DBHelper.EMPTY_VALUE, DBHelper.validateDataValue(null, "INTEGER", row, 0));
+        assertEquals(DBHelper.NOT_AN_INTEGER, DBHelper.validateDataValue("1x", "INTEGER", row, 0));
+        assertEquals(DBHelper.NOT_AN_INTEGER, DBHelper.validateDataValue("2147483648", "INTEGER", row, 0));
+        assertEquals(DBHelper.NOT_A_BOOLEAN, DBHelper.validateDataValue("2", "BOOLEAN", row, 0));
+        assertEquals(DBHelper.NOT_A_BOOLEAN, DBHelper.validateDataValue("true", "BOOLEAN", row, 0));
+        assertEquals(DBHelper.UNKNOWN_DATATYPE, DBHelper.validateDataValue("1", "FLOAT", row, 0));
+        assertEquals(DBHelper.NOT_A_BIGINT, DBHelper.validateDataValue("12L", "BIGINT", row, 0));
+        assertEquals(DBHelper.NOT_A_DECIMAL, DBHelper.validateDataValue("1.2.3", "DECIMAL(6,2)", row, 0));
+        assertEquals(DBHelper.NOT_A_DATE, DBHelper.validateDataValue("10/04/2016", "DATE", row, 0));
+        assertEquals(DBHelper.NOT_A_TIMESTAMP, DBHelper.validateDataValue("2016-10-04", "TIMESTAMP", row, 0));
+
+        // Whole line errors come from a RowParser
+        ArrayList<ColumnSpecification> specs = SpecRegistry.getSpec("testformat1").getColumns();
+        RowParser fixedWidth = RecordFormat.FIXED_WIDTH.compile(specs);
+        assertEquals(DBHelper.LINE_TOO_SHORT, fixedWidth.getErrorCode("Foonyor", RowParser.MALFORMED));
+        RowParser csv = RecordFormat.CSV.compile(specs);
+        assertEquals(DBHelper.MALFORMED_LINE, csv.getErrorCode("Foonyor,1,1,1", RowParser.MALFORMED));
+        assertEquals(DBHelper.VALUE_TOO_LONG, csv.getErrorCode("Foonyor Barzane,1,1", 0));
+
+        // Every code has its own name, for the reason counts and reject files
+        int[] codes = {DBHelper.VALID, DBHelper.EMPTY_VALUE, DBHelper.NOT_AN_INTEGER, DBHelper.NOT_A_BOOLEAN,
+                DBHelper.UNKNOWN_DATATYPE, DBHelper.NOT_A_BIGINT, DBHelper.NOT_A_DECIMAL, DBHelper.NOT_A_DATE,
+                DBHelper.NOT_A_TIMESTAMP, DBHelper.LINE_TOO_SHORT, DBHelper.MALFORMED_LINE, DBHelper.VALUE_TOO_LONG};
+        String[] names = {"VALID", "EMPTY_VALUE", "NOT_AN_INTEGER", "NOT_A_BOOLEAN", "UNKNOWN_DATATYPE",
+                "NOT_A_BIGINT", "NOT_A_DECIMAL", "NOT_A_DATE", "NOT_A_TIMESTAMP", "LINE_TOO_SHORT", "MALFORMED_LINE",
+                "VALUE_TOO_LONG"};
+        for (int i = 0; i < codes.length; i++) {
+            assertEquals(names[i], DBHelper.getResultName(codes[i]));
+        }
+        assertEquals("ss is not a valid MONEY", DBHelper.describeInvalidData(99, "ss", "MONEY"));
+    }
+
+    @Test
+    public void testExtendedDatatypes() throws Exception {
+        RowBuffer row = new RowBuffer(1);
+        assertEquals(DBHelper.VALID, DBHelper.validateDataValue("-9223372036854775808", "BIGINT", row, 0));
+        assertEquals(Long.MIN_VALUE, row.getLong(0));
+        assertEquals(DBHelper.NOT_A_BIGINT, DBHelper.validateDataValue("9223372036854775808", "BIGINT", row, 0));
+        assertEquals(DBHelper.VALID, DBHelper.validateDataValue("-0012.5", "DECIMAL(6,2)", row, 0));
+        assertEquals(-1250, row.getLong(0));
+        assertEquals(DBHelper.NOT_A_DECIMAL, DBHelper.validateDataValue("12.345", "DECIMAL(6,2)", row, 0));
+        assertEquals(DBHelper.NOT_A_DECIMAL, DBHelper.validateDataValue("12345", "DECIMAL(6,2)", row, 0));
+        assertEquals(DBHelper.NOT_A_DATE, DBHelper.validateDataValue("2017-02-29", "DATE", row, 0));
+        assertEquals(DBHelper.NOT_A_TIMESTAMP, DBHelper.validateDataValue("2016-10-04 24:00:00", "TIMESTAMP", row, 0));
+        assertEquals(DBHelper.UNKNOWN_DATATYPE, DBHelper.validateDataValue("1", "DECIMAL(19,2)", row, 0));
+        assertEquals("DATE '2016-02-29'", DBHelper.validateAndFormatDataValue("2016-02-29", "DATE"));
+        assertEquals("TIMESTAMP '2016-10-04 13:45:00.250000000'",
+                DBHelper.validateAndFormatDataValue("2016-10-04T13:45:00.25", "TIMESTAMP"));
+        assertArrayEquals(new String[] {"amount", "12", "DECIMAL(10,2)"},
+                SpecRegistry.splitAttributes("amount,12,DECIMAL(10,2)"));
+
+        // Stored as native column types
+        ArrayList<ColumnSpecification> specs = new ArrayList<ColumnSpecification>();
+        specs.add(new ColumnSpecification("id", 20, "BIGINT"));
+        specs.add(new ColumnSpecification("amount", 10, "DECIMAL(10,2)"));
+        specs.add(new ColumnSpecification("day", 10, "DATE"));
+        specs.add(new ColumnSpecification("at", 23, "TIMESTAMP"));
+        FixedWidthRowParser parser = FixedWidthRowParser.compile(specs);
+        RowBuffer values = new RowBuffer(specs.size());
+        assertEquals(-1, parser.parse("9007199254740993     -1234.5  2016-10-042016-10-04 13:45:00.001", values));
+
+        Connection connection = DBConnection.getConnection();
+        DBHelper.createTableIfNotExists(connection, "TYPED_VALUES", specs);
+        try (java.sql.PreparedStatement insert = connection.prepareStatement(
+                SqlDialect.H2.buildInsertSql("TYPED_VALUES", specs));
+             Statement stmt = connection.createStatement()) {
+            DBHelper.bindDataRow(insert, parser.getDataTypes(), values);
+            insert.executeUpdate();
+            try (ResultSet rset = stmt.executeQuery("SELECT * FROM TYPED_VALUES")) {
+                assertTrue(rset.next());
+                assertEquals(9007199254740993L, rset.getLong(1));
+                assertEquals(new java.math.BigDecimal("-1234.50"), rset.getBigDecimal(2));
+                assertEquals(java.sql.Date.valueOf("2016-10-04"), rset.getDate(3));
+                assertEquals(java.sql.Timestamp.valueOf("2016-10-04 13:45:00.001"), rset.getTimestamp(4));
+            }
+            stmt.executeUpdate("DROP TABLE TYPED_VALUES");
+        }
+    }
+
+    @Test
+    public void testShortLinesAreLineErrors() throws Exception {
+        // A line that stops inside its last cell is cut there; one that does not reach the last cell is an error
+        FixedWidthRowParser parser = FixedWidthRowParser.compile(SpecRegistry.getSpec("testformat1").getColumns());
+        RowBuffer row = new RowBuffer(parser.getColumnCount());
+        assertEquals(-1, parser.parse("Foonyor   17", row));
+        assertEquals(7, row.getInt(2));
+        assertEquals(RowParser.MALFORMED, parser.parse("Foonyor   1", row));
+        assertEquals(DBHelper.LINE_TOO_SHORT, parser.getErrorCode("Foonyor   1", RowParser.MALFORMED));
+        assertEquals(RowParser.MALFORMED, parser.parse("", row));
+
+        Path directory = Files.createTempDirectory("data");
+        Path dataFile = directory.resolve("testformat1_2016-10-06.txt");
+        Files.write(dataFile, "Foonyor   1  1\nBar\nQuuxitude 1103\n".getBytes("UTF-8"));
+        for (boolean mapped : new boolean[] {true, false}) {
+            DataFileReader fileReader = new DataFileReader(dataFile);
+            fileReader.setMappedDecoder(mapped);
+            fileReader.setLedger(false);
+            fileReader.setRejects(Files.createTempDirectory("rejects"), 100);
+            try {
+                fileReader.readAndStoreData();
+                fail("Expected the invalid data exception");
+            } catch (FileReaderException ex) {
+                assertEquals(Collections.singleton(2), ex.getErrorLines().keySet());
+                assertEquals(Integer.valueOf(1), ex.getErrorCountsByReason().get("LINE_TOO_SHORT"));
+            }
+        }
+        assertEquals("The valid rows of both loads", 4, DBHelper.selectCountFromTable(testTable));
+    }
+
+    @Test
+    public void testDelimitedRecords() throws Exception {
+        ArrayList<ColumnSpecification> specs = SpecRegistry.getSpec("testformat1").getColumns();
+        RowParser csv = RecordFormat.CSV.compile(specs);
+        RowBuffer row = new RowBuffer(specs.size());
+
+        // Quoted fields keep their delimiters and spaces, with doubled quotes made single; the byte parser agrees
+        String line = "\"Foo, \"\"J\"\"\" , 1,12";
+        assertEquals(-1, csv.parse(line, row));
+        assertEquals("Foo, \"J\"", row.getText(0));
+        ByteBuffer bytes = ByteBuffer.wrap(line.getBytes("UTF-8"));
+        assertTrue(csv.parse(bytes, 0, bytes.limit(), row));
+        assertEquals("Foo, \"J\"", row.getText(0));
+        assertEquals(12, row.getInt(2));
+
+        assertEquals(RowParser.MALFORMED, csv.parse("Foo,1", row));
+        assertEquals(DBHelper.LINE_TOO_SHORT, csv.getErrorCode("Foo,1", RowParser.MALFORMED));
+        assertEquals("Line has 2 fields, 3 expected", csv.describeError("Foo,1", RowParser.MALFORMED));
+        assertEquals(RowParser.MALFORMED, csv.parse("\"Foo,1,2", row));
+        assertEquals(DBHelper.MALFORMED_LINE, csv.getErrorCode("\"Foo,1,2", RowParser.MALFORMED));
+        assertEquals(RowParser.MALFORMED, csv.parse("Foo,1,2,3", row));
+        assertEquals(0, csv.parse("Foonyorxxxx,1,2", row));
+        assertEquals(DBHelper.VALUE_TOO_LONG, csv.getErrorCode("Foonyorxxxx,1,2", 0));
+
+        RowParser tsv = RecordFormat.TSV.compile(specs);
+        assertEquals(-1, tsv.parse("Foo, Bar\t1\t 12 ", row));
+        assertEquals("Foo, Bar", row.getText(0));
+        RowParser pipe = RecordFormat.forName("DELIMITED(|)").compile(specs);
+        assertEquals(-1, pipe.parse("Foo|0|3", row));
+        assertNull(RecordFormat.forName("DELIMITED(\")"));
+        assertNull(RecordFormat.forName("XML"));
+
+        // The spec file says its data files are CSV, and they are loaded on every path
+        assertSame(RecordFormat.CSV, SpecRegistry.getSpec("csvformat1").getFormat());
+        Path directory = Files.createTempDirectory("data");
+        Path dataFile = directory.resolve("csvformat1_2016-10-04.txt");
+        Files.write(dataFile, "Foonyor,1,1\nBarzane,0,ss\n\"Quux\nQuuxitude,1,103\n".getBytes("UTF-8"));
+        for (int load = 0; load < 3; load++) {
+            DataFileReader fileReader = new DataFileReader(dataFile);
+            fileReader.setMappedDecoder(load == 0);
+            fileReader.setPipeline(load == 2, 2);
+            fileReader.setLedger(false);
+            fileReader.setRejects(Files.createTempDirectory("rejects"), 100);
+            try {
+                fileReader.readAndStoreData();
+                fail("Expected the invalid data exception");
+            } catch (FileReaderException ex) {
+                assertEquals(Integer.valueOf(1), ex.getErrorCountsByReason().get("NOT_AN_INTEGER"));
+                assertEquals(Integer.valueOf(1), ex.getErrorCountsByReason().get("MALFORMED_LINE"));
+            }
+        }
+        assertEquals("Two rows from each load", 6, DBHelper.selectCountFromTable(csvTable));
+    }
+
+    @Test
+    public void testLengthPrefixedRecords() throws Exception {
+        // A valid record, an invalid INTEGER, fields that do not fill their record, and a file cut off mid record
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(record("Foo, \"Jr\"", "1", "12"));
+        content.write(record("Barzane", "0", "ss"));
+        content.write(record("Quux", "1"));
+        byte[] cutOff = record("Quuxitude", "1", "103");
+        content.write(cutOff, 0, cutOff.length - 2);
+
+        Path directory = Files.createTempDirectory("data");
+        Path dataFile = directory.resolve("binformat1_2016-10-04.bin");
+        Files.write(dataFile, content.toByteArray());
+        Path rejectFile = null;
+        for (boolean bulkLoad : new boolean[] {false, true}) {
+            Path rejectDirectory = Files.createTempDirectory("rejects");
+            DataFileReader fileReader = new DataFileReader(dataFile);
+            fileReader.setBulkLoad(bulkLoad);
+            fileReader.setLedger(false);
+            fileReader.setRejects(rejectDirectory, 100);
+            try {
+                fileReader.readAndStoreData();
+                fail("Expected the invalid data exception");
+            } catch (FileReaderException ex) {
+                assertEquals(3, ex.getErrorCount());
+                assertEquals(Integer.valueOf(1), ex.getErrorCountsByReason().get("NOT_AN_INTEGER"));
+                assertEquals(Integer.valueOf(2), ex.getErrorCountsByReason().get("MALFORMED_LINE"));
+                rejectFile = ex.getRejectFile();
+            }
+        }
+
+        // Hashed record by record, the damaged one and the rest of the file included
+        ContentHash recordsHash = new ContentHash();
+        try (RecordReader records = new RecordReader(Files.newInputStream(dataFile), 1024, recordsHash)) {
+            while (records.next()) {
+                assertEquals(records.isDamaged() ? content.size() : records.getBytesRead(), recordsHash.getLength());
+            }
+        }
+        assertEquals(FileLedger.hash(dataFile), recordsHash.toHex());
+
+        // Rejected records are written back as length-prefixed records, and are rejected the same way when reloaded
+        assertEquals("binformat1_2016-10-04.bin.rejected.bin", rejectFile.getFileName().toString());
+        byte[] rejected = Files.readAllBytes(rejectFile);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(record("Barzane", "0", "ss"));
+        expected.write(record("Quux", "1"));
+        assertArrayEquals(expected.toByteArray(), Arrays.copyOf(rejected, expected.size()));
+        Path reloadDirectory = Files.createTempDirectory("data");
+        Path reloadFile = reloadDirectory.resolve("binformat1_2016-10-05.bin");
+        Files.write(reloadFile, rejected);
+        DataFileReader reloader = new DataFileReader(reloadFile);
+        reloader.setLedger(false);
+        reloader.setRejects(Files.createTempDirectory("rejects"), 100);
+        try {
+            reloader.readAndStoreData();
+            fail("Expected the invalid data exception");
+        } catch (FileReaderException ex) {
+            assertEquals(Integer.valueOf(1), ex.getErrorCountsByReason().get("NOT_AN_INTEGER"));
+            assertEquals(Integer.valueOf(2), ex.getErrorCountsByReason().get("MALFORMED_LINE"));
+            assertArrayEquals(rejected, Files.readAllBytes(ex.getRejectFile()));
+        }
+
+        try (Statement stmt = DBConnection.getConnection().createStatement();
+             ResultSet rset = stmt.executeQuery("SELECT NAME, COUNT FROM " + binaryTable)) {
+            for (int load = 0; load < 2; load++) {
+                assertTrue(rset.next());
+                assertEquals("Foo, \"Jr\"", rset.getString(1));
+                assertEquals(12, rset.getInt(2));
+            }
+            assertFalse(rset.next());
+        }
+    }
+
+    private static byte[] record(String... fields) throws Exception {
+        ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(fieldBytes);
+        for (String field : fields) {
+            byte[] bytes = field.getBytes("UTF-8");
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(recordBytes);
+        record.writeInt(fieldBytes.size());
+        record.write(fieldBytes.toByteArray());
+        return recordBytes.toByteArray();
+    }
+
+    @Test
+    public void testRowBatchReuse() throws Exception {
+        // More rows than one word of booleans, and more text than the batch's first character array
+        DataType[] dataTypes = {DataType.BOOLEAN, DataType.TEXT, DataType.INTEGER};
+        RowBatch batch = new RowBatch(dataTypes, 130);
+        RowBuffer row = new RowBuffer(dataTypes.length);
+        for (int reuse = 0; reuse < 2; reuse++) {
+            batch.clear();
+            assertEquals(0, batch.size());
+            for (int i = 0; i < 130; i++) {
+                row.setBoolean(0, (i % 3 == 0) == (reuse == 0));
+                String text = "row " + i + " of load " + reuse;
+                row.setText(1, text, 0, text.length());
+                row.setInt(2, i * reuse);
+                assertEquals(i, batch.add(row));
+            }
+            assertTrue(batch.isFull());
+
+            for (int i = 0; i < 130; i++) {
+                assertEquals("Row " + i, (i % 3 == 0) == (reuse == 0), batch.getBoolean(i, 0));
+                assertEquals("row " + i + " of load " + reuse, batch.getText(i, 1));
+                assertEquals(i * reuse, batch.getInt(i, 2));
+            }
+            StringBuilder csv = new StringBuilder();
+            for (int column = 0; column < dataTypes.length; column++) {
+                dataTypes[column].appendText(csv, batch, 64, column);
+                csv.append(',');
+            }
+            assertEquals((reuse == 0 ? "FALSE" : "TRUE") + ",row 64 of load " + reuse + "," + 64 * reuse + ",",
+                    csv.toString());
+        }
+        try {
+            batch.add(row);
+            fail("Expected the full batch to refuse another row");
+        } catch (IllegalStateException ex) {
+            assertEquals(130, batch.size());
+        }
+    }
+
+    @Test
+    public void testSpecChangeAltersTable() throws Exception {
+        // A table from an older spec, without the address column and with a narrower phone, is altered in place
+        Statement stmt = DBConnection.getConnection().createStatement();
+        stmt.executeUpdate("CREATE TABLE " + testCreateTable + " (NAME VARCHAR(10), PHONE VARCHAR(7), SCORE INT)");
+        stmt.executeUpdate("INSERT INTO " + testCreateTable + " VALUES ('Old Row', '5551234', 1)");
+        new DataFileReader(Paths.get("data", "scoreRecord_2016-10-04.txt")).readAndStoreData();
+
+        assertEquals("Old and new rows", 3, DBHelper.selectCountFromTable(testCreateTable));
+        try (ResultSet rset = stmt.executeQuery("SELECT PHONE, ADDRESS FROM " + testCreateTable + " ORDER BY NAME")) {
+            assertTrue(rset.next());
+            assertEquals("4155551235", rset.getString(1));
+            assertEquals("522 8th Street", rset.getString(2));
+            rset.next();
+            rset.next();
+            assertEquals("Old Row", "5551234", rset.getString(1));
+            assertNull("Added column is empty for old rows", rset.getString(2));
+        }
+
+        // A column whose datatype changed cannot be altered in place: nothing is loaded
+        stmt.executeUpdate("DROP TABLE " + testCreateTable);
+        stmt.executeUpdate("CREATE TABLE " + testCreateTable + " (NAME VARCHAR(10), PHONE VARCHAR(12), SCORE BOOLEAN)");
+        stmt.close();
+        SpecRegistry.clear();
+        DataFileReader fileReader = new DataFileReader(Paths.get("data", "scoreRecord_2016-10-04.txt"));
+        fileReader.setLedger(false);
+        try {
+            fileReader.readAndStoreData();
+            fail("Expected the incompatible spec exception");
+        } catch (FileReaderException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("Whole file not processed. Matching spec file: "
+                    + "scoreRecord.csv does not fit the existing table"));
+            assertTrue(ex.getMessage(),
+                    ex.getMessage().contains("column SCORE is BOOLEAN, which cannot store INTEGER"));
+        }
+        assertEquals("Nothing stored", 0, DBHelper.selectCountFromTable(testCreateTable));
+    }
+
+    @Test
+    public void testDecimalSpecChange() throws Exception {
+        // A DECIMAL(10,2) column is widened for more digits after the point, and for more before it
+        Connection connection = DBConnection.getConnection();
+        Statement stmt = connection.createStatement();
+        stmt.executeUpdate("CREATE TABLE DECIMAL_VALUES (AMOUNT DECIMAL(10,2))");
+        stmt.executeUpdate("INSERT INTO DECIMAL_VALUES VALUES (12345678.12)");
+        ArrayList<ColumnSpecification> specs = new ArrayList<ColumnSpecification>();
+        specs.add(new ColumnSpecification("amount", 13, "DECIMAL(12,4)"));
+        DBHelper.createTableIfNotExists(connection, "DECIMAL_VALUES", specs);
+        stmt.executeUpdate("INSERT INTO DECIMAL_VALUES VALUES (12345678.1234)");
+        try (ResultSet rset = stmt.executeQuery("SELECT AMOUNT FROM DECIMAL_VALUES ORDER BY AMOUNT")) {
+            assertTrue(rset.next());
+            assertEquals(new java.math.BigDecimal("12345678.1200"), rset.getBigDecimal(1));
+            assertTrue(rset.next());
+            assertEquals("Not rounded to 2 places", new java.math.BigDecimal("12345678.1234"), rset.getBigDecimal(1));
+        }
+
+        // Fewer digits after the point, or before it, is rejected and the table left as it is
+        String[][] narrower = {{"DECIMAL(12,2)", "column AMOUNT is DECIMAL(12,4), which would have to be narrowed to "
+                + "DECIMAL(12,2)"}, {"DECIMAL(10,4)", "to DECIMAL(10,4)"}};
+        for (String[] narrowed : narrower) {
+            specs.set(0, new ColumnSpecification("amount", 13, narrowed[0]));
+            try {
+                DBHelper.createTableIfNotExists(connection, "DECIMAL_VALUES", specs);
+                fail("Expected the incompatible spec exception for " + narrowed[0]);
+            } catch (IncompatibleSpecException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().contains(narrowed[1]));
+            }
+        }
+        try (ResultSet columns = connection.getMetaData().getColumns(null, null, "DECIMAL_VALUES", "AMOUNT")) {
+            assertTrue(columns.next());
+            assertEquals(12, columns.getInt("COLUMN_SIZE"));
+            assertEquals(4, columns.getInt("DECIMAL_DIGITS"));
+        }
+        stmt.executeUpdate("DROP TABLE DECIMAL_VALUES");
+        stmt.close();
+    }
+
+    @Test
+    public void testReplacePartition() throws Exception {
+        // Load the same day twice, then another day: reloading a day replaces only its rows
+        Path testDataFile = Paths.get("data", "testformat1_2016-10-04.txt");
+        for (int load = 0; load < 2; load++) {
+            DataFileReader fileReader = new DataFileReader(testDataFile);
+            fileReader.setPartitioning(true, true);
+            fileReader.setLedger(false);
+            try {
+                fileReader.readAndStoreData();
+                fail("Expected the invalid data exception");
+            } catch (FileReaderException ex) {
+                assertEquals("Two lines had errors", 2, ex.getErrorLines().size());
+            }
+            assertEquals("The day's one row, once", 1, DBHelper.selectCountFromTable(testTable));
+        }
+        DataFileReader otherDay = new DataFileReader(Paths.get("data", "testformat1_2015-06-28.txt"));
+        otherDay.setPartitioning(true, true);
+        otherDay.readAndStoreData();
+
+        Connection connection = DBConnection.getConnection();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rset = stmt.executeQuery("SELECT LOAD_DATE, count(*) FROM " + testTable
+                     + " GROUP BY LOAD_DATE ORDER BY LOAD_DATE")) {
+            assertTrue(rset.next());
+            assertEquals(java.sql.Date.valueOf("2015-06-28"), rset.getDate(1));
+            assertEquals(3, rset.getInt(2));
+            assertTrue(rset.next());
+            assertEquals(java.sql.Date.valueOf("2016-10-04"), rset.getDate(1));
+            assertEquals(1, rset.getInt(2));
+            assertFalse(rset.next());
+        }
+        ResultSet staging = connection.getMetaData().getTables(null, null, testTable + "_STAGING_%", null);
+        assertFalse("Staging tables are dropped once swapped in", staging.next());
+
+        assertNull(DataFileReader.getLoadDate("testformat1_1000000-0.01.txt"));
+        assertEquals(java.sql.Date.valueOf("2016-10-04"), DataFileReader.getLoadDate("testformat1_2016-10-04.txt"));
+    }
+
+    @Test
+    public void testWholeFileOverErrorLimit() throws Exception {
+        // The file has two invalid lines: with no errors allowed none of it is stored, with two its valid row is
+        Path testDataFile = Paths.get("data", "testformat1_2016-10-04.txt");
+        DataFileReader strictReader = new DataFileReader(testDataFile);
+        strictReader.setWholeFile(true, 0);
+        strictReader.setLedger(false);
+        try {
+            strictReader.readAndStoreData();
+            fail("Expected the too much invalid data exception");
+        } catch (FileReaderException ex) {
+            assertTrue(ex.getMessage().startsWith("We found too much invalid data in the file."));
+        }
+        assertEquals("Nothing stored", 0, DBHelper.selectCountFromTable(testTable));
+
+        // In chunks, the chunks that stopped leave no reject files of their own behind
+        Path rejectDirectory = Files.createTempDirectory("rejects");
+        DataFileReader chunkedReader = new DataFileReader(testDataFile);
+        chunkedReader.setWholeFile(true, 0);
+        chunkedReader.setChunking(3, 0);
+        chunkedReader.setLedger(false);
+        chunkedReader.setRejects(rejectDirectory, 100);
+        try {
+            chunkedReader.readAndStoreData();
+            fail("Expected the too much invalid data exception");
+        } catch (FileReaderException ex) {
+            assertTrue(ex.getMessage().startsWith("We found too much invalid data in the file."));
+        }
+        for (String rejectFile : rejectDirectory.toFile().list()) {
+            assertFalse(rejectFile, rejectFile.contains(".chunk"));
+        }
+        assertEquals("Nothing stored", 0, DBHelper.selectCountFromTable(testTable));
+
+        DataFileReader lenientReader = new DataFileReader(testDataFile);
+        lenientReader.setWholeFile(true, 2);
+        lenientReader.setLedger(false);
+        try {
+            lenientReader.readAndStoreData();
+            fail("Expected the invalid data exception");
+        } catch (FileReaderException ex) {
+            assertEquals("Two lines had errors", 2, ex.getErrorLines().size());
+        }
+        assertEquals("The valid row stored", 1, DBHelper.selectCountFromTable(testTable));
+
+        ResultSet staging = DBConnection.getConnection().getMetaData()
+                .getTables(null, null, testTable + "_STAGING_%", null);
+        assertFalse("Staging tables are dropped", staging.next());
+    }
+
     @Test
     public void testFileCompleteSuccess() throws Exception {
         // Test known file with no errors
@@ -206,6 +1073,382 @@ public class DataFileReaderTest {
 
     }
 
+    @Test
+    public void testFileCompleteSuccessSmallBatches() throws Exception {
+        // Test known file with no errors, with a batch size that leaves a partial final batch
+        Path testDataFile = Paths.get("data", "testformat1_2015-06-28.txt");
+        DataFileReader goodFileReader = new DataFileReader(testDataFile, 2);
+        try {
+            goodFileReader.readAndStoreData();
+        } catch (FileReaderException ex) {
+            fail("Test should not have had an exception");
+        }
+
+        //check DB Entries in table
+        int resultCount = DBHelper.selectCountFromTable(testTable);
+        assertEquals("Three rows should have been stored", 3, resultCount);
+
+    }
+
+    @Test
+    public void testProcessedFileIsSkipped() throws Exception {
+        // Test known file with no errors, loaded twice: the second time it is skipped
+        Path testDataFile = Paths.get("data", "testformat1_2015-06-28.txt");
+        new DataFileReader(testDataFile).readAndStoreData();
+        DataFileReader rerunReader = new DataFileReader(testDataFile);
+        rerunReader.readAndStoreData();
+
+        assertTrue("File should have been skipped", rerunReader.isAlreadyProcessed());
+        int resultCount = DBHelper.selectCountFromTable(testTable);
+        assertEquals("Three rows should have been stored once", 3, resultCount);
+    }
+
+    @Test
+    public void testTouchedFileIsSkippedByContentHash() throws Exception {
+        // Loaded in chunks, the ledger has the file's own hash; touched afterwards, it is found by that hash
+        Path directory = Files.createTempDirectory("data");
+        Path testDataFile = Files.copy(Paths.get("data", "testformat1_2015-06-28.txt"),
+                directory.resolve("testformat1_2015-06-28.txt"));
+        DataFileReader chunkedReader = new DataFileReader(testDataFile);
+        chunkedReader.setChunking(3, 0);
+        chunkedReader.readAndStoreData();
+
+        ContentHash wholeFile = new ContentHash();
+        wholeFile.update(Files.readAllBytes(testDataFile));
+        String expectedHash = wholeFile.toHex();
+        try (Statement stmt = DBConnection.getConnection().createStatement();
+             ResultSet rset = stmt.executeQuery("SELECT CONTENT_HASH FROM " + FileLedger.TABLE)) {
+            assertTrue(rset.next());
+            assertEquals("Same hash however the file was split", expectedHash, rset.getString(1));
+        }
+
+        Files.setLastModifiedTime(testDataFile, java.nio.file.attribute.FileTime.fromMillis(
+                Files.getLastModifiedTime(testDataFile).toMillis() + 60000));
+        DataFileReader rerunReader = new DataFileReader(testDataFile);
+        rerunReader.readAndStoreData();
+        assertTrue("Same content should have been skipped", rerunReader.isAlreadyProcessed());
+        assertEquals("Three rows should have been stored once", 3, DBHelper.selectCountFromTable(testTable));
+
+        // Recording the same name again replaces its row
+        FileLedger.recordProcessed(DBConnection.getConnection(), "testformat1_2015-06-28.txt", 1, 1, null, 0, 0);
+        assertEquals(1, DBHelper.selectCountFromTable(FileLedger.TABLE));
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        // Test known file with no errors, after a load that was interrupted once its first two lines were stored
+        Path testDataFile = Paths.get("data", "testformat1_2015-06-28.txt");
+        byte[] content = Files.readAllBytes(testDataFile);
+        int thirdLineStart = 0;
+        for (int lineBreaks = 0; lineBreaks < 2; thirdLineStart++) {
+            if (content[thirdLineStart] == '\n') lineBreaks++;
+        }
+
+        Connection connection = DBConnection.getConnection();
+        Checkpoint.createTableIfNotExists(connection);
+        Checkpoint.start(connection, testDataFile, content.length,
+                Files.getLastModifiedTime(testDataFile).toMillis(),
+                Collections.singletonList(new FileChunk(testDataFile, 0, content.length)));
+        ContentHash firstLines = new ContentHash();
+        firstLines.update(content, 0, thirdLineStart);
+        Statement stmt = connection.createStatement();
+        stmt.executeUpdate("UPDATE " + Checkpoint.TABLE + " SET BYTE_OFFSET = " + thirdLineStart
+                + ", CONTENT_HASH = '" + firstLines.toHex() + "', LINE_NUMBER = 2");
+        stmt.close();
+
+        new DataFileReader(testDataFile).readAndStoreData();
+
+        int resultCount = DBHelper.selectCountFromTable(testTable);
+        assertEquals("Only the third row should have been stored", 1, resultCount);
+        try (Statement ledger = connection.createStatement();
+             ResultSet rset = ledger.executeQuery("SELECT CONTENT_HASH FROM " + FileLedger.TABLE)) {
+            assertTrue(rset.next());
+            assertEquals("Hash carried on from the checkpoint", FileLedger.hash(testDataFile), rset.getString(1));
+        }
+    }
+
+    @Test
+    public void testContentHashAppends() throws Exception {
+        byte[] content = Files.readAllBytes(Paths.get("data", "testformat1_2016-10-04.txt"));
+        ContentHash whole = new ContentHash();
+        whole.update(content);
+        for (int split = 0; split <= content.length; split += 7) {
+            ContentHash first = new ContentHash();
+            first.update(content, 0, split);
+            ContentHash second = new ContentHash();
+            second.update(ByteBuffer.wrap(content), split, content.length);
+            first.append(second);
+            assertEquals("Split at " + split, whole.toHex(), first.toHex());
+            assertEquals(content.length, first.getLength());
+        }
+        ContentHash restored = ContentHash.fromHex(whole.toHex(), whole.getLength());
+        restored.update((byte) '\n');
+        whole.update((byte) '\n');
+        assertEquals(whole.toHex(), restored.toHex());
+        ContentHash zero = new ContentHash();
+        zero.update((byte) 0);
+        assertNotEquals("A zero byte counts too", new ContentHash().toHex(), zero.toHex());
+    }
+
+    @Test
+    public void testResumeKeepsEarlierRejects() throws Exception {
+        // The first two lines were rejected, to the reject files, before the load was interrupted
+        Path testDataFile = Paths.get("data", "testformat1_2016-10-04.txt");
+        List<String> lines = Files.readAllLines(testDataFile);
+        byte[] content = Files.readAllBytes(testDataFile);
+        int thirdLineStart = 0;
+        for (int lineBreaks = 0; lineBreaks < 2; thirdLineStart++) {
+            if (content[thirdLineStart] == '\n') lineBreaks++;
+        }
+        Path rejectDirectory = Files.createTempDirectory("rejects");
+        ErrorCollector interrupted = new ErrorCollector(rejectDirectory, "testformat1_2016-10-04.txt", 10);
+        interrupted.addInvalid(1, lines.get(0), DBHelper.NOT_A_BOOLEAN, "q is not a valid BOOLEAN flag");
+        interrupted.addInvalid(2, lines.get(1), DBHelper.NOT_AN_INTEGER, "ss is not an INTEGER");
+        interrupted.close();
+
+        Connection connection = DBConnection.getConnection();
+        Checkpoint.createTableIfNotExists(connection);
+        Checkpoint.start(connection, testDataFile, content.length,
+                Files.getLastModifiedTime(testDataFile).toMillis(),
+                Collections.singletonList(new FileChunk(testDataFile, 0, content.length)));
+        ContentHash firstLines = new ContentHash();
+        firstLines.update(content, 0, thirdLineStart);
+        Statement stmt = connection.createStatement();
+        stmt.executeUpdate("UPDATE " + Checkpoint.TABLE + " SET BYTE_OFFSET = " + thirdLineStart
+                + ", CONTENT_HASH = '" + firstLines.toHex() + "', LINE_NUMBER = 2, ERROR_COUNT = 2");
+        stmt.close();
+
+        DataFileReader fileReader = new DataFileReader(testDataFile);
+        fileReader.setRejects(rejectDirectory, 10);
+        try {
+            fileReader.readAndStoreData();
+            fail("Expected the invalid data exception");
+        } catch (FileReaderException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("2 more lines were not stored before the load"));
+            assertEquals("Rejects from before the resume are kept", lines.subList(0, 2),
+                    Files.readAllLines(rejectDirectory.resolve("testformat1_2016-10-04.txt.rejected.txt")));
+            assertEquals(2, Files.readAllLines(
+                    rejectDirectory.resolve("testformat1_2016-10-04.txt.rejected.tsv")).size());
+        }
+        assertEquals("Only the third row should have been stored", 1, DBHelper.selectCountFromTable(testTable));
+    }
+
+    @Test
+    public void testWatchedFileLoadedOnce() throws Exception {
+        // A file written in pieces is handed over once, and a change during its load waits for the load to finish
+        Path directory = Files.createTempDirectory("data");
+        final ExecutorService pool = Executors.newFixedThreadPool(2);
+        final AtomicInteger loads = new AtomicInteger();
+        final AtomicInteger loading = new AtomicInteger();
+        final AtomicInteger mostLoading = new AtomicInteger();
+        final DirectoryWatcher watcher = new DirectoryWatcher(directory, 300, new DirectoryWatcher.Listener() {
+            @Override
+            public Future<?> fileReady(Path file) {
+                loads.incrementAndGet();
+                return pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        int now = loading.incrementAndGet();
+                        if (now > mostLoading.get()) mostLoading.set(now);
+                        Thread.sleep(1500);
+                        loading.decrementAndGet();
+                        return null;
+                    }
+                });
+            }
+        });
+        Thread watching = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    watcher.run();
+                } catch (IOException | InterruptedException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        };
+        watching.start();
+        try {
+            Path dataFile = directory.resolve("testformat1_2016-10-04.txt");
+            Files.write(dataFile, "Foonyor   1  1\n".getBytes("UTF-8"));
+            for (int piece = 0; piece < 3; piece++) {
+                Thread.sleep(100);
+                Files.write(dataFile, "Barzane   0-12\n".getBytes("UTF-8"), StandardOpenOption.APPEND);
+            }
+            awaitCount(loads, 1);
+            Thread.sleep(100);
+            Files.write(dataFile, "Quuxitude 1103\n".getBytes("UTF-8"), StandardOpenOption.APPEND);
+            Thread.sleep(800);
+            assertEquals("Not handed over again during its load", 1, loads.get());
+
+            awaitCount(loads, 2);
+            Thread.sleep(800);
+            assertEquals("Handed over once more after the load, for the change", 2, loads.get());
+            assertEquals(1, mostLoading.get());
+        } finally {
+            watcher.stop();
+            watching.join();
+            pool.shutdownNow();
+        }
+    }
+
+    private static void awaitCount(AtomicInteger count, int expected) throws InterruptedException {
+        for (int wait = 0; wait < 100 && count.get() < expected; wait++) {
+            Thread.sleep(50);
+        }
+        assertEquals(expected, count.get());
+    }
+
+    @Test
+    public void testPoolReplacesBrokenConnections() throws Exception {
+        ConnectionPool pool = new ConnectionPool("jdbc:h2:mem:pooltest", "", "", 1, 60000, 1000);
+        try {
+            // A connection broken while idle, even just after it was returned, is replaced when it is borrowed
+            Connection first = pool.borrow();
+            Connection firstReal = first.unwrap(Connection.class);
+            first.close();
+            firstReal.close();
+            try (Connection second = pool.borrow()) {
+                assertNotSame(firstReal, second.unwrap(Connection.class));
+                assertTrue(second.isValid(1));
+
+                // A connection closed while lent out is dropped when it is returned, and its place freed
+                second.unwrap(Connection.class).close();
+            }
+            try (Connection third = pool.borrow()) {
+                assertTrue(third.isValid(1));
+            }
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testPoolClosesIdleConnections() throws Exception {
+        ConnectionPool pool = new ConnectionPool("jdbc:h2:mem:pooltest", "", "", 1, 100, 1000);
+        try {
+            Connection connection = pool.borrow();
+            Connection real = connection.unwrap(Connection.class);
+            connection.close();
+            // Closed in the background, with nothing borrowed
+            for (int wait = 0; wait < 40 && !real.isClosed(); wait++) {
+                Thread.sleep(50);
+            }
+            assertTrue(real.isClosed());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testPoolBorrowTimeout() throws Exception {
+        ConnectionPool pool = new ConnectionPool("jdbc:h2:mem:pooltest", "", "", 1, 60000, 200);
+        try (Connection held = pool.borrow()) {
+            long start = System.currentTimeMillis();
+            try {
+                pool.borrow();
+                fail("Expected the borrow to time out");
+            } catch (SQLException ex) {
+                assertTrue(ex.getMessage(), ex.getMessage().startsWith("Timed out after 200ms"));
+                assertTrue(System.currentTimeMillis() - start >= 200);
+            }
+            assertTrue("The connection held is not affected", held.isValid(1));
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testPoolSizeFitsChunkWorkers() throws Exception {
+        // A file and its chunk workers, plus the shared connection, always fit in the pool
+        System.setProperty("fileparser.poolSize", "2");
+        System.setProperty("fileparser.chunkWorkers", "4");
+        try {
+            assertEquals(6, ParserSettings.getPoolSize());
+            assertEquals(1, ParserSettings.getConcurrentFiles());
+        } finally {
+            System.clearProperty("fileparser.poolSize");
+            System.clearProperty("fileparser.chunkWorkers");
+        }
+    }
+
+    @Test
+    public void testProcessConcurrently() throws Exception {
+        // Files are processed by several workers, and reported in directory order whichever finishes first
+        List<Path> files = writeSmallFiles(8);
+        Path directory = files.get(0).getParent();
+        List<Path> directoryOrder = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                directoryOrder.add(file);
+            }
+        }
+        // The first file in directory order is the largest, so it finishes last
+        writeValidLines(files.get(0), 3);
+        writeValidLines(directoryOrder.get(0), 2000);
+        ByteArrayOutputStream reports = new ByteArrayOutputStream();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            FileParser.processConcurrently(stream, 3, new PrintStream(reports, true, "UTF-8"));
+        }
+
+        assertEquals(successReports(directoryOrder), reports.toString("UTF-8"));
+        assertEquals(2000 + 7 * 3, DBHelper.selectCountFromTable(testTable));
+    }
+
+    @Test
+    public void testThreadPerFile() throws Exception {
+        String version = System.getProperty("java.specification.version");
+        boolean virtualThreads = !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+        ExecutorService virtual = FileParser.newVirtualThreadPerTaskExecutor();
+        assertEquals("Falls back to a fixed pool before Java 21", virtualThreads, virtual != null);
+        if (virtual != null) virtual.shutdown();
+
+        List<Path> files = writeSmallFiles(8);
+        // The fixed pool used before Java 21, and a thread per file as with virtual threads
+        for (ExecutorService threads : new ExecutorService[] {null, Executors.newCachedThreadPool()}) {
+            clearDBTable();
+            CountingPool pool = new CountingPool();
+            DBConnection.setPool(pool);
+            ByteArrayOutputStream reports = new ByteArrayOutputStream();
+            FileParser.processThreadPerFile(files, 2, threads, new PrintStream(reports, true, "UTF-8"));
+
+            assertEquals("Reports in directory order", successReports(files), reports.toString("UTF-8"));
+            assertEquals("No more files holding connections than allowed", 2, pool.mostLent);
+            assertEquals(2000 + 7 * 3, DBHelper.selectCountFromTable(testTable));
+        }
+    }
+
+    /**
+     * @return count small testformat1 files in a new directory, in directory order.  The first is the largest, so it
+     *         finishes last.
+     */
+    private static List<Path> writeSmallFiles(int count) throws Exception {
+        Path directory = Files.createTempDirectory("data");
+        ArrayList<Path> files = new ArrayList<Path>();
+        for (int i = 0; i < count; i++) {
+            Path file = directory.resolve("testformat1_2016-10-" + (10 + i) + ".txt");
+            writeValidLines(file, i == 0 ? 2000 : 3);
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static void writeValidLines(Path file, int lines) throws Exception {
+        StringBuilder content = new StringBuilder();
+        for (int line = 0; line < lines; line++) {
+            content.append("Foonyor   1").append(String.format("%3d", line % 1000)).append('\n');
+        }
+        Files.write(file, content.toString().getBytes("UTF-8"));
+    }
+
+    private static String successReports(List<Path> files) {
+        StringBuilder reports = new StringBuilder();
+        for (Path file : files) {
+            reports.append("File: ").append(file.getFileName()).append(" processed successfully.\n");
+        }
+        return reports.toString();
+    }
+
     @Test
     public void testFileWithNullValue() throws Exception {
         // Test file with a null value
@@ -232,4 +1475,114 @@ public class DataFileReaderTest {
         DBConnection.closeConnection();
     }
 
+    /**
+     * The application's connection pool, counting the connections lent out at once.
+     */
+    private static class CountingPool extends ConnectionPool {
+        private int lent = 0;
+        int mostLent = 0;
+
+        CountingPool() {
+            super(ParserSettings.getDatabaseUrl(), ParserSettings.getDatabaseUser(),
+                    ParserSettings.getDatabasePassword(), ParserSettings.getPoolSize(),
+                    ParserSettings.getPoolIdleTimeoutMillis(), ParserSettings.getPoolBorrowTimeoutMillis());
+        }
+
+        @Override
+        public Connection borrow() throws SQLException {
+            final Connection connection = super.borrow();
+            synchronized (this) {
+                mostLent = Math.max(mostLent, ++lent);
+            }
+            return (Connection) java.lang.reflect.Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] {Connection.class}, new java.lang.reflect.InvocationHandler() {
+                        private boolean returned = false;
+
+                        @Override
+                        public Object invoke(Object proxy, java.lang.reflect.Method method, Object[] args)
+                                throws Throwable {
+                            if (method.getName().equals("close") && !returned) {
+                                returned = true;
+                                synchronized (CountingPool.this) {
+                                    lent--;
+                                }
+                            }
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (java.lang.reflect.InvocationTargetException ex) {
+                                throw ex.getCause();
+                            }
+                        }
+                    });
+        }
+    }
+
+    /**
+     * A PostgreSQL connection with no server behind it, to run COPY through the driver's CopyManager: it keeps the
+     * COPY statement and the data sent, and reports one row copied per line.
+     */
+    private static class CopyConnection implements java.lang.reflect.InvocationHandler {
+        String copySql;
+        final ByteArrayOutputStream copied = new ByteArrayOutputStream();
+
+        Connection open() {
+            return (Connection) proxy(BaseConnection.class);
+        }
+
+        @Override
+        public Object invoke(Object proxy, java.lang.reflect.Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("unwrap")) return proxy;
+            if (name.equals("getCopyAPI")) return new CopyManager((BaseConnection) proxy);
+            if (name.equals("getEncoding")) return Encoding.getJVMEncoding("UTF-8");
+            if (name.equals("getQueryExecutor")) return proxy(QueryExecutor.class);
+            if (name.equals("getAutoCommit") || name.equals("isActive")) return false;
+            if (name.equals("startCopy")) {
+                copySql = (String) args[0];
+                return proxy(CopyIn.class);
+            }
+            if (name.equals("writeToCopy")) {
+                copied.write((byte[]) args[0], (Integer) args[1], (Integer) args[2]);
+                return null;
+            }
+            if (name.equals("endCopy")) {
+                long lines = 0;
+                for (byte b : copied.toByteArray()) {
+                    if (b == '\n') lines++;
+                }
+                return lines;
+            }
+            throw new UnsupportedOperationException(method.toString());
+        }
+
+        private Object proxy(Class<?> type) {
+            return java.lang.reflect.Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, this);
+        }
+    }
+
+    /**
+     * Logs each checkpoint saved, as "line errors offset hash", from a trigger on the checkpoint table.
+     */
+    public static class CheckpointLog implements org.h2.api.Trigger {
+        static final List<String> saved = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void init(Connection connection, String schemaName, String triggerName, String tableName,
+                         boolean before, int type) {
+        }
+
+        @Override
+        public void fire(Connection connection, Object[] oldRow, Object[] newRow) {
+            saved.add(newRow[7] + " " + newRow[8] + " " + newRow[5] + " " + newRow[6]);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void remove() {
+        }
+    }
+
 }